@@ -0,0 +1,126 @@
+package org.bereketab;
+
+import com.zaxxer.hikari.HikariConfig;
+import org.bereketab.migrationLibrary.OnDemandDataSource;
+import org.bereketab.parallel.MigrationGraph;
+import org.bereketab.plan.LockAnalyzer;
+import org.bereketab.script.MigrationHeader;
+import org.bereketab.script.SqlStatementReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Training run for the AppCDS archive built by `mvn package` (the `create-cds-archive` execution), so the archive holds
+ * the classes of a real run and not just those of `--help`. Build-only: it is run with the source-file launcher against
+ * the shaded jar, so it never ships and the archive's class path is exactly the jar's. Without a database it can only
+ * get so far:
+ * <ul>
+ *   <li>every subcommand's help is rendered through the same command line as {@link App#main};</li>
+ *   <li>the migrations are listed, hashed, parsed into statements, lock-analyzed and ordered for `--parallel`;</li>
+ *   <li>`status`'s history query runs against a stub PostgreSQL URL nothing listens on, so the driver registration and
+ *       pgjdbc connect path are loaded up to the refused socket; the expected failure isn't logged;</li>
+ *   <li>the pgjdbc and Hikari classes only reached on a live connection (statements, result sets, COPY, the pool) are
+ *       loaded by name, without running them.</li>
+ * </ul>
+ * Classes only a live server exercises beyond those (e.g. SSL, authentication plugins) are left out; record the
+ * archive from a real run (`-XX:ArchiveClassesAtExit=... migrate`) to cover them.
+ */
+public final class CdsTraining {
+    private static final Logger logger = LoggerFactory.getLogger(CdsTraining.class);
+    // Port 1 refuses connections at once, so the training run never waits on a timeout
+    private static final String STUB_URL = "jdbc:postgresql://127.0.0.1:1/cds_training?connectTimeout=1";
+    private static final List<String> CONNECTED_CLASSES = List.of(
+            "org.postgresql.jdbc.PgConnection",
+            "org.postgresql.jdbc.PgStatement",
+            "org.postgresql.jdbc.PgPreparedStatement",
+            "org.postgresql.jdbc.PgResultSet",
+            "org.postgresql.jdbc.PgResultSetMetaData",
+            "org.postgresql.jdbc.PgDatabaseMetaData",
+            "org.postgresql.core.v3.QueryExecutorImpl",
+            "org.postgresql.core.v3.SimpleQuery",
+            "org.postgresql.core.v3.CompositeQuery",
+            "org.postgresql.copy.CopyManager",
+            "org.postgresql.core.v3.CopyInImpl",
+            "com.zaxxer.hikari.HikariDataSource",
+            "com.zaxxer.hikari.pool.HikariPool",
+            "com.zaxxer.hikari.pool.HikariProxyConnection",
+            "com.zaxxer.hikari.pool.HikariProxyStatement",
+            "com.zaxxer.hikari.pool.HikariProxyPreparedStatement",
+            "com.zaxxer.hikari.pool.HikariProxyResultSet");
+
+    private CdsTraining() {
+    }
+
+    /**
+     * @param args The migrations directory to train on (e.g., `migrations`).
+     * @throws IOException If the migrations cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: CdsTraining <migrations directory>");
+        }
+        String migrationsDir = args[0];
+        int migrations;
+        try (OnDemandDataSource dataSource = new OnDemandDataSource(() -> {
+            // The same steps as DatabaseConfig.createOnDemandDataSource, without reading a config file
+            HikariConfig config = new HikariConfig();
+            config.setJdbcUrl(STUB_URL);
+            config.setDriverClassName("org.postgresql.Driver");
+            return DriverManager.getConnection(config.getJdbcUrl(), "cds_training", "cds_training");
+        })) {
+            MigrationService service = new MigrationService(dataSource);
+            CommandLine cmd = App.createCommandLine(service);
+            PrintWriter discard = new PrintWriter(Writer.nullWriter());
+            cmd.setOut(discard);
+            cmd.setErr(discard);
+            cmd.execute("--help");
+            for (CommandLine subcommand : cmd.getSubcommands().values()) {
+                subcommand.getUsageMessage();
+            }
+
+            service.setMigrationsDir(migrationsDir);
+            List<Path> files = service.getMigrationFiles();
+            for (Path file : files) {
+                service.getChecksum(file);
+                MigrationHeader.read(file);
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+                     SqlStatementReader statements = new SqlStatementReader(reader)) {
+                    String sql;
+                    while ((sql = statements.nextStatement()) != null) {
+                        LockAnalyzer.classify(sql);
+                    }
+                }
+            }
+            MigrationGraph.build(files, MigrationHistory.empty());
+            migrations = files.size();
+
+            try {
+                // What `status` runs first; nothing listens on the stub URL
+                service.loadHistory();
+            } catch (SQLException expected) {
+                logger.debug("CDS training: {}", expected.getMessage());
+            }
+        }
+
+        ClassLoader loader = CdsTraining.class.getClassLoader();
+        for (String name : CONNECTED_CLASSES) {
+            try {
+                Class.forName(name, false, loader);
+            } catch (ClassNotFoundException e) {
+                logger.warn("CDS training: {} not found, not archived", name);
+            }
+        }
+        logger.info("CDS training finished with {} migrations", migrations);
+    }
+}
@@ -0,0 +1,84 @@
+package org.bereketab.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.bereketab.MigrationResult;
+import org.bereketab.MigrationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end apply path: reading, checksumming and executing a script in batches, then writing its history row.
+ * Each invocation applies the same script under a new version; the tables are emptied between iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApplyMigrationBenchmark {
+
+    @Param({"100", "5000"})
+    public int statements;
+
+    @Param({"1", "100"})
+    public int batchSize;
+
+    private HikariDataSource dataSource;
+    private MigrationService service;
+    private Path script;
+    private int version;
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        dataSource = BenchmarkDatabase.create();
+        service = new MigrationService(dataSource);
+        // The service creates migration_history lazily, and setup writes to it directly
+        service.ensureHistoryTable();
+        service.setStatementBatchSize(batchSize);
+        script = BenchmarkDatabase.writeInsertScript(Files.createTempFile("V1__bench", ".sql"), statements);
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS bench_users (id SERIAL PRIMARY KEY, username VARCHAR(255), email VARCHAR(255))");
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM bench_users");
+            stmt.execute("DELETE FROM migration_history WHERE version LIKE 'BENCH%'");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, SQLException {
+        clear();
+        dataSource.close();
+        Files.deleteIfExists(script);
+    }
+
+    @Benchmark
+    public MigrationResult applyMigration() throws SQLException, IOException {
+        try (Connection conn = dataSource.getConnection()) {
+            return service.applyMigration(conn, "BENCH" + (++version), script);
+        }
+    }
+}
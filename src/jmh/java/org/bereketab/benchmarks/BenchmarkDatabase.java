@@ -0,0 +1,58 @@
+package org.bereketab.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * Database and script fixtures shared by the benchmarks. By default every call gets a fresh in-memory H2 database
+ * in PostgreSQL mode; set `-Dbenchmark.jdbcUrl` (plus `benchmark.user`/`benchmark.password`) to benchmark against
+ * a real PostgreSQL instead (use a scratch database). Benchmarks only touch `bench_*` tables and history rows whose
+ * version starts with `BENCH`, and delete them afterwards.
+ */
+final class BenchmarkDatabase {
+    private static final String JDBC_URL = System.getProperty("benchmark.jdbcUrl");
+
+    private BenchmarkDatabase() {
+    }
+
+    static HikariDataSource create() {
+        HikariDataSource dataSource = new HikariDataSource();
+        if (JDBC_URL != null) {
+            dataSource.setJdbcUrl(JDBC_URL);
+            dataSource.setUsername(System.getProperty("benchmark.user"));
+            dataSource.setPassword(System.getProperty("benchmark.password"));
+        } else {
+            dataSource.setJdbcUrl("jdbc:h2:mem:bench-" + UUID.randomUUID()
+                    + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1");
+        }
+        dataSource.setMaximumPoolSize(4);
+        return dataSource;
+    }
+
+    /**
+     * Writes a script of `statements` single-row INSERTs into `bench_users`, with comments and quoted text
+     * so the statement reader's slower paths are exercised too.
+     */
+    static Path writeInsertScript(Path file, int statements) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file)) {
+            out.write("-- Generated benchmark script\n");
+            for (int i = 0; i < statements; i++) {
+                out.write("INSERT INTO bench_users (username, email) VALUES ('user" + i + "', 'o''brien" + i + "@example.com'); -- row " + i + "\n");
+            }
+        }
+        return file;
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) return;
+        try (var paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(java.util.Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.bereketab.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.bereketab.MigrationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SHA-256 checksums of migration scripts, from a string (as read by older callers) and streamed from the file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChecksumBenchmark {
+
+    // Statements per script: roughly 10 KB, 1 MB and 10 MB
+    @Param({"100", "10000", "100000"})
+    public int statements;
+
+    private HikariDataSource dataSource;
+    private MigrationService service;
+    private Path script;
+    private String sql;
+
+    @Setup
+    public void setUp() throws IOException {
+        dataSource = BenchmarkDatabase.create();
+        service = new MigrationService(dataSource);
+        script = BenchmarkDatabase.writeInsertScript(Files.createTempFile("checksum", ".sql"), statements);
+        sql = Files.readString(script);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        dataSource.close();
+        Files.deleteIfExists(script);
+    }
+
+    @Benchmark
+    public String checksumString() {
+        return service.calculateChecksum(sql);
+    }
+
+    @Benchmark
+    public String checksumFile() throws IOException {
+        return service.calculateChecksum(script);
+    }
+}
@@ -0,0 +1,103 @@
+package org.bereketab.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.bereketab.MigrationHistory;
+import org.bereketab.MigrationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checking which migrations are applied: loading the history snapshot once and looking versions up in it,
+ * against the per-version queries it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryBenchmark {
+
+    @Param({"1000", "10000"})
+    public int applied;
+
+    private HikariDataSource dataSource;
+    private MigrationService service;
+
+    @Setup
+    public void setUp() throws SQLException {
+        dataSource = BenchmarkDatabase.create();
+        service = new MigrationService(dataSource);
+        // The service creates migration_history lazily, and setup writes to it directly
+        service.ensureHistoryTable();
+        try (Connection conn = dataSource.getConnection()) {
+            deleteBenchmarkHistory(conn);
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO migration_history (version, file_name, checksum) VALUES (?, ?, ?)")) {
+                for (int i = 1; i <= applied; i++) {
+                    stmt.setString(1, version(i));
+                    stmt.setString(2, "V" + i + "__migration_" + i + ".sql");
+                    stmt.setString(3, Integer.toHexString(i));
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            deleteBenchmarkHistory(conn);
+        }
+        dataSource.close();
+    }
+
+    @Benchmark
+    public int loadHistoryAndLookUp() throws SQLException {
+        MigrationHistory history = service.loadHistory();
+        int found = 0;
+        for (int i = 1; i <= applied; i++) {
+            String version = version(i);
+            if (history.isApplied(version) && history.getChecksum(version) != null) found++;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int queryPerVersion() throws SQLException {
+        int found = 0;
+        try (Connection conn = dataSource.getConnection()) {
+            for (int i = 1; i <= applied; i++) {
+                String version = version(i);
+                if (service.isMigrationApplied(conn, version) && service.getExistingChecksum(conn, version) != null) found++;
+            }
+        }
+        return found;
+    }
+
+    private static String version(int i) {
+        return "BENCH" + i;
+    }
+
+    private static void deleteBenchmarkHistory(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM migration_history WHERE version LIKE 'BENCH%'");
+        }
+    }
+}
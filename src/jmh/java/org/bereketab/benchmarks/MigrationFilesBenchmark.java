@@ -0,0 +1,65 @@
+package org.bereketab.benchmarks;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.bereketab.MigrationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listing and ordering a migrations directory, with a rollback script next to every tenth migration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MigrationFilesBenchmark {
+
+    @Param({"1000", "10000"})
+    public int files;
+
+    private HikariDataSource dataSource;
+    private MigrationService service;
+    private Path dir;
+
+    @Setup
+    public void setUp() throws IOException {
+        dataSource = BenchmarkDatabase.create();
+        service = new MigrationService(dataSource);
+        dir = Files.createTempDirectory("migrations");
+        for (int i = 1; i <= files; i++) {
+            Files.writeString(dir.resolve("V" + i + "__migration_" + i + ".sql"), "SELECT " + i + ";\n");
+            if (i % 10 == 0) {
+                Files.writeString(dir.resolve("V" + i + "__migration_" + i + "_rollback.sql"), "SELECT 0;\n");
+            }
+        }
+        service.setMigrationsDir(dir.toString());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        dataSource.close();
+        BenchmarkDatabase.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public List<Path> getMigrationFiles() throws IOException {
+        return service.getMigrationFiles();
+    }
+}
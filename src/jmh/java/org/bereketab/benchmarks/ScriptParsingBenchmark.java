@@ -0,0 +1,72 @@
+package org.bereketab.benchmarks;
+
+import org.bereketab.script.SqlStatementReader;
+import org.bereketab.script.SqlStatements;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a script from disk and splitting it into statements, alone and with the per-statement inspection
+ * done by the executors and the dependency graph.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptParsingBenchmark {
+
+    @Param({"1000", "100000"})
+    public int statements;
+
+    private Path script;
+
+    @Setup
+    public void setUp() throws IOException {
+        script = BenchmarkDatabase.writeInsertScript(Files.createTempFile("parse", ".sql"), statements);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(script);
+    }
+
+    @Benchmark
+    public int readStatements() throws IOException {
+        int count = 0;
+        try (SqlStatementReader reader = new SqlStatementReader(Files.newBufferedReader(script, StandardCharsets.UTF_8))) {
+            while (reader.nextStatement() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public void readAndInspectStatements(Blackhole blackhole) throws IOException {
+        try (SqlStatementReader reader = new SqlStatementReader(Files.newBufferedReader(script, StandardCharsets.UTF_8))) {
+            String sql;
+            while ((sql = reader.nextStatement()) != null) {
+                blackhole.consume(SqlStatements.firstKeyword(sql));
+                blackhole.consume(SqlStatements.referencedRelations(sql));
+            }
+        }
+    }
+}
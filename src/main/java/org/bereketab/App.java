@@ -1,38 +1,70 @@
 package org.bereketab;
 
+import org.bereketab.commands.AnalyzeCommand;
+import org.bereketab.commands.FanOutCommand;
 import org.bereketab.commands.MigrateCommand;
+import org.bereketab.commands.PlanCommand;
 import org.bereketab.commands.RollbackCommand;
+import org.bereketab.commands.SquashCommand;
 import org.bereketab.commands.StatusCommand;
+import org.bereketab.commands.TemplateCommand;
 import org.bereketab.commands.ValidateCommand;
+import org.bereketab.commands.WatchCommand;
 import org.bereketab.migrationLibrary.DatabaseConfig;
+import org.bereketab.migrationLibrary.OnDemandDataSource;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
+import java.nio.file.Paths;
 
 @Command(name = "migration-tool", mixinStandardHelpOptions = true, version = "1.0",
         description = "A simple database migration tool")
 public class App implements Runnable {
+    private static final String CHECKSUM_CACHE_FILE = ".migration-checksums";
+
     @Option(names = {"-m", "--migrations-dir"}, description = "Directory containing migration files", defaultValue = "migrations")
     private String migrationsDir;
 
     public static void main(String[] args) {
+        // Nothing is read or connected until a subcommand actually uses the database
+        OnDemandDataSource dataSource = DatabaseConfig.createOnDemandDataSource();
+        int exitCode = createCommandLine(new MigrationService(dataSource)).execute(args);
+        dataSource.close();
+        System.exit(exitCode);
+    }
+
+    /**
+     * Builds the command line with every subcommand, as run by {@link #main} (and replayed by the AppCDS training run
+     * in `src/cds`).
+     * @param migrationService Service the subcommands run against.
+     * @return The command line, ready to execute.
+     */
+    public static CommandLine createCommandLine(MigrationService migrationService) {
         App app = new App();
-        MigrationService migrationService = new MigrationService(DatabaseConfig.getDataSource());
         CommandLine cmd = new CommandLine(app)
                 .addSubcommand("migrate", new MigrateCommand(migrationService))
                 .addSubcommand("status", new StatusCommand(migrationService))
                 .addSubcommand("rollback", new RollbackCommand(migrationService))
-                .addSubcommand("validate", new ValidateCommand(migrationService));
-        int exitCode = cmd.execute(args);
-        if (cmd.getParseResult().subcommand() != null) {
-            // Set migrations dir only for valid subcommands
-            migrationService.setMigrationsDir(app.migrationsDir);
-        }
-        System.exit(exitCode);
+                .addSubcommand("validate", new ValidateCommand(migrationService))
+                .addSubcommand("plan", new PlanCommand(migrationService))
+                .addSubcommand("analyze", new AnalyzeCommand(migrationService))
+                .addSubcommand("fanout", new FanOutCommand(migrationService))
+                .addSubcommand("squash", new SquashCommand(migrationService))
+                .addSubcommand("template", new TemplateCommand(migrationService))
+                .addSubcommand("watch", new WatchCommand(migrationService));
+        cmd.setExecutionStrategy(parseResult -> {
+            if (parseResult.subcommand() != null) {
+                // Set migrations dir only for valid subcommands, before they run
+                migrationService.setMigrationsDir(app.migrationsDir);
+                migrationService.setChecksumCache(ChecksumCache.load(Paths.get(CHECKSUM_CACHE_FILE)));
+            }
+            return new CommandLine.RunLast().execute(parseResult);
+        });
+        return cmd;
     }
 
     @Override
     public void run() {
-        System.out.println("Use a subcommand: migrate, status, rollback, validate");
+        System.out.println("Use a subcommand: migrate, status, rollback, validate, plan, analyze, fanout, squash, template, watch");
     }
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package org.bereketab;
+
+import java.sql.Timestamp;
+
+/**
+ * A single row of the `migration_history` table.
+ * @param version Migration version (e.g., "V1").
+ * @param fileName Migration filename (e.g., "V1__create_table.sql").
+ * @param checksum SHA-256 checksum recorded when the migration was applied.
+ * @param appliedTime Time the migration was applied.
+ * @param executionTimeMs Time the migration took to apply, or `null` if it was applied before timings were recorded.
+ */
+public record AppliedMigration(String version, String fileName, String checksum, Timestamp appliedTime, Long executionTimeMs) {
+}
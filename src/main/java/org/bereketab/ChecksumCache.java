@@ -0,0 +1,130 @@
+package org.bereketab;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local manifest of migration file checksums keyed by path, size and modification time,
+ * so files that haven't changed since the last run are never read again.
+ * Stored as one tab-separated line per file: checksum, size, mtime (microseconds), absolute path.
+ */
+public class ChecksumCache {
+    private static final Logger logger = LoggerFactory.getLogger(ChecksumCache.class);
+    // Files modified this recently may still change within the same timestamp tick, so they aren't cached
+    private static final long RACY_WINDOW_MICROS = TimeUnit.SECONDS.toMicros(2);
+    private final Path manifest;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+
+    private record Entry(long size, long modifiedMicros, String checksum) {
+    }
+
+    private ChecksumCache(Path manifest) {
+        this.manifest = manifest;
+    }
+
+    /**
+     * Loads a checksum manifest; a missing or unreadable manifest gives an empty cache.
+     * @param manifest Path to the manifest file (e.g., ".migration-checksums").
+     * @return The loaded cache.
+     */
+    public static ChecksumCache load(Path manifest) {
+        ChecksumCache cache = new ChecksumCache(manifest);
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 4);
+                if (fields.length != 4 || line.startsWith("#")) continue;
+                try {
+                    cache.entries.put(fields[3], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[0]));
+                } catch (NumberFormatException e) {
+                    // Skip corrupt lines, the file will simply be hashed again
+                }
+            }
+        } catch (NoSuchFileException e) {
+            logger.debug("No checksum manifest at {}", manifest);
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable checksum manifest {}: {}", manifest, e.getMessage());
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the cached checksum of a file if its size and modification time are unchanged.
+     * @param file Path to the migration file.
+     * @param attributes Current attributes of the file.
+     * @return The cached checksum, or `null` on a cache miss.
+     */
+    public String get(Path file, BasicFileAttributes attributes) {
+        if (!isLocal(file)) return null;
+        Entry entry = entries.get(key(file));
+        if (entry != null && entry.size() == attributes.size()
+                && entry.modifiedMicros() == attributes.lastModifiedTime().to(TimeUnit.MICROSECONDS)) {
+            return entry.checksum();
+        }
+        return null;
+    }
+
+    /**
+     * Records the checksum of a file as it was when `attributes` were read.
+     * @param file Path to the migration file.
+     * @param attributes Attributes read before the file was hashed.
+     * @param checksum Checksum of the file's contents.
+     */
+    public void put(Path file, BasicFileAttributes attributes, String checksum) {
+        if (!isLocal(file)) return;
+        long modifiedMicros = attributes.lastModifiedTime().to(TimeUnit.MICROSECONDS);
+        long nowMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        if (nowMicros - modifiedMicros < RACY_WINDOW_MICROS) {
+            return;
+        }
+        Entry entry = new Entry(attributes.size(), modifiedMicros, checksum);
+        if (!entry.equals(entries.put(key(file), entry))) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes the manifest if anything changed, replacing the old file atomically.
+     * @throws IOException If the manifest cannot be written.
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty) return;
+        Path dir = manifest.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, manifest.getFileName().toString(), ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write("# Migration checksum cache: checksum, size, mtime (micros), path");
+            writer.newLine();
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                writer.write(entry.checksum() + "\t" + entry.size() + "\t" + entry.modifiedMicros() + "\t" + e.getKey());
+                writer.newLine();
+            }
+        }
+        Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+    }
+
+    private static boolean isLocal(Path file) {
+        // Files inside a jar would collide with local paths, and are checksummed by the migration index instead
+        return file.getFileSystem() == FileSystems.getDefault();
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+}
@@ -0,0 +1,130 @@
+package org.bereketab;
+
+import org.bereketab.script.MigrationHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds how long a migration may block other sessions: `lock_timeout` and `statement_timeout` are set on the
+ * migrating session, and a migration that gives up on a lock (SQLState 55P03) is rolled back and retried with
+ * jittered exponential backoff until the retry deadline. While backing off the migration holds no locks, so queries
+ * queued behind it can proceed. Timeouts use PostgreSQL's syntax (e.g., "5s", "500ms", "2min") and can be
+ * overridden per migration with `-- lock-timeout:` and `-- statement-timeout:` headers.
+ * @param lockTimeout Session `lock_timeout`, or `null` to leave it unchanged.
+ * @param statementTimeout Session `statement_timeout`, or `null` to leave it unchanged.
+ * @param retryDeadlineMillis How long to keep retrying after lock timeouts, counted from the first attempt.
+ */
+public record LockTimeoutPolicy(String lockTimeout, String statementTimeout, long retryDeadlineMillis) {
+    private static final Logger logger = LoggerFactory.getLogger(LockTimeoutPolicy.class);
+    public static final String LOCK_TIMEOUT = "lock-timeout";
+    public static final String STATEMENT_TIMEOUT = "statement-timeout";
+    public static final long DEFAULT_RETRY_DEADLINE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    // Leaves session settings alone, but migrations that declare their own timeouts still get retried
+    public static final LockTimeoutPolicy NONE = new LockTimeoutPolicy(null, null, DEFAULT_RETRY_DEADLINE_MILLIS);
+    private static final String LOCK_NOT_AVAILABLE = "55P03";
+    private static final long INITIAL_BACKOFF_MILLIS = 200;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    /**
+     * One attempt at running a migration. Work must be rolled back (or be safe to repeat) when it throws.
+     */
+    @FunctionalInterface
+    public interface Attempt<T> {
+        T run(int attempt) throws SQLException, IOException;
+    }
+
+    /**
+     * @param header Header of the migration script.
+     * @return This policy with the timeouts declared in the header, if any, taking precedence.
+     */
+    public LockTimeoutPolicy withOverrides(MigrationHeader header) {
+        if (!header.has(LOCK_TIMEOUT) && !header.has(STATEMENT_TIMEOUT)) return this;
+        return new LockTimeoutPolicy(header.has(LOCK_TIMEOUT) ? header.get(LOCK_TIMEOUT) : lockTimeout,
+                header.has(STATEMENT_TIMEOUT) ? header.get(STATEMENT_TIMEOUT) : statementTimeout, retryDeadlineMillis);
+    }
+
+    /**
+     * Runs a migration under this policy, retrying it while it fails on lock timeouts and the deadline allows.
+     * The session settings are restored afterwards, since pooled connections are reused.
+     * @param conn Connection the migration runs on.
+     * @param name Migration filename, for logging.
+     * @param attempt The migration; it receives the attempt number, starting at 1.
+     * @return Result of the successful attempt.
+     * @throws SQLException If the migration fails, or still times out on a lock at the deadline.
+     * @throws IOException If the migration script cannot be read.
+     */
+    public <T> T run(Connection conn, String name, Attempt<T> attempt) throws SQLException, IOException {
+        if (lockTimeout == null && statementTimeout == null) {
+            return attempt.run(1);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryDeadlineMillis);
+        for (int n = 1; ; n++) {
+            long attemptStart = System.nanoTime();
+            try {
+                applySettings(conn);
+                return attempt.run(n);
+            } catch (SQLException e) {
+                if (!LOCK_NOT_AVAILABLE.equals(e.getSQLState())) throw e;
+                long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - attemptStart);
+                long backoff = backoffMillis(n);
+                if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff) - deadline > 0) {
+                    logger.error("{}: attempt {} timed out waiting for a lock after {} ms; retry deadline of {} ms reached",
+                            name, n, waited, retryDeadlineMillis);
+                    throw e;
+                }
+                logger.warn("{}: attempt {} timed out waiting for a lock after {} ms, retrying in {} ms", name, n, waited, backoff);
+                sleep(backoff);
+            } finally {
+                resetSettings(conn);
+            }
+        }
+    }
+
+    private void applySettings(Connection conn) throws SQLException {
+        if (lockTimeout != null) setConfig(conn, "lock_timeout", lockTimeout);
+        if (statementTimeout != null) setConfig(conn, "statement_timeout", statementTimeout);
+    }
+
+    private static void setConfig(Connection conn, String name, String value) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT set_config(?, ?, false)")) {
+            stmt.setString(1, name);
+            stmt.setString(2, value);
+            stmt.execute();
+        }
+    }
+
+    private static void resetSettings(Connection conn) {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("RESET lock_timeout");
+            stmt.execute("RESET statement_timeout");
+            if (!conn.getAutoCommit()) conn.commit();
+        } catch (SQLException e) {
+            logger.warn("Could not reset session timeouts: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Exponential backoff with jitter: a random wait between half and all of a doubling cap, so retrying nodes
+     * don't line up again.
+     */
+    static long backoffMillis(int attempt) {
+        long cap = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(cap / 2, cap + 1);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry a migration", e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.bereketab;
+
+import org.bereketab.baseline.BaselineScript;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory snapshot of the `migration_history` table, indexed by version.
+ * Loaded once per run so commands don't query the history table for every migration file.
+ * Entries are kept in the order they were applied (`installed_rank`, see {@link MigrationService#loadHistory(java.sql.Connection)}),
+ * never in `applied_time` order alone: migrations committed together share a timestamp, and undoing them in the wrong
+ * order would fail or lose data.
+ */
+public class MigrationHistory {
+    private final Map<String, AppliedMigration> migrations;
+
+    MigrationHistory(Map<String, AppliedMigration> migrations) {
+        this.migrations = migrations;
+    }
+
+    /**
+     * Returns an empty snapshot (e.g., when the history table doesn't exist yet).
+     * @return Snapshot with no applied migrations.
+     */
+    public static MigrationHistory empty() {
+        return new MigrationHistory(new LinkedHashMap<>());
+    }
+
+    /**
+     * Checks if a migration (by version) is in the snapshot.
+     * @param version Migration version (e.g., "V1").
+     * @return `true` if the migration has been applied, `false` otherwise.
+     */
+    public boolean isApplied(String version) {
+        return migrations.containsKey(version);
+    }
+
+    /**
+     * Returns the history entry for a version.
+     * @param version Migration version (e.g., "V1").
+     * @return The applied migration, or `null` if it hasn't been applied.
+     */
+    public AppliedMigration get(String version) {
+        return migrations.get(version);
+    }
+
+    /**
+     * Returns the stored checksum for a version.
+     * @param version Migration version (e.g., "V1").
+     * @return The stored checksum, or `null` if the migration hasn't been applied.
+     */
+    public String getChecksum(String version) {
+        AppliedMigration migration = migrations.get(version);
+        return migration == null ? null : migration.checksum();
+    }
+
+    /**
+     * Returns all applied migrations in the order they were applied.
+     * @return Unmodifiable view of the history entries.
+     */
+    public Collection<AppliedMigration> appliedMigrations() {
+        return Collections.unmodifiableCollection(migrations.values());
+    }
+
+    /**
+     * Returns the migrations applied after a version, i.e. what has to be undone to get back to it.
+     * Baseline rows written by `squash` are left out: they have no rollback script and undo nothing.
+     * @param version Migration version to roll back to (stays applied).
+     * @return Migrations applied after `version`, most recent first.
+     * @throws IllegalArgumentException If `version` hasn't been applied.
+     */
+    public List<AppliedMigration> appliedAfter(String version) {
+        if (!isApplied(version)) {
+            throw new IllegalArgumentException("Migration " + version + " is not applied");
+        }
+        List<AppliedMigration> after = new ArrayList<>();
+        for (AppliedMigration migration : migrations.values()) {
+            if (!after.isEmpty() || migration.version().equals(version)) after.add(migration);
+        }
+        after.remove(0);
+        after.removeIf(MigrationHistory::isBaseline);
+        return after.reversed();
+    }
+
+    /**
+     * Returns the most recently applied migrations, skipping baseline rows written by `squash`.
+     * @param count Maximum number of migrations to return.
+     * @return Up to `count` migrations, most recent first.
+     */
+    public List<AppliedMigration> lastApplied(int count) {
+        List<AppliedMigration> all = new ArrayList<>(migrations.values());
+        all.removeIf(MigrationHistory::isBaseline);
+        return all.subList(Math.max(0, all.size() - count), all.size()).reversed();
+    }
+
+    private static boolean isBaseline(AppliedMigration migration) {
+        return migration.version().startsWith(BaselineScript.PREFIX);
+    }
+
+    public int size() {
+        return migrations.size();
+    }
+}
@@ -0,0 +1,82 @@
+package org.bereketab;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Session-level PostgreSQL advisory lock that serializes migration runs against the same schema, so many nodes
+ * can start `migrate` at once. Waiting happens inside `pg_advisory_lock`, so losers block on the server instead
+ * of polling. The lock is held on a dedicated connection until {@link #close()}.
+ * On databases other than PostgreSQL the lock is a no-op.
+ */
+public class MigrationLock implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MigrationLock.class);
+    private static final String LOCK_KEY = "hashtext(current_database() || '.' || coalesce(current_schema(), '') || '.migration_history')";
+    private final Connection conn;
+    private final long waitMillis;
+
+    private MigrationLock(Connection conn, long waitMillis) {
+        this.conn = conn;
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * Acquires the migration lock, waiting for other nodes that hold it.
+     * @param conn Connection dedicated to holding the lock; it is closed when the lock is released.
+     * @return The held lock.
+     * @throws SQLException If acquiring the lock fails.
+     */
+    static MigrationLock acquire(Connection conn) throws SQLException {
+        try {
+            if (!conn.getMetaData().getDatabaseProductName().toLowerCase().contains("postgresql")) {
+                conn.close();
+                return new MigrationLock(null, 0);
+            }
+            long start = System.nanoTime();
+            try (Statement stmt = conn.createStatement()) {
+                if (!queryBoolean(stmt, "SELECT pg_try_advisory_lock(" + LOCK_KEY + ")")) {
+                    logger.info("Another node is migrating, waiting for the migration lock...");
+                    stmt.execute("SELECT pg_advisory_lock(" + LOCK_KEY + ")");
+                }
+            }
+            long waitMillis = (System.nanoTime() - start) / 1_000_000;
+            logger.info("Acquired migration lock (waited {} ms)", waitMillis);
+            return new MigrationLock(conn, waitMillis);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Time spent waiting for the lock, in milliseconds.
+     */
+    public long getWaitMillis() {
+        return waitMillis;
+    }
+
+    /**
+     * Releases the lock and closes its connection.
+     * @throws SQLException If releasing the lock fails.
+     */
+    @Override
+    public void close() throws SQLException {
+        if (conn == null) return;
+        try (Connection c = conn; Statement stmt = c.createStatement()) {
+            if (!queryBoolean(stmt, "SELECT pg_advisory_unlock(" + LOCK_KEY + ")")) {
+                logger.warn("Migration lock was not held when releasing it");
+            }
+        }
+    }
+
+    private static boolean queryBoolean(Statement stmt, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getBoolean(1);
+        }
+    }
+}
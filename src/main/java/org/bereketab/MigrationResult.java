@@ -0,0 +1,20 @@
+package org.bereketab;
+
+import org.bereketab.script.StatementTiming;
+import java.util.List;
+
+/**
+ * Outcome and timings of applying (or rolling back) one migration.
+ * @param version Migration version (e.g., "V1").
+ * @param fileName Migration filename (e.g., "V1__create_table.sql").
+ * @param checksum Checksum of the executed script.
+ * @param executionMillis Wall time of the migration up to its history insert, including failed attempts.
+ * @param statements Number of statements executed.
+ * @param rowsAffected Rows inserted, updated or deleted by the script.
+ * @param lockWaitMillis Time the migration spent waiting on locks, or `null` if it wasn't measured.
+ * @param slowestStatements The slowest statements (or batches), slowest first.
+ * @param attempts Number of attempts it took (more than 1 after lock timeouts).
+ */
+public record MigrationResult(String version, String fileName, String checksum, long executionMillis, int statements,
+                              long rowsAffected, Long lockWaitMillis, List<StatementTiming> slowestStatements, int attempts) {
+}
@@ -1,21 +1,39 @@
 package org.bereketab;
 
-import com.zaxxer.hikari.HikariDataSource;
+import org.bereketab.metrics.LockWaitMonitor;
+import org.bereketab.metrics.ProgressMonitor;
+import org.bereketab.schema.SchemaSnapshot;
+import org.bereketab.script.BackfillExecutor;
+import org.bereketab.script.Checksums;
+import org.bereketab.script.MigrationCheckpoint;
+import org.bereketab.script.MigrationHeader;
+import org.bereketab.script.NonTransactionalExecutor;
+import org.bereketab.script.ResumableExecutor;
+import org.bereketab.script.ScriptResult;
+import org.bereketab.script.SidecarDataLoader;
+import org.bereketab.script.SqlScriptExecutor;
+import org.bereketab.source.MigrationSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import javax.sql.DataSource;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -23,20 +41,126 @@ import java.util.Set;
  */
 public class MigrationService {
     private static final Logger logger = LoggerFactory.getLogger(MigrationService.class);
-    public final HikariDataSource dataSource;
+    private static final int HISTORY_FETCH_SIZE = 1000;
+    // Order of application; applied_time can't tell apart the rows of one transaction
+    private static final String INSTALLED_RANK = "installed_rank";
+    // Columns added after the first release, with their types
+    private static final Map<String, String> ADDED_COLUMNS = Map.of("execution_time_ms", "BIGINT", "rows_affected", "BIGINT",
+            "lock_wait_ms", "BIGINT", "baseline", "VARCHAR(255)", INSTALLED_RANK, "BIGINT");
+    public final DataSource dataSource;
     private String migrationsDir = "migrations";
+    private MigrationSource source;
+    private int statementBatchSize = SqlScriptExecutor.DEFAULT_BATCH_SIZE;
+    private int copyMinRows = 0;
+    private ChecksumCache checksumCache;
+    private LockWaitMonitor lockWaitMonitor;
+    private ProgressMonitor progressMonitor;
+    private LockTimeoutPolicy lockTimeoutPolicy = LockTimeoutPolicy.NONE;
+    private volatile boolean historyTableReady;
 
-    public MigrationService(HikariDataSource dataSource) {
+    /**
+     * Creates the service without touching the database; the history table is created or verified
+     * by the first operation that writes to it.
+     * @param dataSource Data source for migration connections (a pool, or a lightweight one for CLI runs).
+     */
+    public MigrationService(DataSource dataSource) {
         this.dataSource = dataSource;
-        initMigrationHistoryTable();
     }
 
     /**
-     * Sets the directory where migration SQL files are stored.
-     * @param migrationsDir Path to the migrations directory (e.g., "migrations").
+     * Sets where migration SQL files are stored.
+     * @param migrationsDir Path to the migrations directory (e.g., "migrations"), or a classpath location packaged with
+     *                      the application (e.g., "classpath:migrations", see {@link MigrationSource}).
      */
-    public void setMigrationsDir(String migrationsDir) {
+    public synchronized void setMigrationsDir(String migrationsDir) {
         this.migrationsDir = migrationsDir;
+        this.source = null;
+    }
+
+    /**
+     * @return The directory (or classpath location) where migration SQL files are stored.
+     */
+    public String getMigrationsDir() {
+        return migrationsDir;
+    }
+
+    /**
+     * @return The source of migration scripts for the current migrations directory, opened on first use.
+     * @throws IOException If a packaged migration index cannot be read.
+     */
+    public synchronized MigrationSource getSource() throws IOException {
+        if (source == null) {
+            source = MigrationSource.open(migrationsDir);
+        }
+        return source;
+    }
+
+    /**
+     * Sets how many statements are sent per JDBC batch when executing migration scripts.
+     * @param statementBatchSize Statements per batch (1 disables batching).
+     */
+    public void setStatementBatchSize(int statementBatchSize) {
+        this.statementBatchSize = statementBatchSize;
+    }
+
+    /**
+     * Enables loading large literal-only `INSERT ... VALUES` statements through `COPY ... FROM STDIN` (PostgreSQL only).
+     * @param copyMinRows Minimum number of rows for an INSERT to be loaded with COPY (0 disables it).
+     */
+    public void setCopyMinRows(int copyMinRows) {
+        this.copyMinRows = copyMinRows;
+    }
+
+    /**
+     * Sets a checksum cache so unchanged migration files aren't re-read and re-hashed on every run.
+     * @param checksumCache The cache to use, or `null` to always hash files.
+     */
+    public void setChecksumCache(ChecksumCache checksumCache) {
+        this.checksumCache = checksumCache;
+    }
+
+    /**
+     * Sets a monitor that measures how long each applied migration waits on locks (PostgreSQL only).
+     * @param lockWaitMonitor The monitor to use, or `null` to not measure lock waits.
+     */
+    public void setLockWaitMonitor(LockWaitMonitor lockWaitMonitor) {
+        this.lockWaitMonitor = lockWaitMonitor;
+    }
+
+    /**
+     * Sets a monitor that reports the progress of long-running migrations (PostgreSQL only).
+     * @param progressMonitor The monitor to use, or `null` to not report progress.
+     */
+    public void setProgressMonitor(ProgressMonitor progressMonitor) {
+        this.progressMonitor = progressMonitor;
+    }
+
+    /**
+     * Sets the run-wide `lock_timeout`/`statement_timeout` and how long to retry migrations that time out on a lock.
+     * Migrations can override the timeouts in their header.
+     * @param lockTimeoutPolicy The policy to use ({@link LockTimeoutPolicy#NONE} leaves session settings alone).
+     */
+    public void setLockTimeoutPolicy(LockTimeoutPolicy lockTimeoutPolicy) {
+        this.lockTimeoutPolicy = lockTimeoutPolicy;
+    }
+
+    public ChecksumCache getChecksumCache() {
+        return checksumCache;
+    }
+
+    /**
+     * Creates or upgrades the `migration_history` table, once per service; commands that write history call it first.
+     * Callers that read or write the table directly (e.g. benchmarks) must call it themselves.
+     * @throws RuntimeException If the table can't be created or has an incompatible schema.
+     */
+    public void ensureHistoryTable() {
+        if (historyTableReady) return;
+        synchronized (this) {
+            if (!historyTableReady) {
+                initMigrationHistoryTable();
+                historyTableReady = true;
+            }
+        }
     }
 
     /**
@@ -49,7 +173,12 @@ public class MigrationService {
                 version VARCHAR(255) PRIMARY KEY,
                 file_name VARCHAR(255),
                 checksum VARCHAR(255),
-                applied_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                applied_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                execution_time_ms BIGINT,
+                rows_affected BIGINT,
+                lock_wait_ms BIGINT,
+                baseline VARCHAR(255),
+                installed_rank BIGINT
             )
             """;
         try (Connection conn = dataSource.getConnection();
@@ -66,6 +195,16 @@ public class MigrationService {
             if (!actualColumns.containsAll(requiredColumns)) {
                 throw new RuntimeException("Existing migration_history table has incompatible schema. Required columns: " + requiredColumns);
             }
+            // Tables created by older versions lack the timing, baseline and rank columns
+            for (Map.Entry<String, String> column : ADDED_COLUMNS.entrySet()) {
+                if (!actualColumns.contains(column.getKey())) {
+                    stmt.execute("ALTER TABLE migration_history ADD COLUMN " + column.getKey() + " " + column.getValue());
+                }
+            }
+            if (!actualColumns.contains(INSTALLED_RANK)) {
+                rankExistingHistory(conn);
+            }
+            createHistoryIndexes(stmt);
             logger.info("Initialized or verified migration_history table");
         } catch (SQLException e) {
             logger.error("Failed to initialize migration_history table", e);
@@ -74,16 +213,190 @@ public class MigrationService {
     }
 
     /**
-     * Returns a sorted list of migration files (excluding rollback scripts).
-     * @return List of `.sql` files in the migrations directory, ordered by filename.
+     * Numbers the rows of a history table created before `installed_rank` existed, in the order {@link #loadHistory}
+     * used to read them, with ties on `applied_time` broken by numeric version.
+     */
+    private void rankExistingHistory(Connection conn) throws SQLException {
+        List<AppliedMigration> rows = readHistory(conn).stream().map(RankedMigration::migration).toList();
+        if (rows.isEmpty()) return;
+        try (PreparedStatement stmt = conn.prepareStatement("UPDATE migration_history SET installed_rank = ? WHERE version = ?")) {
+            long rank = 0;
+            for (AppliedMigration migration : rows) {
+                stmt.setLong(1, ++rank);
+                stmt.setString(2, migration.version());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        logger.info("Ranked {} existing migration_history rows", rows.size());
+    }
+
+    /**
+     * Indexes `applied_time` and `installed_rank`, so finding the latest migrations and the next rank doesn't scan
+     * the history table. Databases without `CREATE INDEX IF NOT EXISTS` (e.g. MySQL) just go without them.
+     */
+    private void createHistoryIndexes(Statement stmt) {
+        try {
+            stmt.execute("CREATE INDEX IF NOT EXISTS migration_history_applied_time_idx ON migration_history (applied_time, version)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS migration_history_installed_rank_idx ON migration_history (installed_rank)");
+        } catch (SQLException e) {
+            logger.warn("Could not index migration_history: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the migration files (excluding rollback and baseline scripts), from the build-time index when the
+     * migrations are packaged with one.
+     * @return List of `.sql` files in the migrations directory, in numeric version order (`V2` before `V10`).
      * @throws IOException If the migrations directory cannot be read.
      */
     public List<Path> getMigrationFiles() throws IOException {
-        Path dir = Paths.get(migrationsDir);
-        return Files.list(dir)
-                .filter(path -> path.toString().endsWith(".sql") && !path.toString().contains("_rollback.sql"))
-                .sorted()
-                .toList();
+        return getSource().getMigrationFiles();
+    }
+
+    /**
+     * Returns the baseline script of the migrations directory, if `squash` has written one.
+     * @return Path to the `B<version>__baseline.sql` script, or `null` if there is none.
+     * @throws IOException If the migrations directory cannot be read.
+     * @throws IllegalStateException If there is more than one baseline script.
+     */
+    public Path getBaselineFile() throws IOException {
+        List<Path> baselines = getSource().getBaselineFiles();
+        if (baselines.size() > 1) {
+            throw new IllegalStateException("More than one baseline script in " + migrationsDir + ": " + baselines);
+        }
+        return baselines.isEmpty() ? null : baselines.get(0);
+    }
+
+    /**
+     * Records a freshly written baseline on the database it was generated from: the covered migrations are marked
+     * with the baseline's version and the baseline gets a history row of its own, in one transaction.
+     * @param conn Active database connection (transaction will be managed here).
+     * @param baselineFile The baseline script.
+     * @param covered Applied migrations the baseline replaces.
+     * @throws SQLException If the history update fails.
+     * @throws IOException If the baseline script cannot be read.
+     */
+    public void recordBaseline(Connection conn, Path baselineFile, List<AppliedMigration> covered) throws SQLException, IOException {
+        ensureHistoryTable();
+        String filename = baselineFile.getFileName().toString();
+        String version = filename.split("__")[0];
+        String checksum = calculateChecksum(baselineFile);
+        conn.setAutoCommit(false);
+        try {
+            // Squashing again at the same version replaces the earlier baseline row
+            deleteMigrationHistory(conn, version);
+            try (PreparedStatement stmt = conn.prepareStatement("UPDATE migration_history SET baseline = ? WHERE version = ?")) {
+                for (AppliedMigration migration : covered) {
+                    stmt.setString(1, version);
+                    stmt.setString(2, migration.version());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            insertMigrationHistory(conn, new MigrationResult(version, filename, checksum, 0, 0, 0, null, List.of(), 1));
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Loads the whole history table into an in-memory snapshot using a single streamed query.
+     * @return Snapshot of applied migrations, in the order they were applied.
+     * @throws SQLException If the database query fails.
+     */
+    public MigrationHistory loadHistory() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            return loadHistory(conn);
+        }
+    }
+
+    /**
+     * Loads the whole history table into an in-memory snapshot using a single streamed query.
+     * @param conn Active database connection.
+     * @return Snapshot of applied migrations, in the order they were applied.
+     * @throws SQLException If the database query fails.
+     */
+    public MigrationHistory loadHistory(Connection conn) throws SQLException {
+        Map<String, AppliedMigration> migrations = new LinkedHashMap<>();
+        boolean autoCommit = conn.getAutoCommit();
+        // The PostgreSQL driver only streams rows with a cursor when auto-commit is off
+        conn.setAutoCommit(false);
+        try {
+            for (RankedMigration row : readHistory(conn)) {
+                migrations.put(row.migration().version(), row.migration());
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            // Handle case where the history table doesn't exist yet (PostgreSQL-specific error code)
+            if (!"42P01".equals(e.getSQLState())) throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return new MigrationHistory(migrations);
+    }
+
+    /**
+     * A history row with its `installed_rank`, which is `null` for rows written before ranks existed (or by a baseline
+     * script generated before then).
+     */
+    private record RankedMigration(AppliedMigration migration, Long rank) {
+        // Unranked rows can only predate ranked ones; within a transaction applied_time ties, so versions break ties
+        static final Comparator<RankedMigration> ORDER = Comparator
+                .comparing(RankedMigration::rank, Comparator.nullsFirst(Comparator.<Long>naturalOrder()))
+                .thenComparing(row -> row.migration().appliedTime(), Comparator.nullsFirst(Comparator.<Timestamp>naturalOrder()))
+                .thenComparing(row -> row.migration().version(), MigrationSource::compareVersions);
+    }
+
+    /**
+     * Reads every history row, sorted into application order. Tables from before `installed_rank` are read too.
+     */
+    private List<RankedMigration> readHistory(Connection conn) throws SQLException {
+        List<RankedMigration> rows = new ArrayList<>();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(HISTORY_FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery("SELECT * FROM migration_history")) {
+                boolean ranked = hasColumn(rs, INSTALLED_RANK);
+                while (rs.next()) {
+                    String version = rs.getString("version");
+                    rows.add(new RankedMigration(new AppliedMigration(version, rs.getString("file_name"), rs.getString("checksum"),
+                            rs.getTimestamp("applied_time"), rs.getObject("execution_time_ms", Long.class)),
+                            ranked ? rs.getObject(INSTALLED_RANK, Long.class) : null));
+                }
+            }
+        }
+        rows.sort(RankedMigration.ORDER);
+        return rows;
+    }
+
+    private static boolean hasColumn(ResultSet rs, String column) {
+        try {
+            rs.findColumn(column);
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Takes the cluster-wide migration lock so only one node migrates this schema at a time, then creates or upgrades
+     * the history table while holding it, so nodes starting together don't race on that DDL either.
+     * Callers should reload the history snapshot after acquiring it, since the previous holder may have applied migrations.
+     * @return The held lock; close it to release the lock and its connection.
+     * @throws SQLException If acquiring the lock fails.
+     */
+    public MigrationLock acquireMigrationLock() throws SQLException {
+        MigrationLock lock = MigrationLock.acquire(dataSource.getConnection());
+        try {
+            ensureHistoryTable();
+        } catch (RuntimeException e) {
+            lock.close();
+            throw e;
+        }
+        return lock;
     }
 
     /**
@@ -133,19 +446,16 @@ public class MigrationService {
      * @throws SQLException If the migration fails or the history update fails.
      */
     public void applyMigration(Connection conn, String version, String filename, String sql) throws SQLException {
+        ensureHistoryTable();
         conn.setAutoCommit(false);
         try {
+            long start = System.nanoTime();
+            long rows;
             try (Statement stmt = conn.createStatement()) {
-                stmt.execute(sql);
-            }
-            // Record the migration in history
-            String insertSql = "INSERT INTO migration_history (version, file_name, checksum) VALUES (?, ?, ?)";
-            try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-                insertStmt.setString(1, version);
-                insertStmt.setString(2, filename);
-                insertStmt.setString(3, calculateChecksum(sql));
-                insertStmt.executeUpdate();
+                rows = stmt.execute(sql) ? 0 : Math.max(0, stmt.getUpdateCount());
             }
+            insertMigrationHistory(conn, new MigrationResult(version, filename, calculateChecksum(sql),
+                    (System.nanoTime() - start) / 1_000_000, 1, rows, null, List.of(), 1));
             conn.commit();
         } catch (SQLException e) {
             conn.rollback();
@@ -153,27 +463,388 @@ public class MigrationService {
         }
     }
 
+    /**
+     * Applies a migration script by streaming it from disk in batches of statements, and records it in the history table.
+     * Sidecar data files (`V1__name.<table>.csv`/`.tsv`) are copied in after the script. Everything runs in a single transaction,
+     * unless the script's header says `-- transaction: none`; then each statement commits on its own and the history row is
+     * written only after the last one succeeds (see {@link NonTransactionalExecutor}). Scripts with a `-- backfill:` header
+     * commit per chunk and resume from their checkpoint (see {@link BackfillExecutor}); scripts with a `-- resumable:` header
+     * commit per segment of statements and resume after the last one (see {@link ResumableExecutor}).
+     * @param conn Active database connection (transaction will be managed here).
+     * @param version Migration version (e.g., "V1").
+     * @param file Path to the migration script.
+     * @return Checksum and timings of the applied migration.
+     * @throws SQLException If the migration fails or the history update fails.
+     * @throws IOException If the script cannot be read.
+     */
+    public MigrationResult applyMigration(Connection conn, String version, Path file) throws SQLException, IOException {
+        ensureHistoryTable();
+        // Attributes are read before the script so a concurrent edit is never cached under the old checksum
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        MigrationHeader header = MigrationHeader.read(file);
+        long start = System.nanoTime();
+        int pid = startMonitoring(conn, file.getFileName().toString());
+        try {
+            MigrationResult result = lockTimeoutPolicy.withOverrides(header).run(conn, file.getFileName().toString(),
+                    attempt -> applyOnce(conn, version, file, header, start, pid, attempt));
+            // The cache holds script checksums, and a result's includes its sidecar data
+            if (checksumCache != null && getSource().getSidecarFiles(file).isEmpty()) {
+                checksumCache.put(file, attributes, result.checksum());
+            }
+            return result;
+        } finally {
+            stopMonitoring(pid);
+        }
+    }
+
+    /**
+     * Checks whether a migration can share a transaction with others in {@link #applyMigrationGroup}: it must run in a
+     * transaction, not commit in chunks or segments, and not set its own lock or statement timeout.
+     * @param file Path to the migration script.
+     * @return `true` if the migration can be grouped.
+     * @throws IOException If the script's header cannot be read.
+     */
+    public boolean isGroupable(Path file) throws IOException {
+        MigrationHeader header = MigrationHeader.read(file);
+        return header.isTransactional() && !header.has(BackfillExecutor.BACKFILL) && !header.has(ResumableExecutor.RESUMABLE)
+                && !header.has(LockTimeoutPolicy.LOCK_TIMEOUT) && !header.has(LockTimeoutPolicy.STATEMENT_TIMEOUT);
+    }
+
+    /**
+     * Applies several migrations in version order on one connection and in a single transaction, with one batched
+     * history insert, so a group costs one commit instead of one per migration. If any migration fails, the whole group
+     * is rolled back; a lock timeout retries the whole group under the lock timeout policy.
+     * Every migration must be {@link #isGroupable groupable}.
+     * @param conn Active database connection (transaction will be managed here).
+     * @param files Migration scripts, in the order to apply them.
+     * @return Checksum and timings of each applied migration, in the same order.
+     * @throws SQLException If a migration fails or the history update fails.
+     * @throws IOException If a script cannot be read.
+     */
+    public List<MigrationResult> applyMigrationGroup(Connection conn, List<Path> files) throws SQLException, IOException {
+        if (files.isEmpty()) return List.of();
+        ensureHistoryTable();
+        List<BasicFileAttributes> attributes = new ArrayList<>(files.size());
+        for (Path file : files) {
+            attributes.add(Files.readAttributes(file, BasicFileAttributes.class));
+        }
+        String name = files.get(0).getFileName() + (files.size() > 1 ? " (+" + (files.size() - 1) + " grouped)" : "");
+        int pid = startMonitoring(conn, name);
+        try {
+            List<MigrationResult> results = lockTimeoutPolicy.run(conn, name, attempt -> applyGroupOnce(conn, files, pid, attempt));
+            if (checksumCache != null) {
+                for (int i = 0; i < files.size(); i++) {
+                    if (!getSource().getSidecarFiles(files.get(i)).isEmpty()) continue;
+                    checksumCache.put(files.get(i), attributes.get(i), results.get(i).checksum());
+                }
+            }
+            return results;
+        } finally {
+            stopMonitoring(pid);
+        }
+    }
+
+    private List<MigrationResult> applyGroupOnce(Connection conn, List<Path> files, int pid, int attempt) throws SQLException, IOException {
+        conn.setAutoCommit(false);
+        try {
+            SqlScriptExecutor executor = new SqlScriptExecutor(statementBatchSize, copyMinRows);
+            List<MigrationResult> results = new ArrayList<>(files.size());
+            for (Path file : files) {
+                long start = System.nanoTime();
+                ScriptResult script = executor.execute(conn, file);
+                List<Path> sidecars = getSource().getSidecarFiles(file);
+                long rows = script.rowsAffected() + loadSidecarData(conn, file, sidecars);
+                String filename = file.getFileName().toString();
+                results.add(new MigrationResult(filename.split("__")[0], filename, MigrationSource.checksumWithSidecars(script.checksum(), sidecars),
+                        (System.nanoTime() - start) / 1_000_000, script.statements(), rows, nextLockWaitMillis(pid),
+                        script.slowestStatements(), attempt));
+            }
+            insertMigrationHistory(conn, results);
+            conn.commit();
+            return results;
+        } catch (SQLException | IOException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    private MigrationResult applyOnce(Connection conn, String version, Path file, MigrationHeader header, long start, int pid, int attempt)
+            throws SQLException, IOException {
+        if (header.has(BackfillExecutor.BACKFILL) || header.has(ResumableExecutor.RESUMABLE)) {
+            return applyCheckpointed(conn, version, file, header, start, pid, attempt);
+        }
+        if (!header.isTransactional()) {
+            logger.info("Running {} outside a transaction", file.getFileName());
+            return executeMigration(conn, version, file, false, start, pid, attempt);
+        }
+        conn.setAutoCommit(false);
+        try {
+            MigrationResult result = executeMigration(conn, version, file, true, start, pid, attempt);
+            conn.commit();
+            return result;
+        } catch (SQLException | IOException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    private MigrationResult applyCheckpointed(Connection conn, String version, Path file, MigrationHeader header, long start, int pid,
+                                              int attempt) throws SQLException, IOException {
+        boolean backfill = header.has(BackfillExecutor.BACKFILL);
+        logger.info(backfill ? "Running {} as a chunked backfill" : "Running {} in resumable segments", file.getFileName());
+        try {
+            ScriptResult script = backfill
+                    ? new BackfillExecutor(header).execute(conn, version, file)
+                    : new ResumableExecutor(header).execute(conn, version, file);
+            // Sidecar data is loaded with the history row, so a failed load is retried on the next run
+            List<Path> sidecars = getSource().getSidecarFiles(file);
+            long rows = script.rowsAffected() + loadSidecarData(conn, file, sidecars);
+            MigrationResult result = new MigrationResult(version, file.getFileName().toString(),
+                    MigrationSource.checksumWithSidecars(script.checksum(), sidecars), (System.nanoTime() - start) / 1_000_000,
+                    script.statements(), rows, lockWaitMillis(pid), script.slowestStatements(), attempt);
+            // The history row replaces the checkpoint in one transaction
+            insertMigrationHistory(conn, result);
+            MigrationCheckpoint.delete(conn, version);
+            conn.commit();
+            return result;
+        } catch (SQLException | IOException e) {
+            // Only the failed chunk or segment is rolled back; committed ones are kept and resumed on the next run
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    private MigrationResult executeMigration(Connection conn, String version, Path file, boolean transactional, long start, int pid,
+                                             int attempt) throws SQLException, IOException {
+        ScriptResult script = transactional
+                ? new SqlScriptExecutor(statementBatchSize, copyMinRows).execute(conn, file)
+                : new NonTransactionalExecutor().execute(conn, file);
+        List<Path> sidecars = getSource().getSidecarFiles(file);
+        long rows = script.rowsAffected() + loadSidecarData(conn, file, sidecars);
+        MigrationResult result = new MigrationResult(version, file.getFileName().toString(),
+                MigrationSource.checksumWithSidecars(script.checksum(), sidecars), (System.nanoTime() - start) / 1_000_000,
+                script.statements(), rows, lockWaitMillis(pid), script.slowestStatements(), attempt);
+        insertMigrationHistory(conn, result);
+        return result;
+    }
+
+    private long loadSidecarData(Connection conn, Path file, List<Path> sidecars) throws IOException, SQLException {
+        SidecarDataLoader loader = new SidecarDataLoader();
+        long rows = 0;
+        for (Path sidecar : sidecars) {
+            rows += loader.load(conn, file, sidecar);
+        }
+        return rows;
+    }
+
+    private void insertMigrationHistory(Connection conn, MigrationResult result) throws SQLException {
+        insertMigrationHistory(conn, List.of(result));
+    }
+
+    private void insertMigrationHistory(Connection conn, List<MigrationResult> results) throws SQLException {
+        // Ranks are assigned under a lock held until the transaction ends, so a non-transactional migration gets a short
+        // transaction of its own for its history row
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) conn.setAutoCommit(false);
+        try {
+            insertRankedHistory(conn, results);
+            if (autoCommit) conn.commit();
+        } catch (SQLException e) {
+            if (autoCommit) conn.rollback();
+            throw e;
+        } finally {
+            if (autoCommit) conn.setAutoCommit(true);
+        }
+    }
+
+    private void insertRankedHistory(Connection conn, List<MigrationResult> results) throws SQLException {
+        // Record the migrations in history, in one round trip
+        String insertSql = """
+            INSERT INTO migration_history (version, file_name, checksum, execution_time_ms, rows_affected, lock_wait_ms, installed_rank)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            """;
+        lockInstalledRanks(conn);
+        long rank = lastInstalledRank(conn);
+        try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
+            for (MigrationResult result : results) {
+                insertStmt.setString(1, result.version());
+                insertStmt.setString(2, result.fileName());
+                insertStmt.setString(3, result.checksum());
+                insertStmt.setLong(4, result.executionMillis());
+                insertStmt.setLong(5, result.rowsAffected());
+                insertStmt.setObject(6, result.lockWaitMillis(), Types.BIGINT);
+                insertStmt.setLong(7, ++rank);
+                insertStmt.addBatch();
+            }
+            insertStmt.executeBatch();
+        }
+    }
+
+    /**
+     * Serializes rank assignment on PostgreSQL with a transaction-scoped advisory lock, so migrations committing
+     * concurrently (`--parallel`) can't read the same last rank: the next one reads it only after this transaction
+     * has committed its rows. Like the migration lock, this is a no-op on other databases.
+     */
+    private void lockInstalledRanks(Connection conn) throws SQLException {
+        if (!conn.getMetaData().getDatabaseProductName().toLowerCase().contains("postgresql")) return;
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SELECT pg_advisory_xact_lock(hashtext(current_database() || '.' || coalesce(current_schema(), '')"
+                    + " || '.migration_history.installed_rank'))");
+        }
+    }
+
+    /**
+     * Reads the highest rank in the history, in the inserting transaction and after {@link #lockInstalledRanks}.
+     */
+    private long lastInstalledRank(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(installed_rank), 0) FROM migration_history")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Registers the connection's backend with the lock wait and progress monitors, if set.
+     * @param name Name to report progress under.
+     * @return The backend PID, or -1 if nothing is being monitored.
+     */
+    private int startMonitoring(Connection conn, String name) {
+        if (lockWaitMonitor == null && progressMonitor == null) return -1;
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT pg_backend_pid()")) {
+            rs.next();
+            int pid = rs.getInt(1);
+            if (lockWaitMonitor != null) lockWaitMonitor.register(pid);
+            if (progressMonitor != null) progressMonitor.register(pid, name);
+            return pid;
+        } catch (SQLException e) {
+            logger.debug("Migration monitoring unavailable: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+    private Long lockWaitMillis(int pid) {
+        return pid == -1 || lockWaitMonitor == null ? null : lockWaitMonitor.unregister(pid);
+    }
+
+    /**
+     * Reads the lock wait measured so far and starts measuring again, for migrations sharing one connection.
+     */
+    private Long nextLockWaitMillis(int pid) {
+        if (pid == -1 || lockWaitMonitor == null) return null;
+        long waited = lockWaitMonitor.unregister(pid);
+        lockWaitMonitor.register(pid);
+        return waited;
+    }
+
+    private void stopMonitoring(int pid) {
+        if (pid == -1) return;
+        if (lockWaitMonitor != null) lockWaitMonitor.unregister(pid);
+        if (progressMonitor != null) progressMonitor.unregister(pid);
+    }
+
     /**
      * Rolls back a migration by executing its rollback script (if found) and removing its history record.
      * @param conn Active database connection.
      * @param version Migration version (e.g., "V1").
      * @param filename Migration filename (e.g., "V1__create_table.sql").
+     * @return Timings of the rollback script, or `null` if no rollback script was found.
      * @throws SQLException If the rollback fails.
      * @throws IOException If the rollback script cannot be read.
      */
-    public void rollbackMigration(Connection conn, String version, String filename) throws SQLException, IOException {
-        conn.setAutoCommit(false);
-        try {
-            Path rollbackPath = resolveRollbackPath(filename);
-            if (rollbackPath != null) {
-                executeRollbackScript(conn, rollbackPath, filename);
+    public MigrationResult rollbackMigration(Connection conn, String version, String filename) throws SQLException, IOException {
+        ensureHistoryTable();
+        Path rollbackPath = resolveRollbackPath(filename);
+        if (rollbackPath == null) {
+            logger.warn("No rollback script found for {}", filename);
+            return null;
+        }
+        long start = System.nanoTime();
+        return lockTimeoutPolicy.withOverrides(MigrationHeader.read(rollbackPath)).run(conn, rollbackPath.getFileName().toString(), attempt -> {
+            conn.setAutoCommit(false);
+            try {
+                ScriptResult script = executeRollbackScript(conn, rollbackPath);
                 deleteMigrationHistory(conn, version);
                 conn.commit();
                 logger.info("Executed rollback script: {}", filename);
+                return new MigrationResult(version, rollbackPath.getFileName().toString(), script.checksum(),
+                        (System.nanoTime() - start) / 1_000_000, script.statements(), script.rowsAffected(), null,
+                        script.slowestStatements(), attempt);
+            } catch (SQLException | IOException e) {
+                conn.rollback();
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Rolls back a chain of migrations, most recent first, by executing their rollback scripts and removing their
+     * history records. Every rollback script is resolved and its header read before anything runs, so a missing script
+     * leaves the database untouched. The scripts run in transactions of up to `groupSize` migrations (the whole chain
+     * when `groupSize` is 0), each with one batched history delete; scripts with their own timeout headers run alone.
+     * @param conn Active database connection (transactions will be managed here).
+     * @param chain Migrations to undo, most recent first (see {@link MigrationHistory#appliedAfter(String)}).
+     * @param groupSize Maximum migrations per transaction, or 0 for a single transaction.
+     * @return Timings of each rollback script, in the order they ran.
+     * @throws SQLException If a rollback fails; only its own group is restored, groups committed before it stay undone.
+     * @throws IOException If a rollback script cannot be read.
+     * @throws IllegalStateException If a migration in the chain has no rollback script.
+     */
+    public List<MigrationResult> rollbackMigrations(Connection conn, List<AppliedMigration> chain, int groupSize)
+            throws SQLException, IOException {
+        ensureHistoryTable();
+        List<Path> scripts = new ArrayList<>(chain.size());
+        List<MigrationHeader> headers = new ArrayList<>(chain.size());
+        List<String> missing = new ArrayList<>();
+        for (AppliedMigration migration : chain) {
+            Path rollbackPath = resolveRollbackPath(migration.fileName());
+            if (rollbackPath == null) {
+                missing.add(migration.fileName());
             } else {
-                logger.warn("No rollback script found for {}", filename);
-                conn.commit(); // Commit even if no rollback script exists (no-op)
+                scripts.add(rollbackPath);
+                headers.add(MigrationHeader.read(rollbackPath));
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("No rollback script for " + String.join(", ", missing) + "; nothing was rolled back");
+        }
+        int limit = groupSize > 0 ? groupSize : Integer.MAX_VALUE;
+        List<MigrationResult> results = new ArrayList<>(chain.size());
+        int from = 0;
+        while (from < chain.size()) {
+            int to = from + 1;
+            if (!hasTimeoutOverrides(headers.get(from))) {
+                while (to < chain.size() && to - from < limit && !hasTimeoutOverrides(headers.get(to))) to++;
+            }
+            LockTimeoutPolicy policy = to - from == 1 ? lockTimeoutPolicy.withOverrides(headers.get(from)) : lockTimeoutPolicy;
+            List<AppliedMigration> group = chain.subList(from, to);
+            List<Path> groupScripts = scripts.subList(from, to);
+            results.addAll(policy.run(conn, groupScripts.get(0).getFileName().toString(),
+                    attempt -> rollbackGroupOnce(conn, group, groupScripts, attempt)));
+            from = to;
+        }
+        return results;
+    }
+
+    private static boolean hasTimeoutOverrides(MigrationHeader header) {
+        return header.has(LockTimeoutPolicy.LOCK_TIMEOUT) || header.has(LockTimeoutPolicy.STATEMENT_TIMEOUT);
+    }
+
+    private List<MigrationResult> rollbackGroupOnce(Connection conn, List<AppliedMigration> group, List<Path> scripts, int attempt)
+            throws SQLException, IOException {
+        conn.setAutoCommit(false);
+        try {
+            SqlScriptExecutor executor = new SqlScriptExecutor(statementBatchSize);
+            List<MigrationResult> results = new ArrayList<>(group.size());
+            for (int i = 0; i < group.size(); i++) {
+                long start = System.nanoTime();
+                ScriptResult script = executor.execute(conn, scripts.get(i));
+                results.add(new MigrationResult(group.get(i).version(), scripts.get(i).getFileName().toString(), script.checksum(),
+                        (System.nanoTime() - start) / 1_000_000, script.statements(), script.rowsAffected(), null,
+                        script.slowestStatements(), attempt));
             }
+            deleteMigrationHistory(conn, group.stream().map(AppliedMigration::version).toList());
+            conn.commit();
+            return results;
         } catch (SQLException | IOException e) {
             conn.rollback();
             throw e;
@@ -181,53 +852,112 @@ public class MigrationService {
     }
 
     /**
-     * Resolves the path to a rollback script (checks both `migrationsDir` and `target/test-migrations`).
+     * Resolves the path to a rollback script (checks the migration source, then `target/test-migrations`).
      * @param filename Base migration filename (e.g., "V1__create_table.sql").
      * @return Path to the rollback script, or `null` if not found.
+     * @throws IOException If a packaged migration index cannot be read.
      */
-    private Path resolveRollbackPath(String filename) {
-        String rollbackFileName = filename.replace(".sql", "_rollback.sql");
-        Path rollbackPath = Paths.get("target/test-migrations", rollbackFileName);
-        if (!Files.exists(rollbackPath)) {
-            rollbackPath = Paths.get(migrationsDir, rollbackFileName);
+    private Path resolveRollbackPath(String filename) throws IOException {
+        Path rollbackPath = getSource().getRollbackFile(filename);
+        if (rollbackPath == null) {
+            rollbackPath = Paths.get("target/test-migrations", MigrationSource.rollbackFileName(filename));
+            if (!Files.exists(rollbackPath)) return null;
         }
-        return Files.exists(rollbackPath) ? rollbackPath : null;
+        return rollbackPath;
     }
 
-    private void executeRollbackScript(Connection conn, Path rollbackPath, String filename) throws IOException, SQLException {
-        String rollbackSql = Files.readString(rollbackPath);
-        try (Statement stmt = conn.createStatement()) {
-            stmt.execute(rollbackSql);
-        }
+    private ScriptResult executeRollbackScript(Connection conn, Path rollbackPath) throws IOException, SQLException {
+        return new SqlScriptExecutor(statementBatchSize).execute(conn, rollbackPath);
     }
 
     private void deleteMigrationHistory(Connection conn, String version) throws SQLException {
+        deleteMigrationHistory(conn, List.of(version));
+    }
+
+    private void deleteMigrationHistory(Connection conn, List<String> versions) throws SQLException {
         String deleteSql = "DELETE FROM migration_history WHERE version = ?";
         try (PreparedStatement deleteStmt = conn.prepareStatement(deleteSql)) {
-            deleteStmt.setString(1, version);
-            deleteStmt.executeUpdate();
+            for (String version : versions) {
+                deleteStmt.setString(1, version);
+                deleteStmt.addBatch();
+            }
+            deleteStmt.executeBatch();
         }
     }
 
     /**
      * Calculates a SHA-256 checksum for a SQL script (used for detecting changes).
      * @param sql The SQL script to hash.
-     * @return Hex-encoded SHA-256 checksum, or "error_checksum" if hashing fails.
+     * @return Hex-encoded SHA-256 checksum of its UTF-8 bytes.
      */
     public String calculateChecksum(String sql) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(sql.getBytes());
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
+        return Checksums.sha256(sql);
+    }
+
+    /**
+     * Calculates the SHA-256 checksum of a migration file by streaming its bytes, without decoding it into a String.
+     * Gives the same result as {@link #calculateChecksum(String)} on the file's contents.
+     * @param file Path to the migration file.
+     * @return Hex-encoded SHA-256 checksum.
+     * @throws IOException If the file cannot be read.
+     */
+    public String calculateChecksum(Path file) throws IOException {
+        return Checksums.sha256(file);
+    }
+
+    /**
+     * Returns the checksum of a migration file and its sidecar data, from the build-time index for packaged migrations,
+     * or using the checksum cache (if set) to skip re-hashing unchanged scripts.
+     * @param file Path to the migration file.
+     * @return Hex-encoded SHA-256 checksum of the file, see {@link MigrationSource#checksumWithSidecars}.
+     * @throws IOException If the file cannot be read.
+     */
+    public String getChecksum(Path file) throws IOException {
+        String indexed = getSource().getIndexedChecksum(file);
+        if (indexed != null) {
+            return indexed;
+        }
+        List<Path> sidecars = getSource().getSidecarFiles(file);
+        if (checksumCache == null) {
+            return MigrationSource.checksumWithSidecars(calculateChecksum(file), sidecars);
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        String checksum = checksumCache.get(file, attributes);
+        if (checksum == null) {
+            checksum = calculateChecksum(file);
+            checksumCache.put(file, attributes, checksum);
+        }
+        return MigrationSource.checksumWithSidecars(checksum, sidecars);
+    }
+
+    /**
+     * Records the live schema as the one `validate` expects (PostgreSQL only, see {@link SchemaSnapshot}).
+     * Failures are only logged, since the snapshot is only used for drift detection.
+     * @param replaceExisting `false` to record only if no snapshot exists yet.
+     */
+    public void recordSchemaSnapshot(boolean replaceExisting) {
+        try (Connection conn = dataSource.getConnection()) {
+            if (!SchemaSnapshot.isSupported(conn)) return;
+            SchemaSnapshot snapshot = new SchemaSnapshot(conn);
+            if (replaceExisting || snapshot.expectedFingerprint() == null) {
+                snapshot.record();
+                logger.info("Recorded schema snapshot for validate");
             }
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            logger.error("Failed to calculate checksum", e);
-            return "error_checksum";
+        } catch (SQLException e) {
+            logger.warn("Failed to record schema snapshot: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the checksum cache back to disk if it is set and has changed. Failures are only logged,
+     * since the cache is an optimization.
+     */
+    public void saveChecksumCache() {
+        if (checksumCache == null) return;
+        try {
+            checksumCache.save();
+        } catch (IOException e) {
+            logger.warn("Failed to save checksum cache: {}", e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package org.bereketab.baseline;
+
+import org.bereketab.AppliedMigration;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A baseline migration: one script recreating the schema reached by a run of applied migrations, named
+ * `B<version>__baseline.sql` after the last migration it covers. On a database with an empty history it is applied
+ * instead of the covered migrations; besides the schema it inserts their history rows, so they are skipped afterwards.
+ */
+public final class BaselineScript {
+    public static final String PREFIX = "B";
+    public static final String SUFFIX = "__baseline.sql";
+
+    private BaselineScript() {
+    }
+
+    /**
+     * @param file A file in the migrations directory.
+     * @return `true` if the file is a baseline script.
+     */
+    public static boolean isBaseline(Path file) {
+        String filename = file.getFileName().toString();
+        return filename.startsWith(PREFIX) && filename.endsWith(SUFFIX);
+    }
+
+    /**
+     * @param lastVersion Last migration version covered by the baseline (e.g., "V57").
+     * @return Baseline filename (e.g., "B57__baseline.sql").
+     */
+    public static String fileName(String lastVersion) {
+        return PREFIX + (lastVersion.startsWith("V") ? lastVersion.substring(1) : lastVersion) + SUFFIX;
+    }
+
+    /**
+     * Renders the baseline script.
+     * @param baselineVersion Version of the baseline itself (e.g., "B57").
+     * @param schema DDL recreating the schema (see {@link SchemaGenerator}).
+     * @param covered Applied migrations the baseline replaces, in the order they were applied.
+     * @param generatedAt Time the schema was captured, for the header.
+     * @return The script text.
+     */
+    public static String render(String baselineVersion, String schema, List<AppliedMigration> covered, Instant generatedAt) {
+        StringBuilder script = new StringBuilder()
+                .append("-- Baseline ").append(baselineVersion).append(" generated by squash at ").append(generatedAt).append('\n')
+                .append("-- Covers ").append(covered.size()).append(" migrations, ").append(covered.get(0).version())
+                .append(" to ").append(covered.get(covered.size() - 1).version()).append('\n')
+                .append("-- Only applied to databases with an empty migration_history\n\n")
+                .append(schema.strip()).append("\n\n")
+                .append("INSERT INTO migration_history (version, file_name, checksum, baseline, installed_rank) VALUES\n");
+        for (int i = 0; i < covered.size(); i++) {
+            AppliedMigration migration = covered.get(i);
+            script.append("    (").append(literal(migration.version())).append(", ").append(literal(migration.fileName()))
+                    .append(", ").append(literal(migration.checksum())).append(", ").append(literal(baselineVersion))
+                    // The history is empty when a baseline runs, so the covered migrations rank first, in their order
+                    .append(", ").append(i + 1).append(')')
+                    .append(i < covered.size() - 1 ? ",\n" : ";\n");
+        }
+        return script.toString();
+    }
+
+    private static String literal(String value) {
+        return value == null ? "NULL" : "'" + value.replace("'", "''") + "'";
+    }
+}
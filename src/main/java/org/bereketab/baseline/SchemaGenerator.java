@@ -0,0 +1,220 @@
+package org.bereketab.baseline;
+
+import org.bereketab.schema.SchemaSnapshot;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates DDL recreating the tables, sequences, constraints and indexes of the current schema from the PostgreSQL
+ * catalog. Names are left unqualified so the script can be replayed into any schema. Views, functions, user-defined
+ * types and partitioned or foreign tables are not generated; they are listed by {@link #getSkippedObjects()}.
+ * The tool's own tables (`migration_history`, `migration_checkpoint`, `migration_schema_snapshot`) are left out.
+ */
+public class SchemaGenerator {
+    private static final Set<String> TOOL_TABLES = Set.of("migration_history", "migration_checkpoint", SchemaSnapshot.TABLE);
+    private static final String SEQUENCES_SQL = """
+            SELECT quote_ident(c.relname), format_type(s.seqtypid, NULL), s.seqincrement, s.seqmin, s.seqmax,
+                   s.seqstart, s.seqcache, s.seqcycle
+            FROM pg_sequence s
+            JOIN pg_class c ON c.oid = s.seqrelid
+            JOIN pg_namespace n ON n.oid = c.relnamespace
+            WHERE n.nspname = current_schema()
+              AND NOT EXISTS (SELECT 1 FROM pg_depend d WHERE d.objid = s.seqrelid AND d.deptype IN ('i', 'e'))
+            ORDER BY c.relname
+            """;
+    private static final String TABLES_SQL = """
+            SELECT c.oid, c.relname, quote_ident(c.relname)
+            FROM pg_class c
+            JOIN pg_namespace n ON n.oid = c.relnamespace
+            WHERE n.nspname = current_schema() AND c.relkind = 'r' AND NOT c.relispartition
+              AND NOT EXISTS (SELECT 1 FROM pg_depend d WHERE d.objid = c.oid AND d.deptype = 'e')
+            ORDER BY c.relname
+            """;
+    private static final String COLUMNS_SQL = """
+            SELECT quote_ident(a.attname), format_type(a.atttypid, a.atttypmod), a.attnotnull,
+                   pg_get_expr(d.adbin, d.adrelid), a.attidentity, a.attgenerated
+            FROM pg_attribute a
+            LEFT JOIN pg_attrdef d ON d.adrelid = a.attrelid AND d.adnum = a.attnum
+            WHERE a.attrelid = ?::oid AND a.attnum > 0 AND NOT a.attisdropped
+            ORDER BY a.attnum
+            """;
+    private static final String CONSTRAINTS_SQL = """
+            SELECT quote_ident(conname), contype, pg_get_constraintdef(oid)
+            FROM pg_constraint
+            WHERE conrelid = ?::oid AND contype IN ('p', 'u', 'c', 'x', 'f')
+            ORDER BY contype <> 'p', conname
+            """;
+    // Indexes backing a primary key, unique or exclusion constraint come with the constraint
+    private static final String INDEXES_SQL = """
+            SELECT pg_get_indexdef(i.indexrelid)
+            FROM pg_index i
+            JOIN pg_class c ON c.oid = i.indexrelid
+            WHERE i.indrelid = ?::oid
+              AND NOT EXISTS (SELECT 1 FROM pg_constraint k
+                              WHERE k.conindid = i.indexrelid AND k.conrelid = i.indrelid AND k.contype IN ('p', 'u', 'x'))
+            ORDER BY c.relname
+            """;
+    private static final String OWNED_SEQUENCES_SQL = """
+            SELECT quote_ident(s.relname), quote_ident(t.relname), quote_ident(a.attname)
+            FROM pg_depend d
+            JOIN pg_class s ON s.oid = d.objid AND s.relkind = 'S'
+            JOIN pg_class t ON t.oid = d.refobjid
+            JOIN pg_attribute a ON a.attrelid = t.oid AND a.attnum = d.refobjsubid
+            JOIN pg_namespace n ON n.oid = s.relnamespace
+            WHERE d.deptype = 'a' AND n.nspname = current_schema()
+            ORDER BY s.relname
+            """;
+    private static final String SKIPPED_SQL = """
+            SELECT CASE WHEN c.relispartition THEN 'partition ' WHEN c.relkind = 'v' THEN 'view '
+                        WHEN c.relkind = 'm' THEN 'materialized view ' WHEN c.relkind = 'p' THEN 'partitioned table '
+                        ELSE 'foreign table ' END || c.relname
+            FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace
+            WHERE n.nspname = current_schema() AND (c.relkind IN ('v', 'm', 'p', 'f') OR c.relispartition)
+              AND NOT EXISTS (SELECT 1 FROM pg_depend d WHERE d.objid = c.oid AND d.deptype = 'e')
+            UNION ALL
+            SELECT 'function ' || p.proname
+            FROM pg_proc p JOIN pg_namespace n ON n.oid = p.pronamespace
+            WHERE n.nspname = current_schema()
+              AND NOT EXISTS (SELECT 1 FROM pg_depend d WHERE d.objid = p.oid AND d.deptype = 'e')
+            UNION ALL
+            SELECT 'type ' || t.typname
+            FROM pg_type t JOIN pg_namespace n ON n.oid = t.typnamespace
+            WHERE n.nspname = current_schema()
+              AND (t.typtype IN ('e', 'd', 'r')
+                   OR (t.typtype = 'c' AND (SELECT relkind FROM pg_class WHERE oid = t.typrelid) = 'c'))
+              AND NOT EXISTS (SELECT 1 FROM pg_depend d WHERE d.objid = t.oid AND d.deptype = 'e')
+            ORDER BY 1
+            """;
+    private final Connection conn;
+    private final List<String> skippedObjects = new ArrayList<>();
+
+    /**
+     * @param conn Connection whose current schema is captured.
+     */
+    public SchemaGenerator(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * Reads the catalog and renders the schema: sequences, then tables with their columns and non-foreign-key
+     * constraints, then foreign keys (so tables can reference each other in any order), indexes and sequence ownership.
+     * @return DDL script, every statement terminated with `;`.
+     * @throws SQLException If the catalog cannot be read.
+     */
+    public String generate() throws SQLException {
+        StringBuilder ddl = new StringBuilder();
+        List<String> foreignKeys = new ArrayList<>();
+        List<String> indexes = new ArrayList<>();
+        String schemaPrefix = queryString("SELECT quote_ident(current_schema())") + ".";
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(SEQUENCES_SQL)) {
+            while (rs.next()) {
+                ddl.append("CREATE SEQUENCE ").append(rs.getString(1)).append(" AS ").append(rs.getString(2))
+                        .append(" INCREMENT BY ").append(rs.getLong(3)).append(" MINVALUE ").append(rs.getLong(4))
+                        .append(" MAXVALUE ").append(rs.getLong(5)).append(" START WITH ").append(rs.getLong(6))
+                        .append(" CACHE ").append(rs.getLong(7)).append(rs.getBoolean(8) ? " CYCLE" : "").append(";\n");
+            }
+        }
+        try (Statement stmt = conn.createStatement(); ResultSet tables = stmt.executeQuery(TABLES_SQL)) {
+            while (tables.next()) {
+                if (TOOL_TABLES.contains(tables.getString(2))) continue;
+                long oid = tables.getLong(1);
+                String table = tables.getString(3);
+                List<String> definitions = new ArrayList<>(columns(oid));
+                try (PreparedStatement constraints = conn.prepareStatement(CONSTRAINTS_SQL)) {
+                    constraints.setLong(1, oid);
+                    try (ResultSet rs = constraints.executeQuery()) {
+                        while (rs.next()) {
+                            String constraint = "CONSTRAINT " + rs.getString(1) + " " + rs.getString(3);
+                            if ("f".equals(rs.getString(2))) {
+                                foreignKeys.add("ALTER TABLE " + table + " ADD " + constraint + ";");
+                            } else {
+                                definitions.add(constraint);
+                            }
+                        }
+                    }
+                }
+                ddl.append("\nCREATE TABLE ").append(table).append(" (\n    ")
+                        .append(String.join(",\n    ", definitions)).append("\n);\n");
+                try (PreparedStatement stmtIndexes = conn.prepareStatement(INDEXES_SQL)) {
+                    stmtIndexes.setLong(1, oid);
+                    try (ResultSet rs = stmtIndexes.executeQuery()) {
+                        while (rs.next()) {
+                            // pg_get_indexdef always qualifies the table
+                            indexes.add(rs.getString(1).replace(" ON " + schemaPrefix, " ON ")
+                                    .replace(" ON ONLY " + schemaPrefix, " ON ONLY ") + ";");
+                        }
+                    }
+                }
+            }
+        }
+        appendSection(ddl, foreignKeys);
+        appendSection(ddl, indexes);
+        List<String> ownership = new ArrayList<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(OWNED_SEQUENCES_SQL)) {
+            while (rs.next()) {
+                ownership.add("ALTER SEQUENCE " + rs.getString(1) + " OWNED BY " + rs.getString(2) + "." + rs.getString(3) + ";");
+            }
+        }
+        appendSection(ddl, ownership);
+        skippedObjects.clear();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(SKIPPED_SQL)) {
+            while (rs.next()) {
+                skippedObjects.add(rs.getString(1));
+            }
+        }
+        return ddl.toString();
+    }
+
+    /**
+     * @return Objects in the schema that the last {@link #generate()} couldn't reproduce (e.g. "view active_users").
+     */
+    public List<String> getSkippedObjects() {
+        return List.copyOf(skippedObjects);
+    }
+
+    private List<String> columns(long oid) throws SQLException {
+        List<String> columns = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(COLUMNS_SQL)) {
+            stmt.setLong(1, oid);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    StringBuilder column = new StringBuilder(rs.getString(1)).append(' ').append(rs.getString(2));
+                    String expression = rs.getString(4);
+                    String identity = rs.getString(5);
+                    String generated = rs.getString(6);
+                    if ("s".equals(generated)) {
+                        column.append(" GENERATED ALWAYS AS (").append(expression).append(") STORED");
+                    } else if ("a".equals(identity) || "d".equals(identity)) {
+                        column.append(" GENERATED ").append("a".equals(identity) ? "ALWAYS" : "BY DEFAULT").append(" AS IDENTITY");
+                    } else if (expression != null) {
+                        column.append(" DEFAULT ").append(expression);
+                    }
+                    if (rs.getBoolean(3)) column.append(" NOT NULL");
+                    columns.add(column.toString());
+                }
+            }
+        }
+        return columns;
+    }
+
+    private String queryString(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private static void appendSection(StringBuilder ddl, List<String> statements) {
+        if (statements.isEmpty()) return;
+        ddl.append('\n');
+        for (String statement : statements) {
+            ddl.append(statement).append('\n');
+        }
+    }
+}
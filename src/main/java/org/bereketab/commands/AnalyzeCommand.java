@@ -0,0 +1,81 @@
+package org.bereketab.commands;
+
+import org.bereketab.MigrationHistory;
+import org.bereketab.MigrationService;
+import org.bereketab.plan.LockAnalysis;
+import org.bereketab.plan.LockAnalyzer;
+import org.bereketab.plan.LockImpact;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+@Command(name = "analyze", description = "Report the table locks, rewrites and scans of pending migrations")
+public class AnalyzeCommand implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(AnalyzeCommand.class);
+    private static final long MB = 1024 * 1024;
+    private final MigrationService service;
+
+    @Option(names = "--max-blocking-mb", description = "Fail if a migration scans or rewrites a larger table while blocking writes, "
+            + "unless its header has '-- " + LockAnalyzer.ALLOW_BLOCKING + ": <reason>' (default: ${DEFAULT-VALUE})")
+    private long maxBlockingMb = 100;
+
+    public AnalyzeCommand(MigrationService service) {
+        this.service = service;
+    }
+
+    @Override
+    public void run() {
+        try (Connection conn = service.dataSource.getConnection()) {
+            checkPending(service, conn, service.loadHistory(conn), maxBlockingMb);
+        } catch (IOException | SQLException e) {
+            logger.error("Analyze failed", e);
+            throw new RuntimeException("Analyze failed", e);
+        }
+    }
+
+    /**
+     * Analyzes every pending migration, logs its impacts and fails if one blocks writes on too large a table without
+     * acknowledging it. Shared with `migrate --check-locks`.
+     * @throws IllegalStateException If an unacknowledged migration exceeds the threshold.
+     */
+    static void checkPending(MigrationService service, Connection conn, MigrationHistory history, long maxBlockingMb)
+            throws IOException, SQLException {
+        LockAnalyzer analyzer = new LockAnalyzer(conn);
+        List<String> rejected = new ArrayList<>();
+        for (Path file : service.getMigrationFiles()) {
+            String filename = file.getFileName().toString();
+            if (history.isApplied(filename.split("__")[0])) continue;
+            LockAnalysis analysis = analyzer.analyze(file);
+            boolean exceeds = analysis.blockingBytes() > maxBlockingMb * MB;
+            logAnalysis(analysis, exceeds);
+            if (exceeds && !analysis.acknowledged()) rejected.add(filename);
+        }
+        if (!rejected.isEmpty()) {
+            throw new IllegalStateException("Migrations block writes on tables over " + maxBlockingMb + " MB: "
+                    + String.join(", ", rejected) + " (rewrite them, or accept with '-- " + LockAnalyzer.ALLOW_BLOCKING + ": <reason>')");
+        }
+        logger.info("No pending migration blocks writes on a table over {} MB without acknowledging it", maxBlockingMb);
+    }
+
+    private static void logAnalysis(LockAnalysis analysis, boolean exceeds) {
+        if (analysis.impacts().isEmpty()) {
+            logger.info("{}: no locks beyond ordinary DML", analysis.fileName());
+            return;
+        }
+        String label = !exceeds ? "" : analysis.acknowledged()
+                ? " (allowed: " + analysis.allowBlocking() + ")" : " [BLOCKING]";
+        logger.info("{}: blocks writes on up to {} MB{}", analysis.fileName(), analysis.blockingBytes() / MB, label);
+        for (LockImpact impact : analysis.impacts()) {
+            String work = impact.rewrite() ? "rewrite" : impact.fullScan() ? "full scan" : "brief";
+            logger.info("  {} lock, {}, {} MB locked: {}", impact.lock().sqlName(), work, analysis.lockedBytes(impact) / MB, impact.sql());
+            logger.info("    {}", impact.reason());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.bereketab.commands;
+
+import org.bereketab.MigrationService;
+import org.bereketab.fanout.FanOutMigrator;
+import org.bereketab.fanout.MigrationTarget;
+import org.bereketab.fanout.TargetResult;
+import org.bereketab.migrationLibrary.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+@Command(name = "fanout", description = "Apply pending migrations to many schemas/databases concurrently")
+public class FanOutCommand implements Runnable {
+    private final Logger logger = LoggerFactory.getLogger(FanOutCommand.class);
+    private final MigrationService service;
+
+    @Option(names = "--target", description = "Target: schema name, JDBC URL, or 'JDBC-URL schema' (repeatable)")
+    private List<String> targets = new ArrayList<>();
+
+    @Option(names = "--targets-file", description = "File with one target per line ('#' starts a comment)")
+    private Path targetsFile;
+
+    @Option(names = "--max-per-cluster", description = "Maximum targets migrated at once per database server (default: ${DEFAULT-VALUE})")
+    private int maxPerCluster = 4;
+
+    public FanOutCommand(MigrationService service) {
+        this.service = service;
+    }
+
+    @Override
+    public void run() {
+        List<MigrationTarget> resolved;
+        try {
+            resolved = resolveTargets();
+        } catch (IOException e) {
+            logger.error("Failed to read targets", e);
+            throw new RuntimeException("Fan-out failed", e);
+        }
+        if (resolved.isEmpty()) {
+            logger.info("No targets to migrate");
+            return;
+        }
+
+        logger.info("Migrating {} targets (max {} per cluster)...", resolved.size(), maxPerCluster);
+        long start = System.nanoTime();
+        List<TargetResult> results = new FanOutMigrator(service, maxPerCluster).run(resolved);
+        logSummary(results, (System.nanoTime() - start) / 1_000_000);
+
+        long failures = results.stream().filter(result -> !result.succeeded()).count();
+        if (failures > 0) {
+            throw new RuntimeException("Fan-out failed for " + failures + " of " + results.size() + " targets");
+        }
+    }
+
+    private List<MigrationTarget> resolveTargets() throws IOException {
+        List<String> specs = new ArrayList<>(targets);
+        if (targetsFile != null) {
+            for (String line : Files.readAllLines(targetsFile)) {
+                String spec = line.replaceFirst("#.*", "").strip();
+                if (!spec.isEmpty()) specs.add(spec);
+            }
+        }
+        // Schema-only targets live on the configured database
+        String defaultUrl = specs.stream().anyMatch(spec -> !spec.startsWith("jdbc:")) ? DatabaseConfig.getJdbcUrl() : null;
+        return specs.stream().map(spec -> MigrationTarget.parse(spec, defaultUrl)).toList();
+    }
+
+    private void logSummary(List<TargetResult> results, long totalMillis) {
+        logger.info("Fan-out finished in {} ms:", totalMillis);
+        for (TargetResult result : results) {
+            if (result.succeeded()) {
+                logger.info("  OK     {} ({} ms)", result.target(), result.durationMillis());
+            } else {
+                logger.error("  FAILED {} ({} ms): {}", result.target(), result.durationMillis(), result.error().getMessage());
+            }
+        }
+        long succeeded = results.stream().filter(TargetResult::succeeded).count();
+        TargetResult slowest = results.stream().max(Comparator.comparingLong(TargetResult::durationMillis)).orElseThrow();
+        logger.info("Succeeded: {}, Failed: {}, Slowest: {} ({} ms)",
+                succeeded, results.size() - succeeded, slowest.target(), slowest.durationMillis());
+    }
+}
@@ -1,58 +1,280 @@
 package org.bereketab.commands;
 
+import org.bereketab.MigrationHistory;
+import org.bereketab.LockTimeoutPolicy;
+import org.bereketab.MigrationLock;
+import org.bereketab.MigrationResult;
 import org.bereketab.MigrationService;
+import org.bereketab.metrics.LockWaitMonitor;
+import org.bereketab.metrics.MetricsExporter;
+import org.bereketab.metrics.ProgressMonitor;
+import org.bereketab.metrics.RunMetrics;
+import org.bereketab.parallel.MigrationGraph;
+import org.bereketab.parallel.ParallelMigrator;
+import org.bereketab.script.SqlScriptExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 @Command(name = "migrate", description = "Apply pending migrations")
 public class MigrateCommand implements Runnable {
     private final Logger logger = LoggerFactory.getLogger(MigrateCommand.class);
     private final MigrationService service;
 
+    @Option(names = "--batch-size", description = "Statements sent per JDBC batch (default: ${DEFAULT-VALUE})")
+    private int batchSize = SqlScriptExecutor.DEFAULT_BATCH_SIZE;
+
+    @Option(names = "--copy-min-rows", description = "Load literal INSERTs with at least this many rows via COPY (0 = off, default: ${DEFAULT-VALUE})")
+    private int copyMinRows = 0;
+
+    @Option(names = "--parallel", description = "Apply independent migrations concurrently on up to N connections (default: ${DEFAULT-VALUE})")
+    private int parallel = 1;
+
+    @Option(names = "--group-size", description = "Apply up to N pending migrations per transaction, with one commit per group (default: ${DEFAULT-VALUE})")
+    private int groupSize = 1;
+
+    @Option(names = "--lock-timeout", description = "PostgreSQL lock_timeout for each migration, e.g. 5s (migrations can override it)")
+    private String lockTimeout;
+
+    @Option(names = "--statement-timeout", description = "PostgreSQL statement_timeout for each migration, e.g. 15min (migrations can override it)")
+    private String statementTimeout;
+
+    @Option(names = "--lock-retry-seconds", description = "Keep retrying a migration that times out on a lock for this long (default: ${DEFAULT-VALUE})")
+    private long lockRetrySeconds = LockTimeoutPolicy.DEFAULT_RETRY_DEADLINE_MILLIS / 1000;
+
+    @Option(names = "--metrics-dir", description = "Write per-migration timings as JSON and Prometheus text files to this directory")
+    private Path metricsDir;
+
+    @Option(names = "--progress-seconds", description = "Report phase, blocks done, ETA and blockers of running migrations every N seconds (0 = off, default: ${DEFAULT-VALUE})")
+    private long progressSeconds = 0;
+
+    @Option(names = "--progress-file", description = "Also append each progress report as a JSON line to this file (- for stdout)")
+    private String progressFile;
+
+    @Option(names = "--check-locks", description = "Before applying anything, fail if a pending migration blocks writes on a large table (see analyze)")
+    private boolean checkLocks;
+
+    @Option(names = "--max-blocking-mb", description = "Table size over which --check-locks rejects a blocking migration (default: ${DEFAULT-VALUE})")
+    private long maxBlockingMb = 100;
+
+    private RunMetrics metrics;
+    private PrintStream progressOut;
+    private int applied;
+
     public MigrateCommand(MigrationService service) {
         this.service = service;
     }
 
     @Override
     public void run() {
-        try {
-            logger.info("Starting migration process...");
-            for (Path file : service.getMigrationFiles()) {
-                processMigrationFile(file);
+        logger.info("Starting migration process...");
+        if (parallel > 1 && groupSize > 1) {
+            throw new IllegalArgumentException("--group-size can't be combined with --parallel");
+        }
+        service.setStatementBatchSize(batchSize);
+        service.setCopyMinRows(copyMinRows);
+        service.setLockTimeoutPolicy(new LockTimeoutPolicy(lockTimeout, statementTimeout, lockRetrySeconds * 1000));
+        metrics = metricsDir != null ? new RunMetrics("migrate") : null;
+        applied = 0;
+        boolean succeeded = false;
+        LockWaitMonitor monitor = null;
+        ProgressMonitor progress = null;
+        // Nodes that lose the lock wait here, then see the winner's migrations in the history snapshot
+        try (MigrationLock lock = service.acquireMigrationLock()) {
+            monitor = startLockWaitMonitor();
+            progress = startProgressMonitor();
+            if (metrics != null) metrics.setMigrationLockWaitMillis(lock.getWaitMillis());
+            MigrationHistory history = applyBaseline(service.loadHistory());
+            if (applied == 0 && !hasPending(history)) {
+                // Typically a node that waited for the lock while another one applied everything, so skip the lock
+                // analysis and the migration connections, but still warn about applied files that have changed
+                logger.info("No pending migrations (waited {} ms for the migration lock)", lock.getWaitMillis());
+                for (Path file : service.getMigrationFiles()) {
+                    String filename = file.getFileName().toString();
+                    checkExistingMigration(history, filename.split("__")[0], filename, file);
+                }
+            } else {
+                if (checkLocks) {
+                    try (Connection conn = service.dataSource.getConnection()) {
+                        AnalyzeCommand.checkPending(service, conn, history, maxBlockingMb);
+                    }
+                }
+                if (parallel > 1) {
+                    migrateInParallel(history);
+                } else if (groupSize > 1) {
+                    migrateInGroups(history);
+                } else {
+                    for (Path file : service.getMigrationFiles()) {
+                        processMigrationFile(file, history);
+                    }
+                }
             }
+            // Still under the lock, so the snapshot matches what was just applied
+            service.recordSchemaSnapshot(applied > 0);
+            succeeded = true;
         } catch (IOException | SQLException e) {
             logger.error("Migration failed", e);
             throw new RuntimeException("Migration failed", e);
+        } finally {
+            service.setLockWaitMonitor(null);
+            if (monitor != null) monitor.close();
+            service.setProgressMonitor(null);
+            if (progress != null) progress.close();
+            if (progressOut != null && progressOut != System.out) progressOut.close();
+            service.saveChecksumCache();
+            exportMetrics(succeeded);
         }
     }
 
-    private void processMigrationFile(Path file) throws IOException, SQLException {
-        String filename = file.getFileName().toString();
-        String version = filename.split("__")[0];
+    /**
+     * Applies the baseline script, if there is one, to a database with an empty history. The baseline inserts the
+     * history rows of the migrations it covers, so the reloaded history skips them.
+     */
+    private MigrationHistory applyBaseline(MigrationHistory history) throws IOException, SQLException {
+        if (history.size() > 0) return history;
+        Path baseline = service.getBaselineFile();
+        if (baseline == null) return history;
+        String filename = baseline.getFileName().toString();
+        logger.info("Empty history, applying baseline: {}", filename);
         try (Connection conn = service.dataSource.getConnection()) {
-            if (checkExistingMigration(conn, version, filename, file)) {
+            MigrationResult result = service.applyMigration(conn, filename.split("__")[0], baseline);
+            logger.info("Applied: {} in {} ms (checksum: {})", filename, result.executionMillis(), result.checksum());
+            recordResult(result);
+            return service.loadHistory(conn);
+        }
+    }
+
+    private boolean hasPending(MigrationHistory history) throws IOException {
+        for (Path file : service.getMigrationFiles()) {
+            if (!history.isApplied(file.getFileName().toString().split("__")[0])) return true;
+        }
+        return false;
+    }
+
+    private LockWaitMonitor startLockWaitMonitor() {
+        if (metrics == null) return null;
+        LockWaitMonitor monitor = new LockWaitMonitor(service.dataSource, LockWaitMonitor.DEFAULT_INTERVAL_MILLIS);
+        service.setLockWaitMonitor(monitor);
+        return monitor;
+    }
+
+    /**
+     * Starts reporting progress if asked to, logging each report and appending it as JSON to `--progress-file`.
+     */
+    private ProgressMonitor startProgressMonitor() throws IOException {
+        if (progressSeconds <= 0 && progressFile == null) return null;
+        long intervalMillis = progressSeconds > 0 ? progressSeconds * 1000 : ProgressMonitor.DEFAULT_INTERVAL_MILLIS;
+        progressOut = progressFile == null ? null : "-".equals(progressFile) ? System.out
+                : new PrintStream(Files.newOutputStream(Path.of(progressFile), StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+                        true, StandardCharsets.UTF_8);
+        PrintStream out = progressOut;
+        ProgressMonitor monitor = new ProgressMonitor(service.dataSource, intervalMillis, report -> {
+            logger.info("Progress: {}", report.describe());
+            if (out != null) out.println(report.toJson());
+        });
+        service.setProgressMonitor(monitor);
+        return monitor;
+    }
+
+    private synchronized void recordResult(MigrationResult result) {
+        applied++;
+        if (metrics != null) metrics.add(result);
+    }
+
+    private void exportMetrics(boolean succeeded) {
+        if (metrics == null) return;
+        metrics.finish(succeeded);
+        try {
+            new MetricsExporter().export(metrics, metricsDir);
+        } catch (IOException e) {
+            logger.warn("Could not write metrics to {}: {}", metricsDir, e.getMessage());
+        }
+    }
+
+    private void migrateInParallel(MigrationHistory history) throws IOException, SQLException {
+        List<Path> pending = new ArrayList<>();
+        for (Path file : service.getMigrationFiles()) {
+            String filename = file.getFileName().toString();
+            if (checkExistingMigration(history, filename.split("__")[0], filename, file)) {
                 logger.info("Skipping: {}", filename);
-                return;
+            } else {
+                pending.add(file);
             }
-            String sql = Files.readString(file);
-            String checksum = service.calculateChecksum(sql);
-            logger.info("Applying: {} (checksum: {})", filename, checksum);
-            service.applyMigration(conn, version, filename, sql);
+        }
+        new ParallelMigrator(service, parallel, this::recordResult).run(MigrationGraph.build(pending, history));
+    }
+
+    /**
+     * Applies pending migrations on one connection, up to `groupSize` per transaction. Migrations that can't share a
+     * transaction (see {@link MigrationService#isGroupable}) end the current group and are applied on their own.
+     */
+    private void migrateInGroups(MigrationHistory history) throws IOException, SQLException {
+        List<Path> group = new ArrayList<>();
+        try (Connection conn = service.dataSource.getConnection()) {
+            for (Path file : service.getMigrationFiles()) {
+                String filename = file.getFileName().toString();
+                String version = filename.split("__")[0];
+                if (checkExistingMigration(history, version, filename, file)) {
+                    logger.info("Skipping: {}", filename);
+                } else if (service.isGroupable(file)) {
+                    group.add(file);
+                    if (group.size() == groupSize) applyGroup(conn, group);
+                } else {
+                    applyGroup(conn, group);
+                    logger.info("Applying: {} (on its own)", filename);
+                    MigrationResult result = service.applyMigration(conn, version, file);
+                    logger.info("Applied: {} in {} ms (checksum: {})", filename, result.executionMillis(), result.checksum());
+                    recordResult(result);
+                }
+            }
+            applyGroup(conn, group);
+        }
+    }
+
+    private void applyGroup(Connection conn, List<Path> group) throws IOException, SQLException {
+        if (group.isEmpty()) return;
+        logger.info("Applying {} migrations in one transaction: {} to {}", group.size(),
+                group.get(0).getFileName(), group.get(group.size() - 1).getFileName());
+        for (MigrationResult result : service.applyMigrationGroup(conn, group)) {
+            logger.info("Applied: {} in {} ms (checksum: {})", result.fileName(), result.executionMillis(), result.checksum());
+            recordResult(result);
+        }
+        group.clear();
+    }
+
+    private void processMigrationFile(Path file, MigrationHistory history) throws IOException, SQLException {
+        String filename = file.getFileName().toString();
+        String version = filename.split("__")[0];
+        if (checkExistingMigration(history, version, filename, file)) {
+            logger.info("Skipping: {}", filename);
+            return;
+        }
+        logger.info("Applying: {}", filename);
+        // Only pending migrations need a connection
+        try (Connection conn = service.dataSource.getConnection()) {
+            MigrationResult result = service.applyMigration(conn, version, file);
+            logger.info("Applied: {} in {} ms (checksum: {})", filename, result.executionMillis(), result.checksum());
+            recordResult(result);
         }
     }
 
-    private boolean checkExistingMigration(Connection conn, String version, String filename, Path file) throws IOException, SQLException {
-        if (!service.isMigrationApplied(conn, version)) {
+    private boolean checkExistingMigration(MigrationHistory history, String version, String filename, Path file) throws IOException {
+        if (!history.isApplied(version)) {
             return false;
         }
-        String existingChecksum = service.getExistingChecksum(conn, version);
-        String currentChecksum = service.calculateChecksum(Files.readString(file));
+        String existingChecksum = history.getChecksum(version);
+        String currentChecksum = service.getChecksum(file);
         if (!existingChecksum.equals(currentChecksum)) {
             // Warn if file changed since last applied
             logger.warn("Migration {} has changed! Existing: {}, Current: {}", filename, existingChecksum, currentChecksum);
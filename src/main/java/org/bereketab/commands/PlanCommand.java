@@ -0,0 +1,86 @@
+package org.bereketab.commands;
+
+import org.bereketab.MigrationHistory;
+import org.bereketab.MigrationService;
+import org.bereketab.plan.MigrationEstimate;
+import org.bereketab.plan.MigrationPlanner;
+import org.bereketab.plan.RelationSize;
+import org.bereketab.plan.StatementEstimate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+@Command(name = "plan", description = "Estimate the cost of pending migrations with EXPLAIN")
+public class PlanCommand implements Runnable {
+    private final Logger logger = LoggerFactory.getLogger(PlanCommand.class);
+    private final MigrationService service;
+
+    @Option(names = "--max-cost", description = "Flag statements and migrations whose estimated cost exceeds this (default: ${DEFAULT-VALUE})")
+    private double maxCost = 100_000;
+
+    @Option(names = "--max-rows", description = "Flag statements and migrations estimated to write more rows than this (default: ${DEFAULT-VALUE})")
+    private long maxRows = 100_000;
+
+    public PlanCommand(MigrationService service) {
+        this.service = service;
+    }
+
+    @Override
+    public void run() {
+        try (Connection conn = service.dataSource.getConnection()) {
+            MigrationHistory history = service.loadHistory(conn);
+            MigrationPlanner planner = new MigrationPlanner(conn);
+            List<String> flagged = new ArrayList<>();
+            for (Path file : service.getMigrationFiles()) {
+                String filename = file.getFileName().toString();
+                if (history.isApplied(filename.split("__")[0])) continue;
+                MigrationEstimate estimate = planner.estimate(file);
+                if (logEstimate(estimate)) flagged.add(filename);
+            }
+            if (flagged.isEmpty()) {
+                logger.info("No pending migration exceeds cost {} or {} rows", maxCost, maxRows);
+            } else {
+                logger.warn("Heavy migrations (schedule off-peak): {}", String.join(", ", flagged));
+            }
+        } catch (IOException | SQLException e) {
+            logger.error("Plan failed", e);
+            throw new RuntimeException("Plan failed", e);
+        }
+    }
+
+    private boolean logEstimate(MigrationEstimate estimate) {
+        boolean heavy = isHeavy(estimate.totalCost(), estimate.totalRows());
+        logger.info("{}{}: {} statements, {} explained, estimated cost {}, ~{} rows",
+                heavy ? "[HEAVY] " : "", estimate.fileName(), estimate.statements(), estimate.estimates().size(),
+                formatCost(estimate.totalCost()), estimate.totalRows());
+        for (StatementEstimate statement : estimate.estimates()) {
+            if (!statement.isEstimated()) {
+                logger.info("  not estimated: {} ({})", statement.sql(), statement.error());
+            } else {
+                logger.info("  {}cost {}, ~{} rows: {}", isHeavy(statement.cost(), statement.rows()) ? "[HEAVY] " : "",
+                        formatCost(statement.cost()), statement.rows(), statement.sql());
+            }
+        }
+        for (RelationSize relation : estimate.relations()) {
+            logger.info("  touches {}: ~{} rows, {} MB", relation.name(),
+                    relation.estimatedRows() < 0 ? "?" : relation.estimatedRows(), relation.totalBytes() / (1024 * 1024));
+        }
+        return heavy;
+    }
+
+    private boolean isHeavy(double cost, long rows) {
+        return cost > maxCost || rows > maxRows;
+    }
+
+    private static String formatCost(double cost) {
+        return String.format(Locale.ROOT, "%.2f", cost);
+    }
+}
@@ -1,46 +1,96 @@
 package org.bereketab.commands;
 
+import org.bereketab.AppliedMigration;
+import org.bereketab.LockTimeoutPolicy;
+import org.bereketab.MigrationHistory;
+import org.bereketab.MigrationLock;
+import org.bereketab.MigrationResult;
 import org.bereketab.MigrationService;
+import org.bereketab.metrics.MetricsExporter;
+import org.bereketab.metrics.RunMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Collectors;
 
-@Command(name = "rollback", description = "Rollback the last applied migration")
+@Command(name = "rollback", description = "Rollback the last applied migration, or several with --to/--count")
 public class RollbackCommand implements Runnable {
     private final Logger logger = LoggerFactory.getLogger(RollbackCommand.class);
     private final MigrationService service;
 
+    @Option(names = "--to", description = "Roll back every migration applied after this version (which stays applied)")
+    private String toVersion;
+
+    @Option(names = "--count", description = "Number of most recent migrations to roll back (default: ${DEFAULT-VALUE})")
+    private int count = 1;
+
+    @Option(names = "--group-size", description = "Roll back up to N migrations per transaction (0 = all in one transaction, default: ${DEFAULT-VALUE})")
+    private int groupSize = 0;
+
+    @Option(names = "--lock-timeout", description = "PostgreSQL lock_timeout for each migration, e.g. 5s (migrations can override it)")
+    private String lockTimeout;
+
+    @Option(names = "--statement-timeout", description = "PostgreSQL statement_timeout for each migration, e.g. 15min (migrations can override it)")
+    private String statementTimeout;
+
+    @Option(names = "--lock-retry-seconds", description = "Keep retrying a migration that times out on a lock for this long (default: ${DEFAULT-VALUE})")
+    private long lockRetrySeconds = LockTimeoutPolicy.DEFAULT_RETRY_DEADLINE_MILLIS / 1000;
+
+    @Option(names = "--metrics-dir", description = "Write the rollback timing as JSON and Prometheus text files to this directory")
+    private Path metricsDir;
+
     public RollbackCommand(MigrationService service) {
         this.service = service;
     }
 
     @Override
     public void run() {
-        try (Connection conn = service.dataSource.getConnection()) {
-            // Fetch the most recently applied migration
-            String sql = "SELECT version, file_name FROM migration_history ORDER BY applied_time DESC LIMIT 1";
-            String version;
-            String filename;
-
-            try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
-                if (!rs.next()) {
-                    logger.info("No migrations to rollback");
-                    return;
-                }
-                version = rs.getString("version");
-                filename = rs.getString("file_name");
+        if (toVersion != null && count != 1) {
+            throw new IllegalArgumentException("--to can't be combined with --count");
+        }
+        service.setLockTimeoutPolicy(new LockTimeoutPolicy(lockTimeout, statementTimeout, lockRetrySeconds * 1000));
+        RunMetrics metrics = metricsDir != null ? new RunMetrics("rollback") : null;
+        boolean succeeded = false;
+        try (MigrationLock lock = service.acquireMigrationLock();
+             Connection conn = service.dataSource.getConnection()) {
+            if (metrics != null) metrics.setMigrationLockWaitMillis(lock.getWaitMillis());
+            // One history query gives the whole undo chain
+            MigrationHistory history = service.loadHistory(conn);
+            List<AppliedMigration> chain = toVersion != null ? history.appliedAfter(toVersion) : history.lastApplied(count);
+            if (chain.isEmpty()) {
+                logger.info("No migrations to rollback");
+                succeeded = true;
+                return;
             }
 
-            logger.info("Rolling back: {}", filename);
-            service.rollbackMigration(conn, version, filename);
+            logger.info("Rolling back: {}", chain.stream().map(AppliedMigration::fileName).collect(Collectors.joining(", ")));
+            for (MigrationResult result : service.rollbackMigrations(conn, chain, groupSize)) {
+                logger.info("Rolled back: {} in {} ms", result.fileName(), result.executionMillis());
+                if (metrics != null) metrics.add(result);
+            }
+            service.recordSchemaSnapshot(true);
+            succeeded = true;
         } catch (SQLException | IOException e) {
             logger.error("Rollback failed", e);
             throw new RuntimeException("Rollback failed", e);
+        } finally {
+            exportMetrics(metrics, succeeded);
+        }
+    }
+
+    private void exportMetrics(RunMetrics metrics, boolean succeeded) {
+        if (metrics == null) return;
+        metrics.finish(succeeded);
+        try {
+            new MetricsExporter().export(metrics, metricsDir);
+        } catch (IOException e) {
+            logger.warn("Could not write metrics to {}: {}", metricsDir, e.getMessage());
         }
     }
 }
\ No newline at end of file
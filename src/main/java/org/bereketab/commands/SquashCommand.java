@@ -0,0 +1,80 @@
+package org.bereketab.commands;
+
+import org.bereketab.AppliedMigration;
+import org.bereketab.MigrationLock;
+import org.bereketab.MigrationService;
+import org.bereketab.baseline.BaselineScript;
+import org.bereketab.baseline.SchemaGenerator;
+import org.bereketab.source.MigrationSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine.Command;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+
+@Command(name = "squash", description = "Replace the applied migrations with a baseline of the current schema")
+public class SquashCommand implements Runnable {
+    private final Logger logger = LoggerFactory.getLogger(SquashCommand.class);
+    private final MigrationService service;
+
+    public SquashCommand(MigrationService service) {
+        this.service = service;
+    }
+
+    @Override
+    public void run() {
+        if (service.getMigrationsDir().startsWith(MigrationSource.CLASSPATH_PREFIX)) {
+            throw new IllegalArgumentException("Can't write a baseline into " + service.getMigrationsDir()
+                    + "; run squash with --migrations-dir pointing at the source directory of the migrations");
+        }
+        // Hold the migration lock so the schema can't change between reading the catalog and recording the baseline
+        try {
+            MigrationLock lock = service.acquireMigrationLock();
+            try (Connection conn = service.dataSource.getConnection()) {
+                squash(conn);
+            } finally {
+                lock.close();
+            }
+        } catch (IOException | SQLException e) {
+            logger.error("Squash failed", e);
+            throw new RuntimeException("Squash failed", e);
+        }
+    }
+
+    private void squash(Connection conn) throws IOException, SQLException {
+        List<AppliedMigration> covered = service.loadHistory(conn).appliedMigrations().stream()
+                .filter(migration -> !BaselineScript.isBaseline(Paths.get(migration.fileName())))
+                .toList();
+        if (covered.isEmpty()) {
+            logger.info("No applied migrations to squash");
+            return;
+        }
+        SchemaGenerator generator = new SchemaGenerator(conn);
+        String schema = generator.generate();
+        for (String skipped : generator.getSkippedObjects()) {
+            logger.warn("Not included in the baseline, add it by hand: {}", skipped);
+        }
+
+        String lastVersion = covered.get(covered.size() - 1).version();
+        Path dir = Paths.get(service.getMigrationsDir());
+        Path previous = service.getBaselineFile();
+        Path baseline = dir.resolve(BaselineScript.fileName(lastVersion));
+        String script = BaselineScript.render(baseline.getFileName().toString().split("__")[0], schema, covered, Instant.now());
+        // Write next to the target and move it into place so a failed write never leaves a truncated baseline
+        Path tmp = Files.writeString(dir.resolve(baseline.getFileName() + ".tmp"), script);
+        Files.move(tmp, baseline, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        service.recordBaseline(conn, baseline, covered);
+        if (previous != null && !previous.equals(baseline)) {
+            Files.delete(previous);
+            logger.info("Removed superseded baseline {}", previous.getFileName());
+        }
+        logger.info("Wrote {} covering {} migrations up to {}", baseline.getFileName(), covered.size(), lastVersion);
+    }
+}
@@ -1,27 +1,36 @@
 package org.bereketab.commands;
 
+import org.bereketab.AppliedMigration;
+import org.bereketab.MigrationHistory;
 import org.bereketab.MigrationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine.Command;
-import java.sql.Connection;
-import java.sql.ResultSet;
+import picocli.CommandLine.Option;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.Comparator;
+import java.util.List;
 
 @Command(name = "status", description = "Show applied migrations")
 public class StatusCommand implements Runnable {
     private final Logger logger = LoggerFactory.getLogger(StatusCommand.class);
     private final MigrationService service;
 
+    @Option(names = "--slowest", description = "Also list the N slowest migrations by recorded execution time")
+    private int slowest = 0;
+
     public StatusCommand(MigrationService service) {
         this.service = service;
     }
 
     @Override
     public void run() {
-        try (Connection conn = service.dataSource.getConnection()) {
-            logMigrationHistory(conn);
+        try {
+            MigrationHistory history = service.loadHistory();
+            logMigrationHistory(history);
+            if (slowest > 0) {
+                logSlowestMigrations(history);
+            }
         } catch (SQLException e) {
 
             logger.error("Status check failed", e);
@@ -29,16 +38,27 @@ public class StatusCommand implements Runnable {
         }
     }
 
-    private void logMigrationHistory(Connection conn) throws SQLException {
-        // Fetch migration history sorted by application time
-        String sql = "SELECT version, file_name, checksum, applied_time FROM migration_history ORDER BY applied_time";
-        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
-            logger.info("Applied Migrations:");
-            while (rs.next()) {
-                logger.info("Version: {}, File: {}, Checksum: {}, Applied: {}",
-                        rs.getString("version"), rs.getString("file_name"),
-                        rs.getString("checksum"), rs.getTimestamp("applied_time"));
-            }
+    private void logMigrationHistory(MigrationHistory history) {
+        // Snapshot is already in installed_rank order, after any unranked rows from before ranks existed
+        logger.info("Applied Migrations:");
+        for (AppliedMigration migration : history.appliedMigrations()) {
+            logger.info("Version: {}, File: {}, Checksum: {}, Applied: {}",
+                    migration.version(), migration.fileName(),
+                    migration.checksum(), migration.appliedTime());
+        }
+    }
+
+    private void logSlowestMigrations(MigrationHistory history) {
+        // Migrations applied before timings were recorded have no execution time
+        List<AppliedMigration> timed = history.appliedMigrations().stream()
+                .filter(migration -> migration.executionTimeMs() != null)
+                .sorted(Comparator.comparing(AppliedMigration::executionTimeMs).reversed())
+                .limit(slowest)
+                .toList();
+        logger.info("Slowest Migrations:");
+        for (AppliedMigration migration : timed) {
+            logger.info("Version: {}, File: {}, Execution time: {} ms",
+                    migration.version(), migration.fileName(), migration.executionTimeMs());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package org.bereketab.commands;
+
+import org.bereketab.MigrationService;
+import org.bereketab.migrationLibrary.DatabaseConfig;
+import org.bereketab.template.TemplateDatabaseProvisioner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+@Command(name = "template", description = "Build a migrated template database and clone test databases from it (PostgreSQL)")
+public class TemplateCommand implements Runnable {
+    private final Logger logger = LoggerFactory.getLogger(TemplateCommand.class);
+    private final MigrationService service;
+
+    @Option(names = "--maintenance-db", description = "Database on the db.url server to connect to for CREATE/DROP DATABASE (default: ${DEFAULT-VALUE})")
+    private String maintenanceDb = "postgres";
+
+    @Option(names = "--prefix", description = "Prefix of template database names (default: ${DEFAULT-VALUE})")
+    private String prefix = "migration_template";
+
+    @Option(names = "--create", split = ",", description = "Create these databases from the template")
+    private List<String> create = new ArrayList<>();
+
+    @Option(names = "--drop", split = ",", description = "Drop these databases")
+    private List<String> drop = new ArrayList<>();
+
+    public TemplateCommand(MigrationService service) {
+        this.service = service;
+    }
+
+    @Override
+    public void run() {
+        String maintenanceUrl = TemplateDatabaseProvisioner.withDatabase(DatabaseConfig.getJdbcUrl(), maintenanceDb);
+        TemplateDatabaseProvisioner provisioner = new TemplateDatabaseProvisioner(
+                DatabaseConfig.createConfig(maintenanceUrl), service.getMigrationsDir());
+        provisioner.setTemplatePrefix(prefix);
+        try {
+            for (String name : drop) {
+                provisioner.dropDatabase(name);
+                logger.info("Dropped database {}", name);
+            }
+            logger.info("Template: {}", provisioner.ensureTemplate());
+            for (String name : create) {
+                provisioner.cloneTemplate(name);
+                logger.info("Created database {}", name);
+            }
+        } catch (IOException | SQLException e) {
+            logger.error("Template provisioning failed", e);
+            throw new RuntimeException("Template provisioning failed", e);
+        }
+    }
+}
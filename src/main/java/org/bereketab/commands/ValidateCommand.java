@@ -1,16 +1,19 @@
 package org.bereketab.commands;
 
+import org.bereketab.MigrationHistory;
 import org.bereketab.MigrationService;
+import org.bereketab.schema.SchemaDifference;
+import org.bereketab.schema.SchemaSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine.Command;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
 
-@Command(name = "validate", description = "Validate applied migrations against files")
+@Command(name = "validate", description = "Validate applied migrations against files and the live schema against its snapshot")
 public class ValidateCommand implements Runnable {
     private final Logger logger = LoggerFactory.getLogger(ValidateCommand.class);
     private final MigrationService service;
@@ -21,36 +24,44 @@ public class ValidateCommand implements Runnable {
 
     @Override
     public void run() {
-        try {
+        try (Connection conn = service.dataSource.getConnection()) {
+            MigrationHistory history = service.loadHistory(conn);
+            int problems = 0;
+            // Report every problem instead of stopping at the first one
             for (Path file : service.getMigrationFiles()) {
-                if (!validateMigrationFile(file)) {
-                    // Stop on first validation failure
-                    break;
+                if (!validateMigrationFile(file, history)) {
+                    problems++;
                 }
             }
+            problems += validateSchema(conn);
+            if (problems == 0) {
+                logger.info("Validation passed");
+            } else {
+                logger.error("Validation found {} problem(s)", problems);
+            }
         } catch (IOException | SQLException e) {
 
             logger.error("Validation failed", e);
             throw new RuntimeException("Validation failed", e);
+        } finally {
+            service.saveChecksumCache();
         }
     }
 
-    private boolean validateMigrationFile(Path file) throws IOException, SQLException {
+    private boolean validateMigrationFile(Path file, MigrationHistory history) throws IOException {
         String filename = file.getFileName().toString();
         String version = filename.split("__")[0];
-        try (Connection conn = service.dataSource.getConnection()) {
-            if (service.isMigrationApplied(conn, version)) {
-                return compareChecksums(conn, version, filename, file);
-            } else {
-                logger.warn("Migration {} in files but not applied", filename);
-                return true;
-            }
+        if (history.isApplied(version)) {
+            return compareChecksums(history, version, filename, file);
+        } else {
+            logger.warn("Migration {} in files but not applied", filename);
+            return true;
         }
     }
 
-    private boolean compareChecksums(Connection conn, String version, String filename, Path file) throws IOException, SQLException {
-        String existingChecksum = service.getExistingChecksum(conn, version);
-        String currentChecksum = service.calculateChecksum(Files.readString(file));
+    private boolean compareChecksums(MigrationHistory history, String version, String filename, Path file) throws IOException {
+        String existingChecksum = history.getChecksum(version);
+        String currentChecksum = service.getChecksum(file);
         if (!existingChecksum.equals(currentChecksum)) {
             // Log mismatch to alert user of file changes
             logger.error("Validation failed for {}: Checksum mismatch (DB: {}, File: {})",
@@ -60,4 +71,28 @@ public class ValidateCommand implements Runnable {
         logger.info("Validated: {}", filename);
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * Compares the live schema with the snapshot recorded by the last migrate or rollback.
+     * @return Number of drifted objects.
+     */
+    private int validateSchema(Connection conn) throws SQLException {
+        if (!SchemaSnapshot.isSupported(conn)) return 0;
+        SchemaSnapshot snapshot = new SchemaSnapshot(conn);
+        String expected = snapshot.expectedFingerprint();
+        if (expected == null) {
+            logger.warn("No schema snapshot recorded yet; run migrate to record one");
+            return 0;
+        }
+        // Fingerprints are computed on the server, so a schema without drift is never transferred
+        if (expected.equals(snapshot.liveFingerprint())) {
+            logger.info("Schema matches the snapshot recorded at migrate time");
+            return 0;
+        }
+        List<SchemaDifference> differences = SchemaSnapshot.diff(snapshot.loadExpected(), snapshot.loadLive());
+        for (SchemaDifference difference : differences) {
+            logger.error("Schema drift: {}", difference.describe());
+        }
+        return differences.size();
+    }
+}
@@ -0,0 +1,146 @@
+package org.bereketab.commands;
+
+import org.bereketab.AppliedMigration;
+import org.bereketab.MigrationHistory;
+import org.bereketab.MigrationResult;
+import org.bereketab.MigrationService;
+import org.bereketab.source.MigrationSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Development loop: applies pending migrations, then watches the migrations directory and re-applies only the
+ * migrations that are added or edited. An edited migration that was already applied is first undone with its
+ * `_rollback.sql` companion. The service, its checksum cache and one connection stay open for the whole session.
+ * Runs until interrupted; meant for local databases, so it doesn't take the migration lock.
+ */
+@Command(name = "watch", description = "Re-apply migrations as they are added or edited (local development)")
+public class WatchCommand implements Runnable {
+    private final Logger logger = LoggerFactory.getLogger(WatchCommand.class);
+    private final MigrationService service;
+
+    @Option(names = "--debounce-millis", description = "Wait until files have been quiet for this long before applying (default: ${DEFAULT-VALUE})")
+    private long debounceMillis = 300;
+
+    public WatchCommand(MigrationService service) {
+        this.service = service;
+    }
+
+    @Override
+    public void run() {
+        MigrationSource source;
+        try {
+            source = service.getSource();
+        } catch (IOException e) {
+            throw new RuntimeException("Watch failed", e);
+        }
+        if (source.isPackaged()) {
+            throw new IllegalArgumentException("watch needs a migrations directory, not packaged migrations: " + source.getLocation());
+        }
+        Path dir = source.getRoot();
+        try (WatchService watcher = dir.getFileSystem().newWatchService();
+             Connection conn = service.dataSource.getConnection()) {
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            runCycle(conn, Set.copyOf(service.getMigrationFiles()));
+            logger.info("Watching {} for changes (Ctrl+C to stop)", dir.toAbsolutePath());
+            while (true) {
+                Set<Path> changed = awaitChanges(watcher, dir);
+                if (!changed.isEmpty()) runCycle(conn, changed);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.info("Stopped watching");
+        } catch (ClosedWatchServiceException e) {
+            logger.info("Stopped watching");
+        } catch (IOException | SQLException e) {
+            logger.error("Watch failed", e);
+            throw new RuntimeException("Watch failed", e);
+        }
+    }
+
+    /**
+     * Outcome of one cycle.
+     * @param applied Migrations applied for the first time.
+     * @param reapplied Edited migrations rolled back and applied again.
+     * @param failed `true` if a migration failed, which ends the cycle.
+     */
+    record Cycle(int applied, int reapplied, boolean failed) {
+    }
+
+    /**
+     * Blocks until a migration file changes, then keeps collecting changes until none arrive for `debounceMillis`,
+     * so an editor's save (often several writes) triggers one cycle.
+     * @return Changed migration files, in version order.
+     */
+    Set<Path> awaitChanges(WatchService watcher, Path dir) throws InterruptedException {
+        Set<Path> changed = new TreeSet<>(MigrationSource.FILE_ORDER);
+        WatchKey key = watcher.take();
+        while (key != null) {
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) continue;
+                Path file = dir.resolve((Path) event.context());
+                if (MigrationSource.isMigration(file)) changed.add(file);
+            }
+            key.reset();
+            key = watcher.poll(debounceMillis, TimeUnit.MILLISECONDS);
+        }
+        return changed;
+    }
+
+    /**
+     * Brings the given migrations up to date with their files and reports how long it took. Failures are logged and
+     * the session continues, so the next save can fix them.
+     * @return What the cycle did.
+     */
+    Cycle runCycle(Connection conn, Set<Path> files) {
+        long start = System.nanoTime();
+        int applied = 0;
+        int reapplied = 0;
+        boolean failed = false;
+        try {
+            MigrationHistory history = service.loadHistory(conn);
+            List<Path> ordered = files.stream().sorted(MigrationSource.FILE_ORDER).toList();
+            for (Path file : ordered) {
+                if (!Files.exists(file)) continue;
+                String filename = file.getFileName().toString();
+                String version = filename.split("__")[0];
+                AppliedMigration existing = history.get(version);
+                if (existing != null) {
+                    if (existing.checksum().equals(service.getChecksum(file))) continue;
+                    logger.info("Changed: {}, rolling back", filename);
+                    service.rollbackMigrations(conn, List.of(existing), 0);
+                }
+                MigrationResult result = service.applyMigration(conn, version, file);
+                logger.info("Applied: {} in {} ms", filename, result.executionMillis());
+                if (existing != null) reapplied++; else applied++;
+            }
+        } catch (IOException | SQLException | RuntimeException e) {
+            // e.g. a syntax error in the file being edited, or a missing rollback script
+            logger.error("Failed: {}", e.getMessage());
+            failed = true;
+        }
+        // Ctrl+C ends the session without running finally blocks, so persist the cache every cycle
+        service.saveChecksumCache();
+        if (failed || applied + reapplied > 0) {
+            logger.info("Cycle {} in {} ms ({} applied, {} re-applied)", failed ? "failed" : "finished",
+                    (System.nanoTime() - start) / 1_000_000, applied, reapplied);
+        }
+        return new Cycle(applied, reapplied, failed);
+    }
+}
@@ -0,0 +1,154 @@
+package org.bereketab.embed;
+
+import org.bereketab.MigrationHistory;
+import org.bereketab.MigrationLock;
+import org.bereketab.MigrationResult;
+import org.bereketab.MigrationService;
+import org.bereketab.embed.MigrationEvent.Kind;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Applies pending migrations in the background, for applications that embed the tool and shouldn't hold up the rest
+ * of their startup (cache warming, listeners) on slow DDL. Components that need the new schema wait on
+ * {@link MigrationHandle#whenApplied} or {@link MigrationHandle#completion()} instead.
+ * Runs like `migrate` with default options: under the migration lock, applying the baseline to an empty history, then
+ * every pending migration in version order on one connection. A migrator runs once.
+ * <pre>
+ * BackgroundMigrator migrator = new BackgroundMigrator(dataSource, "classpath:migrations");
+ * MigrationHandle handle = migrator.start();
+ * handle.whenApplied("V12").thenRun(ordersListener::start);
+ * </pre>
+ */
+public class BackgroundMigrator {
+    private static final Logger logger = LoggerFactory.getLogger(BackgroundMigrator.class);
+    private final MigrationService service;
+    private final MigrationHandle handle = new MigrationHandle(new SubmissionPublisher<>());
+    private Executor executor = task -> Thread.ofPlatform().name("background-migration").start(task);
+    private boolean started;
+
+    /**
+     * @param dataSource The application's own data source; the run borrows two connections from it.
+     * @param migrationsDir Migrations directory or classpath location (e.g., "classpath:migrations").
+     */
+    public BackgroundMigrator(DataSource dataSource, String migrationsDir) {
+        this(new MigrationService(dataSource));
+        service.setMigrationsDir(migrationsDir);
+    }
+
+    /**
+     * @param service A configured service (migrations directory, batch size, lock timeouts, checksum cache).
+     */
+    public BackgroundMigrator(MigrationService service) {
+        this.service = service;
+    }
+
+    /**
+     * @param executor Runs the migration task (default: a new thread; not a daemon, so a JVM exit waits for it).
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Subscribes to progress events; subscribing before {@link #start()} guarantees seeing every event.
+     * @param subscriber Receives {@link MigrationEvent}s asynchronously.
+     */
+    public void subscribe(Flow.Subscriber<? super MigrationEvent> subscriber) {
+        handle.events().subscribe(subscriber);
+    }
+
+    /**
+     * Starts the run and returns immediately.
+     * @return Handle for waiting on, observing or cancelling the run.
+     * @throws IllegalStateException If the migrator was already started.
+     */
+    public synchronized MigrationHandle start() {
+        if (started) {
+            throw new IllegalStateException("Background migration already started");
+        }
+        started = true;
+        executor.execute(this::run);
+        return handle;
+    }
+
+    private void run() {
+        long start = System.nanoTime();
+        List<MigrationResult> results = new ArrayList<>();
+        try {
+            boolean cancelled;
+            MigrationLock lock = service.acquireMigrationLock();
+            try (Connection conn = service.dataSource.getConnection()) {
+                cancelled = applyPending(conn, results);
+                // Still under the lock, so the snapshot matches what was just applied, even if the run stopped early
+                service.recordSchemaSnapshot(!results.isEmpty());
+            } finally {
+                lock.close();
+            }
+            if (cancelled) {
+                logger.info("Background migration cancelled after {} migrations", results.size());
+                handle.fail(new CancellationException("Cancelled after " + results.size() + " migrations"));
+            } else {
+                logger.info("Background migration finished in {} ms ({} applied)", (System.nanoTime() - start) / 1_000_000, results.size());
+                handle.publish(new MigrationEvent(Kind.FINISHED, null, null, results.size(), results.size(), null));
+                handle.succeed(results);
+            }
+        } catch (IOException | SQLException | RuntimeException e) {
+            logger.error("Background migration failed", e);
+            handle.fail(e);
+        } finally {
+            service.saveChecksumCache();
+        }
+    }
+
+    /**
+     * @return `true` if the run was cancelled before applying every pending migration.
+     */
+    private boolean applyPending(Connection conn, List<MigrationResult> results) throws IOException, SQLException {
+        MigrationHistory history = service.loadHistory(conn);
+        Path baseline = history.size() == 0 ? service.getBaselineFile() : null;
+        if (baseline != null && !handle.isCancelled()) {
+            logger.info("Empty history, applying baseline: {}", baseline.getFileName());
+            results.add(service.applyMigration(conn, baseline.getFileName().toString().split("__")[0], baseline));
+            history = service.loadHistory(conn);
+        }
+        List<Path> pending = new ArrayList<>();
+        for (Path file : service.getMigrationFiles()) {
+            String filename = file.getFileName().toString();
+            String version = filename.split("__")[0];
+            if (!history.isApplied(version)) {
+                pending.add(file);
+                continue;
+            }
+            if (!history.getChecksum(version).equals(service.getChecksum(file))) {
+                logger.warn("Migration {} has changed since it was applied", filename);
+            }
+            handle.markApplied(version);
+        }
+        handle.publish(new MigrationEvent(Kind.STARTED, null, null, 0, pending.size(), null));
+        int completed = 0;
+        for (Path file : pending) {
+            if (handle.isCancelled()) return true;
+            String filename = file.getFileName().toString();
+            String version = filename.split("__")[0];
+            handle.publish(new MigrationEvent(Kind.APPLYING, version, filename, completed, pending.size(), null));
+            MigrationResult result = service.applyMigration(conn, version, file);
+            logger.info("Applied: {} in {} ms (checksum: {})", filename, result.executionMillis(), result.checksum());
+            results.add(result);
+            handle.markApplied(version);
+            handle.publish(new MigrationEvent(Kind.APPLIED, version, filename, ++completed, pending.size(), result));
+        }
+        return false;
+    }
+}
@@ -0,0 +1,26 @@
+package org.bereketab.embed;
+
+import org.bereketab.MigrationResult;
+
+/**
+ * Progress of a background migration run, published by {@link MigrationHandle#events()}.
+ * @param kind What happened.
+ * @param version Migration version (e.g., "V1"), or `null` for {@link Kind#STARTED} and {@link Kind#FINISHED}.
+ * @param fileName Migration filename, or `null` for {@link Kind#STARTED} and {@link Kind#FINISHED}.
+ * @param completed Migrations applied so far in this run.
+ * @param pending Migrations this run is going to apply in total.
+ * @param result Outcome of the migration for {@link Kind#APPLIED}, otherwise `null`.
+ */
+public record MigrationEvent(Kind kind, String version, String fileName, int completed, int pending, MigrationResult result) {
+
+    public enum Kind {
+        /** The migration lock is held and the pending migrations are known. */
+        STARTED,
+        /** A migration is about to run. */
+        APPLYING,
+        /** A migration has been committed. */
+        APPLIED,
+        /** Every pending migration has been applied. */
+        FINISHED
+    }
+}
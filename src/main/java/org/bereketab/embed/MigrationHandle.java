@@ -0,0 +1,120 @@
+package org.bereketab.embed;
+
+import org.bereketab.MigrationResult;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A migration run started by {@link BackgroundMigrator#start()}: its completion, progress events, per-version readiness
+ * and cancellation. All methods are thread-safe.
+ */
+public class MigrationHandle {
+    private final CompletableFuture<List<MigrationResult>> completion = new CompletableFuture<>();
+    private final SubmissionPublisher<MigrationEvent> events;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final Map<String, CompletableFuture<Void>> readiness = new HashMap<>();
+    private final Set<String> applied = new HashSet<>();
+    private Throwable failure;
+    private boolean finished;
+
+    MigrationHandle(SubmissionPublisher<MigrationEvent> events) {
+        this.events = events;
+        // Cancelling the future is the same as cancelling the run
+        completion.whenComplete((results, error) -> {
+            if (error instanceof CancellationException) cancelled.set(true);
+        });
+    }
+
+    /**
+     * @return Completes with the migrations applied by this run, in order, once all of them are committed; completes
+     *         exceptionally with the failure, or with a {@link CancellationException} if the run was cancelled.
+     *         Cancelling this future cancels the run.
+     */
+    public CompletableFuture<List<MigrationResult>> completion() {
+        return completion;
+    }
+
+    /**
+     * Hot stream of progress events, delivered asynchronously. Events published before subscribing are not replayed,
+     * so subscribe through {@link BackgroundMigrator#subscribe} to see the whole run. A subscriber that falls more than
+     * the publisher's buffer behind misses events rather than slowing the run down. The stream completes when the run
+     * does, or fails with the run's failure.
+     * @return The event publisher.
+     */
+    public Flow.Publisher<MigrationEvent> events() {
+        return events;
+    }
+
+    /**
+     * Readiness gate for a component that depends on part of the schema: completes as soon as `version` is applied,
+     * without waiting for later migrations. Migrations are applied in version order, so every earlier version is
+     * applied by then as well.
+     * @param version Migration version (e.g., "V12").
+     * @return Completes when the version is applied (immediately if it already was); completes exceptionally if the
+     *         run fails or is cancelled first, or finishes without the version being a migration.
+     */
+    public synchronized CompletableFuture<Void> whenApplied(String version) {
+        if (applied.contains(version)) return CompletableFuture.completedFuture(null);
+        if (failure != null) return CompletableFuture.failedFuture(failure);
+        if (finished) return CompletableFuture.failedFuture(new IllegalArgumentException("No migration " + version));
+        return readiness.computeIfAbsent(version, v -> new CompletableFuture<>());
+    }
+
+    /**
+     * Stops the run before its next migration. A migration already running is allowed to commit or roll back on its
+     * own, since interrupting JDBC mid-statement can leave the connection unusable.
+     * @return `true` if the run was still going.
+     */
+    public boolean cancel() {
+        return completion.cancel(false);
+    }
+
+    /**
+     * @return `true` if the run was cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    synchronized void markApplied(String version) {
+        applied.add(version);
+        CompletableFuture<Void> ready = readiness.remove(version);
+        if (ready != null) ready.complete(null);
+    }
+
+    void publish(MigrationEvent event) {
+        events.offer(event, null);
+    }
+
+    void succeed(List<MigrationResult> results) {
+        synchronized (this) {
+            finished = true;
+            for (Map.Entry<String, CompletableFuture<Void>> entry : readiness.entrySet()) {
+                entry.getValue().completeExceptionally(new IllegalArgumentException("No migration " + entry.getKey()));
+            }
+            readiness.clear();
+        }
+        events.close();
+        completion.complete(results);
+    }
+
+    void fail(Throwable error) {
+        synchronized (this) {
+            failure = error;
+            for (CompletableFuture<Void> ready : readiness.values()) {
+                ready.completeExceptionally(error);
+            }
+            readiness.clear();
+        }
+        events.closeExceptionally(error);
+        completion.completeExceptionally(error);
+    }
+}
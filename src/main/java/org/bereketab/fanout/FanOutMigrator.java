@@ -0,0 +1,111 @@
+package org.bereketab.fanout;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.bereketab.MigrationService;
+import org.bereketab.commands.MigrateCommand;
+import org.bereketab.migrationLibrary.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Applies the pending migrations to many targets concurrently, one virtual thread per target.
+ * Each target keeps its own `migration_history`; at most `maxPerCluster` targets on the same server run at a time.
+ */
+public class FanOutMigrator {
+    private static final Logger logger = LoggerFactory.getLogger(FanOutMigrator.class);
+    // Each target needs one connection for migrating; the second covers history loading and locking
+    private static final int TARGET_POOL_SIZE = 2;
+    private final MigrationService template;
+    private final int maxPerCluster;
+    private final Map<String, Semaphore> clusterSlots = new ConcurrentHashMap<>();
+
+    /**
+     * @param template Service whose migrations directory and checksum cache are shared by all targets.
+     * @param maxPerCluster Maximum number of targets migrated at the same time on one server.
+     */
+    public FanOutMigrator(MigrationService template, int maxPerCluster) {
+        if (maxPerCluster < 1) {
+            throw new IllegalArgumentException("Concurrency per cluster must be at least 1, got " + maxPerCluster);
+        }
+        this.template = template;
+        this.maxPerCluster = maxPerCluster;
+    }
+
+    /**
+     * Migrates every target and waits for all of them to finish. A failing target doesn't stop the others.
+     * @param targets Targets to migrate.
+     * @return One result per target, in the order given.
+     */
+    public List<TargetResult> run(List<MigrationTarget> targets) {
+        List<Future<TargetResult>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("fanout-", 1).factory())) {
+            for (MigrationTarget target : targets) {
+                futures.add(executor.submit(() -> migrate(target)));
+            }
+        }
+        List<TargetResult> results = new ArrayList<>();
+        for (Future<TargetResult> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for fan-out targets", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Unexpected fan-out failure", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private TargetResult migrate(MigrationTarget target) {
+        Semaphore slots = clusterSlots.computeIfAbsent(target.clusterKey(), key -> new Semaphore(maxPerCluster));
+        long start = System.nanoTime();
+        MDC.put("target", " [" + (target.schema() != null ? target.schema() : target.clusterKey()) + "]");
+        try {
+            slots.acquire();
+            try (HikariDataSource dataSource = DatabaseConfig.createDataSource(target.jdbcUrl(), target.schema(), TARGET_POOL_SIZE)) {
+                if (target.schema() != null) {
+                    createSchema(dataSource, target.schema());
+                }
+                MigrationService service = new MigrationService(dataSource);
+                service.setMigrationsDir(template.getMigrationsDir());
+                service.setChecksumCache(template.getChecksumCache());
+                new MigrateCommand(service).run();
+            } finally {
+                slots.release();
+            }
+            return new TargetResult(target, elapsedMillis(start), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new TargetResult(target, elapsedMillis(start), e);
+        } catch (RuntimeException | SQLException e) {
+            logger.error("Migration of {} failed", target, e);
+            return new TargetResult(target, elapsedMillis(start), e);
+        } finally {
+            MDC.remove("target");
+        }
+    }
+
+    private void createSchema(HikariDataSource dataSource, String schema) throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE SCHEMA IF NOT EXISTS \"" + schema.replace("\"", "\"\"") + "\"");
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,52 @@
+package org.bereketab.fanout;
+
+import java.net.URI;
+
+/**
+ * A database (and optionally a schema inside it) that a fan-out run migrates.
+ * @param jdbcUrl JDBC URL of the database.
+ * @param schema Schema to migrate, or `null` for the database's default search path.
+ */
+public record MigrationTarget(String jdbcUrl, String schema) {
+
+    /**
+     * Parses a target specification: a JDBC URL, a schema name (on the default database),
+     * or a JDBC URL followed by whitespace and a schema name.
+     * @param spec The target specification (e.g., "tenant_42" or "jdbc:postgresql://db2:5432/app tenant_42").
+     * @param defaultUrl JDBC URL used for schema-only specifications.
+     * @return The parsed target.
+     */
+    public static MigrationTarget parse(String spec, String defaultUrl) {
+        String[] parts = spec.strip().split("\\s+");
+        if (parts.length > 2) {
+            throw new IllegalArgumentException("Invalid target: " + spec);
+        }
+        if (parts[0].startsWith("jdbc:")) {
+            return new MigrationTarget(parts[0], parts.length == 2 ? parts[1] : null);
+        }
+        if (parts.length != 1) {
+            throw new IllegalArgumentException("Invalid target: " + spec);
+        }
+        return new MigrationTarget(defaultUrl, parts[0]);
+    }
+
+    /**
+     * @return Host and port of the server this target lives on, used to cap concurrency per cluster.
+     */
+    public String clusterKey() {
+        try {
+            URI uri = URI.create(jdbcUrl.substring("jdbc:".length()));
+            if (uri.getHost() != null) {
+                return uri.getHost() + ":" + (uri.getPort() == -1 ? "default" : uri.getPort());
+            }
+        } catch (IllegalArgumentException e) {
+            // Fall through for URLs that aren't URI-shaped
+        }
+        return jdbcUrl;
+    }
+
+    @Override
+    public String toString() {
+        return schema == null ? jdbcUrl : jdbcUrl + " [" + schema + "]";
+    }
+}
@@ -0,0 +1,14 @@
+package org.bereketab.fanout;
+
+/**
+ * Outcome of migrating one fan-out target.
+ * @param target The migrated target.
+ * @param durationMillis Wall time spent on the target, including waiting for a cluster slot.
+ * @param error The failure, or `null` if the target was migrated successfully.
+ */
+public record TargetResult(MigrationTarget target, long durationMillis, Throwable error) {
+
+    public boolean succeeded() {
+        return error == null;
+    }
+}
@@ -0,0 +1,107 @@
+package org.bereketab.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how long migrating backends wait on locks by sampling `pg_stat_activity` from a single extra
+ * connection. Backends are registered by PID while their migration runs; one query per interval covers all of them,
+ * so parallel migrations share the same monitoring connection. Precision is one sampling interval.
+ */
+public class LockWaitMonitor implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(LockWaitMonitor.class);
+    public static final long DEFAULT_INTERVAL_MILLIS = 100;
+    private static final String SAMPLE_SQL = "SELECT pid FROM pg_stat_activity WHERE pid = ANY (?) AND wait_event_type = 'Lock'";
+    private final DataSource dataSource;
+    private final long intervalMillis;
+    private final Map<Integer, AtomicLong> waitNanos = new ConcurrentHashMap<>();
+    private Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * @param dataSource Pool to borrow the monitoring connection from (on first use).
+     * @param intervalMillis Sampling interval.
+     */
+    public LockWaitMonitor(DataSource dataSource, long intervalMillis) {
+        this.dataSource = dataSource;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * Starts measuring lock waits of a backend.
+     * @param pid Backend PID of the migrating connection (`pg_backend_pid()`).
+     */
+    public synchronized void register(int pid) {
+        waitNanos.put(pid, new AtomicLong());
+        if (thread == null && running) {
+            thread = new Thread(this::sampleLoop, "lock-wait-monitor");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops measuring a backend.
+     * @param pid Backend PID passed to {@link #register(int)}.
+     * @return Total time the backend was seen waiting on a lock, in milliseconds.
+     */
+    public long unregister(int pid) {
+        AtomicLong waited = waitNanos.remove(pid);
+        return waited == null ? 0 : TimeUnit.NANOSECONDS.toMillis(waited.get());
+    }
+
+    @Override
+    public void close() {
+        Thread sampler;
+        synchronized (this) {
+            running = false;
+            sampler = thread;
+        }
+        if (sampler != null) {
+            sampler.interrupt();
+            try {
+                sampler.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void sampleLoop() {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SAMPLE_SQL)) {
+            long last = System.nanoTime();
+            while (running) {
+                TimeUnit.MILLISECONDS.sleep(intervalMillis);
+                long now = System.nanoTime();
+                Integer[] pids = waitNanos.keySet().toArray(new Integer[0]);
+                if (pids.length > 0) {
+                    Array array = conn.createArrayOf("integer", pids);
+                    stmt.setArray(1, array);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            AtomicLong waited = waitNanos.get(rs.getInt(1));
+                            if (waited != null) waited.addAndGet(now - last);
+                        }
+                    }
+                    array.free();
+                }
+                last = now;
+            }
+        } catch (InterruptedException e) {
+            // Closed
+        } catch (SQLException e) {
+            logger.warn("Lock wait monitoring stopped: {}", e.getMessage());
+        }
+    }
+}
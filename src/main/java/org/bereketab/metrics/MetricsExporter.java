@@ -0,0 +1,161 @@
+package org.bereketab.metrics;
+
+import org.bereketab.MigrationResult;
+import org.bereketab.script.StatementTiming;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes {@link RunMetrics} as JSON and in the Prometheus text exposition format. The Prometheus file is meant for
+ * node exporter's textfile collector, so both files are written to a temporary file and renamed into place.
+ */
+public class MetricsExporter {
+    public static final String JSON_FILE = "migration-metrics.json";
+    public static final String PROMETHEUS_FILE = "migration_tool.prom";
+
+    /**
+     * Writes both metrics files into a directory.
+     * @param metrics Metrics of the finished run.
+     * @param dir Output directory (created if missing).
+     * @throws IOException If a file cannot be written.
+     */
+    public void export(RunMetrics metrics, Path dir) throws IOException {
+        Files.createDirectories(dir);
+        writeAtomically(dir.resolve(JSON_FILE), toJson(metrics));
+        writeAtomically(dir.resolve(PROMETHEUS_FILE), toPrometheus(metrics));
+    }
+
+    String toJson(RunMetrics metrics) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"command\": ").append(quote(metrics.getCommand())).append(",\n");
+        json.append("  \"succeeded\": ").append(metrics.isSucceeded()).append(",\n");
+        json.append("  \"startedAtMillis\": ").append(metrics.getStartedAtMillis()).append(",\n");
+        json.append("  \"durationMillis\": ").append(metrics.getDurationMillis()).append(",\n");
+        json.append("  \"migrationLockWaitMillis\": ").append(metrics.getMigrationLockWaitMillis()).append(",\n");
+        json.append("  \"migrations\": [");
+        List<MigrationResult> migrations = metrics.getMigrations();
+        for (int i = 0; i < migrations.size(); i++) {
+            MigrationResult migration = migrations.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"version\": ").append(quote(migration.version()))
+                    .append(", \"fileName\": ").append(quote(migration.fileName()))
+                    .append(", \"checksum\": ").append(quote(migration.checksum()))
+                    .append(", \"executionMillis\": ").append(migration.executionMillis())
+                    .append(", \"statements\": ").append(migration.statements())
+                    .append(", \"rowsAffected\": ").append(migration.rowsAffected())
+                    .append(", \"lockWaitMillis\": ").append(migration.lockWaitMillis())
+                    .append(", \"attempts\": ").append(migration.attempts())
+                    .append(", \"slowestStatements\": [");
+            List<StatementTiming> statements = migration.slowestStatements();
+            for (int j = 0; j < statements.size(); j++) {
+                StatementTiming statement = statements.get(j);
+                json.append(j == 0 ? "" : ", ")
+                        .append("{\"sql\": ").append(quote(statement.sql()))
+                        .append(", \"statements\": ").append(statement.statements())
+                        .append(", \"elapsedMillis\": ").append(formatMillis(statement.elapsedMicros()))
+                        .append(", \"rowsAffected\": ").append(statement.rowsAffected()).append('}');
+            }
+            json.append("]}");
+        }
+        json.append(migrations.isEmpty() ? "]\n" : "\n  ]\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    String toPrometheus(RunMetrics metrics) {
+        String command = "command=\"" + label(metrics.getCommand()) + "\"";
+        StringBuilder prom = new StringBuilder();
+        gauge(prom, "migration_tool_run_timestamp_seconds", "Start time of the last run.");
+        sample(prom, "migration_tool_run_timestamp_seconds", command, metrics.getStartedAtMillis() / 1000.0);
+        gauge(prom, "migration_tool_run_duration_seconds", "Wall time of the last run.");
+        sample(prom, "migration_tool_run_duration_seconds", command, metrics.getDurationMillis() / 1000.0);
+        gauge(prom, "migration_tool_run_success", "1 if the last run succeeded, 0 otherwise.");
+        sample(prom, "migration_tool_run_success", command, metrics.isSucceeded() ? 1 : 0);
+        gauge(prom, "migration_tool_run_migration_lock_wait_seconds", "Time spent waiting for the cluster-wide migration lock.");
+        sample(prom, "migration_tool_run_migration_lock_wait_seconds", command, metrics.getMigrationLockWaitMillis() / 1000.0);
+        gauge(prom, "migration_tool_run_migrations", "Number of migrations processed by the last run.");
+        sample(prom, "migration_tool_run_migrations", command, metrics.getMigrations().size());
+
+        List<MigrationResult> migrations = metrics.getMigrations();
+        gauge(prom, "migration_tool_migration_duration_seconds", "Wall time of each migration in the last run.");
+        for (MigrationResult m : migrations) {
+            sample(prom, "migration_tool_migration_duration_seconds", labels(command, m), m.executionMillis() / 1000.0);
+        }
+        gauge(prom, "migration_tool_migration_rows_affected", "Rows inserted, updated or deleted by each migration.");
+        for (MigrationResult m : migrations) {
+            sample(prom, "migration_tool_migration_rows_affected", labels(command, m), m.rowsAffected());
+        }
+        gauge(prom, "migration_tool_migration_statements", "Statements executed by each migration.");
+        for (MigrationResult m : migrations) {
+            sample(prom, "migration_tool_migration_statements", labels(command, m), m.statements());
+        }
+        gauge(prom, "migration_tool_migration_lock_wait_seconds", "Time each migration spent waiting on locks.");
+        for (MigrationResult m : migrations) {
+            if (m.lockWaitMillis() != null) {
+                sample(prom, "migration_tool_migration_lock_wait_seconds", labels(command, m), m.lockWaitMillis() / 1000.0);
+            }
+        }
+        gauge(prom, "migration_tool_migration_attempts", "Attempts each migration needed (more than 1 after lock timeouts).");
+        for (MigrationResult m : migrations) {
+            sample(prom, "migration_tool_migration_attempts", labels(command, m), m.attempts());
+        }
+        return prom.toString();
+    }
+
+    private static void gauge(StringBuilder prom, String name, String help) {
+        prom.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        prom.append("# TYPE ").append(name).append(" gauge\n");
+    }
+
+    private static void sample(StringBuilder prom, String name, String labels, double value) {
+        prom.append(name).append('{').append(labels).append("} ");
+        prom.append(value == Math.rint(value) ? String.valueOf((long) value) : String.format(Locale.ROOT, "%.3f", value));
+        prom.append('\n');
+    }
+
+    private static String labels(String command, MigrationResult migration) {
+        return command + ",version=\"" + label(migration.version()) + "\",file=\"" + label(migration.fileName()) + "\"";
+    }
+
+    private static String label(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String formatMillis(long micros) {
+        return String.format(Locale.ROOT, "%.3f", micros / 1000.0);
+    }
+
+    static String quote(String value) {
+        if (value == null) return "null";
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) quoted.append(String.format("\\u%04x", (int) c));
+                    else quoted.append(c);
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static void writeAtomically(Path target, String content) throws IOException {
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
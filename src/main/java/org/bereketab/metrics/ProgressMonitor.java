@@ -0,0 +1,180 @@
+package org.bereketab.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reports the progress of long-running migrations from a single extra connection (PostgreSQL only), like
+ * {@link LockWaitMonitor}. Each interval one query covers every registered backend: the phase and blocks done from
+ * `pg_stat_progress_create_index` (index builds) or `pg_stat_progress_cluster` (`CLUSTER`/`VACUUM FULL` rewrites), the
+ * current statement from `pg_stat_activity`, and, when the backend waits on a lock, the lock from `pg_locks` and the
+ * sessions blocking it. The ETA extrapolates the rate since the current phase started. `ALTER TABLE` rewrites have no
+ * progress view, so they only report elapsed time and blocking.
+ */
+public class ProgressMonitor implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ProgressMonitor.class);
+    public static final long DEFAULT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final int STATEMENT_LENGTH = 120;
+    private static final String SAMPLE_SQL = """
+            SELECT a.pid,
+                   (extract(epoch FROM clock_timestamp() - a.query_start) * 1000)::bigint AS statement_millis,
+                   left(regexp_replace(a.query, '\\s+', ' ', 'g'), %1$d) AS statement,
+                   coalesce('building index: ' || ci.phase, cl.command || ': ' || cl.phase) AS phase,
+                   coalesce(nullif(ci.blocks_total, 0), ci.tuples_total, cl.heap_blks_total) AS total,
+                   CASE WHEN ci.pid IS NULL THEN cl.heap_blks_scanned
+                        WHEN ci.blocks_total > 0 THEN ci.blocks_done ELSE ci.tuples_done END AS done,
+                   (SELECT l.mode || ' on ' || coalesce(l.relation::regclass::text, l.locktype)
+                    FROM pg_locks l WHERE l.pid = a.pid AND NOT l.granted LIMIT 1) AS waiting_for,
+                   (SELECT string_agg(b.pid || ' (' || coalesce(b.usename, '?') || '@' || coalesce(nullif(b.application_name, ''), '?')
+                                      || ', ' || coalesce(b.state, '?') || ': ' || coalesce(left(regexp_replace(b.query, '\\s+', ' ', 'g'), %1$d), '') || ')', '; ')
+                    FROM pg_stat_activity b WHERE b.pid = ANY (pg_blocking_pids(a.pid))) AS blocked_by
+            FROM pg_stat_activity a
+            LEFT JOIN pg_stat_progress_create_index ci ON ci.pid = a.pid
+            LEFT JOIN pg_stat_progress_cluster cl ON cl.pid = a.pid
+            WHERE a.pid = ANY (?)
+            """.formatted(STATEMENT_LENGTH);
+    private final DataSource dataSource;
+    private final long intervalMillis;
+    private final Consumer<ProgressReport> sink;
+    private final Map<Integer, Tracked> tracked = new ConcurrentHashMap<>();
+    private Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * A registered migration and the start of its current phase, for the ETA.
+     */
+    private static final class Tracked {
+        final String migration;
+        final long startNanos = System.nanoTime();
+        String phase;
+        long phaseStartNanos;
+        long phaseStartDone;
+
+        Tracked(String migration) {
+            this.migration = migration;
+        }
+    }
+
+    /**
+     * @param dataSource Pool to borrow the monitoring connection from (on first use).
+     * @param intervalMillis How often to sample and report.
+     * @param sink Receives every report, on the monitoring thread.
+     */
+    public ProgressMonitor(DataSource dataSource, long intervalMillis, Consumer<ProgressReport> sink) {
+        this.dataSource = dataSource;
+        this.intervalMillis = intervalMillis;
+        this.sink = sink;
+    }
+
+    /**
+     * Starts reporting the progress of a backend.
+     * @param pid Backend PID of the migrating connection (`pg_backend_pid()`).
+     * @param migration Name to report it under (e.g., the migration filename).
+     */
+    public synchronized void register(int pid, String migration) {
+        tracked.put(pid, new Tracked(migration));
+        if (thread == null && running) {
+            thread = new Thread(this::sampleLoop, "progress-monitor");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops reporting a backend.
+     * @param pid Backend PID passed to {@link #register(int, String)}.
+     */
+    public void unregister(int pid) {
+        tracked.remove(pid);
+    }
+
+    @Override
+    public void close() {
+        Thread sampler;
+        synchronized (this) {
+            running = false;
+            sampler = thread;
+        }
+        if (sampler != null) {
+            sampler.interrupt();
+            try {
+                sampler.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void sampleLoop() {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SAMPLE_SQL)) {
+            while (running) {
+                TimeUnit.MILLISECONDS.sleep(intervalMillis);
+                Integer[] pids = tracked.keySet().toArray(new Integer[0]);
+                if (pids.length == 0) continue;
+                Array array = conn.createArrayOf("integer", pids);
+                stmt.setArray(1, array);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        report(rs);
+                    }
+                }
+                array.free();
+            }
+        } catch (InterruptedException e) {
+            // Closed
+        } catch (SQLException e) {
+            logger.warn("Progress monitoring stopped: {}", e.getMessage());
+        }
+    }
+
+    private void report(ResultSet rs) throws SQLException {
+        int pid = rs.getInt("pid");
+        Tracked migration = tracked.get(pid);
+        // Finished between the snapshot of PIDs and the query
+        if (migration == null) return;
+        long now = System.nanoTime();
+        String phase = rs.getString("phase");
+        long total = rs.getObject("total") != null ? rs.getLong("total") : -1;
+        long done = rs.getObject("done") != null ? rs.getLong("done") : -1;
+        if (!Objects.equals(phase, migration.phase)) {
+            migration.phase = phase;
+            migration.phaseStartNanos = now;
+            migration.phaseStartDone = done;
+        }
+        Long eta = estimateRemainingMillis(migration.phaseStartDone, done, total, now - migration.phaseStartNanos);
+        ProgressReport report = new ProgressReport(migration.migration, pid, TimeUnit.NANOSECONDS.toMillis(now - migration.startNanos),
+                rs.getLong("statement_millis"), rs.getString("statement"), phase, done, total, eta,
+                rs.getString("waiting_for"), rs.getString("blocked_by"));
+        try {
+            sink.accept(report);
+        } catch (RuntimeException e) {
+            logger.warn("Progress report failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Extrapolates the rate observed since a phase started.
+     * @param startDone Work done when the phase was first seen.
+     * @param done Work done now.
+     * @param total Total work of the phase, or -1 if unknown.
+     * @param elapsedNanos Time since the phase was first seen.
+     * @return Estimated milliseconds left, or `null` if no progress has been observed yet.
+     */
+    static Long estimateRemainingMillis(long startDone, long done, long total, long elapsedNanos) {
+        if (total <= 0 || done < 0 || startDone < 0 || done <= startDone || elapsedNanos <= 0) return null;
+        double nanosPerUnit = (double) elapsedNanos / (done - startDone);
+        return TimeUnit.NANOSECONDS.toMillis((long) (nanosPerUnit * Math.max(0, total - done)));
+    }
+}
@@ -0,0 +1,57 @@
+package org.bereketab.metrics;
+
+/**
+ * One progress sample of a running migration (see {@link ProgressMonitor}).
+ * @param migration Migration filename (e.g., "V3__index_orders.sql").
+ * @param pid Backend PID running it.
+ * @param elapsedMillis Time since the migration started.
+ * @param statementMillis Time since the current statement started.
+ * @param statement Start of the current statement.
+ * @param phase Phase reported by `pg_stat_progress_create_index`/`pg_stat_progress_cluster` (e.g., "building index:
+ *              scanning table"), or `null` for statements without a progress view.
+ * @param done Blocks (or tuples) processed in this phase, or -1 if unknown.
+ * @param total Blocks (or tuples) to process in this phase, or -1 if unknown.
+ * @param etaMillis Estimated time left in this phase, or `null` until there is a rate to extrapolate.
+ * @param waitingFor Lock the backend is waiting for (e.g., "AccessExclusiveLock on orders"), or `null` if it isn't
+ *                   blocked.
+ * @param blockedBy Sessions holding it up (PID, user, application and statement), or `null`.
+ */
+public record ProgressReport(String migration, int pid, long elapsedMillis, long statementMillis, String statement,
+                             String phase, long done, long total, Long etaMillis, String waitingFor, String blockedBy) {
+
+    /**
+     * @return Progress as a human-readable line for the console.
+     */
+    public String describe() {
+        StringBuilder line = new StringBuilder(migration).append(": ");
+        if (phase != null) {
+            line.append(phase);
+            if (total > 0) {
+                line.append(String.format(", %d/%d (%d%%)", done, total, done * 100 / total));
+            }
+            if (etaMillis != null) line.append(", ETA ").append(seconds(etaMillis));
+        } else {
+            line.append("running ").append(seconds(statementMillis)).append(": ").append(statement);
+        }
+        if (waitingFor != null) {
+            line.append(", BLOCKED waiting for ").append(waitingFor);
+            if (blockedBy != null) line.append(" held by ").append(blockedBy);
+        }
+        return line.append(" (elapsed ").append(seconds(elapsedMillis)).append(')').toString();
+    }
+
+    /**
+     * @return Progress as one line of JSON, for machine-readable progress streams.
+     */
+    public String toJson() {
+        return "{\"migration\": " + MetricsExporter.quote(migration) + ", \"pid\": " + pid + ", \"elapsedMillis\": " + elapsedMillis
+                + ", \"statementMillis\": " + statementMillis + ", \"statement\": " + MetricsExporter.quote(statement)
+                + ", \"phase\": " + MetricsExporter.quote(phase) + ", \"done\": " + done + ", \"total\": " + total
+                + ", \"etaMillis\": " + etaMillis + ", \"waitingFor\": " + MetricsExporter.quote(waitingFor)
+                + ", \"blockedBy\": " + MetricsExporter.quote(blockedBy) + "}";
+    }
+
+    private static String seconds(long millis) {
+        return millis >= 60_000 ? (millis / 60_000) + "m" + (millis / 1000 % 60) + "s" : (millis / 1000) + "s";
+    }
+}
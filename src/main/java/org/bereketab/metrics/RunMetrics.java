@@ -0,0 +1,76 @@
+package org.bereketab.metrics;
+
+import org.bereketab.MigrationResult;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Timings collected during one `migrate` or `rollback` run, exported at the end by {@link MetricsExporter}.
+ * Safe to fill from several threads (parallel migrate).
+ */
+public class RunMetrics {
+    private final String command;
+    private final long startedAtMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final List<MigrationResult> migrations = Collections.synchronizedList(new ArrayList<>());
+    private volatile long migrationLockWaitMillis;
+    private volatile long durationMillis = -1;
+    private volatile boolean succeeded = true;
+
+    /**
+     * @param command Name of the command being measured (e.g., "migrate").
+     */
+    public RunMetrics(String command) {
+        this.command = command;
+    }
+
+    public void add(MigrationResult result) {
+        migrations.add(result);
+    }
+
+    /**
+     * @param millis Time spent waiting for the cluster-wide migration lock.
+     */
+    public void setMigrationLockWaitMillis(long millis) {
+        this.migrationLockWaitMillis = millis;
+    }
+
+    /**
+     * Marks the end of the run.
+     * @param succeeded `false` if the run failed.
+     */
+    public void finish(boolean succeeded) {
+        this.succeeded = succeeded;
+        this.durationMillis = (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public long getStartedAtMillis() {
+        return startedAtMillis;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis >= 0 ? durationMillis : (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    public long getMigrationLockWaitMillis() {
+        return migrationLockWaitMillis;
+    }
+
+    public boolean isSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * @return Copy of the per-migration results, in completion order.
+     */
+    public List<MigrationResult> getMigrations() {
+        synchronized (migrations) {
+            return new ArrayList<>(migrations);
+        }
+    }
+}
@@ -4,27 +4,82 @@ import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.sql.DriverManager;
 import java.util.Properties;
 
 public class DatabaseConfig {
     private static HikariDataSource dataSource;
+    private static Properties properties;
 
     public static HikariDataSource getDataSource() {
         // Initialize and return shared connection pool
         if (dataSource == null) {
-            Properties props = loadConfigProperties();
-            HikariConfig config = new HikariConfig();
-            config.setJdbcUrl(props.getProperty("db.url"));
-            config.setUsername(props.getProperty("db.username"));
-            config.setPassword(props.getProperty("db.password"));
-            config.setDriverClassName(props.getProperty("db.driver", "org.postgresql.Driver"));
-            config.setMaximumPoolSize(10);
-            validateConfig(config);
-            dataSource = new HikariDataSource(config);
+            Properties props = getProperties();
+            dataSource = createDataSource(props.getProperty("db.url"), null, 10);
         }
         return dataSource;
     }
 
+    /**
+     * Creates a separate connection pool using the configured credentials and driver, e.g. for one fan-out target.
+     * @param jdbcUrl JDBC URL of the target database.
+     * @param schema Schema to use as the connections' search path, or `null` for the database default.
+     * @param maxPoolSize Maximum number of connections in the pool.
+     * @return A new data source; the caller is responsible for closing it.
+     */
+    public static HikariDataSource createDataSource(String jdbcUrl, String schema, int maxPoolSize) {
+        HikariConfig config = createConfig(jdbcUrl);
+        config.setMaximumPoolSize(maxPoolSize);
+        if (schema != null) {
+            config.setSchema(schema);
+        }
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * Creates a data source for one CLI run that opens connections only when they are first needed, instead of a pool.
+     * The config file isn't read until then either, so `--help` and invalid arguments never touch it.
+     * @return A new data source; the caller is responsible for closing it.
+     */
+    public static OnDemandDataSource createOnDemandDataSource() {
+        return new OnDemandDataSource(() -> {
+            // Setting the driver class name loads and registers the driver
+            HikariConfig config = createConfig(getJdbcUrl());
+            return DriverManager.getConnection(config.getJdbcUrl(), config.getUsername(), config.getPassword());
+        });
+    }
+
+    /**
+     * Builds validated connection settings from the configured credentials and driver, for callers that manage their
+     * own pools (e.g. template database provisioning).
+     * @param jdbcUrl JDBC URL to connect to.
+     * @return A new config.
+     */
+    public static HikariConfig createConfig(String jdbcUrl) {
+        Properties props = getProperties();
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername(props.getProperty("db.username"));
+        config.setPassword(props.getProperty("db.password"));
+        config.setDriverClassName(props.getProperty("db.driver", "org.postgresql.Driver"));
+        validateConfig(config);
+        return config;
+    }
+
+    /**
+     * @return The configured JDBC URL (`db.url`).
+     */
+    public static String getJdbcUrl() {
+        return getProperties().getProperty("db.url");
+    }
+
+    private static synchronized Properties getProperties() {
+        if (properties == null) {
+            properties = loadConfigProperties();
+        }
+        return properties;
+    }
+
     private static Properties loadConfigProperties() {
         // Load config from migration.conf or fallback to application.properties
         Properties props = new Properties();
@@ -54,4 +109,4 @@ public class DatabaseConfig {
             throw new RuntimeException("db.password is missing or empty in config file");
         }
     }
-}
\ No newline at end of file
+}
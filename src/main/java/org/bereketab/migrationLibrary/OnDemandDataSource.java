@@ -0,0 +1,191 @@
+package org.bereketab.migrationLibrary;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Lightweight data source for short-lived CLI runs. Unlike a connection pool it opens nothing up front and starts
+ * no background threads: a connection is opened on the first `getConnection()` and reused after it is closed.
+ * A sequential run therefore uses one connection (two while `migrate` holds the migration lock); extra connections
+ * are opened only when more are in use at once, e.g. with `--parallel`. Like a pool, a returned connection has any
+ * open transaction rolled back and auto-commit restored.
+ */
+public class OnDemandDataSource implements DataSource, AutoCloseable {
+    private final ConnectionFactory factory;
+    private final Deque<Connection> idle = new ArrayDeque<>();
+    private final List<Connection> opened = new ArrayList<>();
+    private boolean closed;
+
+    /**
+     * Opens a new physical connection.
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection connect() throws SQLException;
+    }
+
+    /**
+     * @param factory Opens physical connections; called lazily, so configuration may be read there.
+     */
+    public OnDemandDataSource(ConnectionFactory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection physical;
+        synchronized (this) {
+            if (closed) throw new SQLException("Data source is closed");
+            physical = idle.pollFirst();
+        }
+        if (physical == null) {
+            physical = factory.connect();
+            synchronized (this) {
+                opened.add(physical);
+            }
+        }
+        return wrap(physical);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Credentials are fixed by the connection factory");
+    }
+
+    /**
+     * @return Number of physical connections opened so far.
+     */
+    public synchronized int getOpenedCount() {
+        return opened.size();
+    }
+
+    /**
+     * Closes every physical connection, including ones still in use.
+     */
+    @Override
+    public void close() {
+        List<Connection> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayList<>(opened);
+            opened.clear();
+            idle.clear();
+        }
+        for (Connection conn : toClose) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                // Nothing left to do with a connection that failed to close
+            }
+        }
+    }
+
+    private Connection wrap(Connection physical) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean released;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getDeclaringClass() == Object.class) {
+                    return switch (method.getName()) {
+                        case "equals" -> proxy == args[0];
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        default -> "OnDemandConnection[" + physical + "]";
+                    };
+                }
+                switch (method.getName()) {
+                    case "close" -> {
+                        if (!released) {
+                            released = true;
+                            release(physical);
+                        }
+                        return null;
+                    }
+                    case "isClosed" -> {
+                        return released || physical.isClosed();
+                    }
+                    default -> {
+                        if (released) throw new SQLException("Connection is closed");
+                        try {
+                            return method.invoke(physical, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+
+    private void release(Connection physical) {
+        boolean reusable;
+        try {
+            if (!physical.isClosed() && !physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            reusable = !physical.isClosed();
+        } catch (SQLException e) {
+            reusable = false;
+        }
+        synchronized (this) {
+            if (reusable && !closed) {
+                idle.addFirst(physical);
+                return;
+            }
+            opened.remove(physical);
+        }
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            // Broken connection; it is dropped either way
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return iface.cast(this);
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
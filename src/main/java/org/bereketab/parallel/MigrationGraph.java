@@ -0,0 +1,218 @@
+package org.bereketab.parallel;
+
+import org.bereketab.MigrationHistory;
+import org.bereketab.script.MigrationHeader;
+import org.bereketab.script.SqlStatementReader;
+import org.bereketab.script.SqlStatements;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dependency graph of pending migrations. A migration depends on the versions listed in its
+ * `-- depends-on:` header; without a header it depends on the latest earlier migration touching any of the
+ * same tables, indexes, views or sequences. A migration whose relations can't be inferred (functions,
+ * DO blocks, GRANTs, ...) is a barrier: it runs after every earlier migration and before every later one.
+ * With a `depends-on` header it only waits for the listed versions, but later migrations still wait for it, since
+ * what it touches is unknown; it doesn't hide the migrations before it from those after it.
+ */
+public class MigrationGraph {
+    public static final String DEPENDS_ON = "depends-on";
+    private final List<Node> nodes;
+
+    /**
+     * A pending migration and the migrations it must wait for.
+     */
+    public static final class Node {
+        private final int index;
+        private final Path file;
+        private final String version;
+        private final Set<Node> dependencies = new LinkedHashSet<>();
+        private final List<Node> dependents = new ArrayList<>();
+
+        private Node(int index, Path file, String version) {
+            this.index = index;
+            this.file = file;
+            this.version = version;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public Set<Node> getDependencies() {
+            return Collections.unmodifiableSet(dependencies);
+        }
+
+        public List<Node> getDependents() {
+            return Collections.unmodifiableList(dependents);
+        }
+
+        private void dependOn(Node dependency) {
+            if (dependency != this && dependencies.add(dependency)) {
+                dependency.dependents.add(this);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return file.getFileName().toString();
+        }
+    }
+
+    private MigrationGraph(List<Node> nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * Builds the dependency graph of pending migrations.
+     * @param pending Pending migration files in version order.
+     * @param history Snapshot of applied migrations (dependencies on applied versions are already satisfied).
+     * @return The graph.
+     * @throws IOException If a migration file cannot be read.
+     * @throws IllegalArgumentException If a migration depends on an unknown version or the dependencies form a cycle.
+     */
+    public static MigrationGraph build(List<Path> pending, MigrationHistory history) throws IOException {
+        List<Node> nodes = new ArrayList<>();
+        Map<String, Node> byVersion = new HashMap<>();
+        for (Path file : pending) {
+            Node node = new Node(nodes.size(), file, file.getFileName().toString().split("__")[0]);
+            nodes.add(node);
+            byVersion.put(node.version, node);
+        }
+
+        Map<String, Node> lastWriter = new HashMap<>();
+        Node barrier = null;
+        List<Node> sinceBarrier = new ArrayList<>();
+        // Migrations since the barrier whose relations are unknown but that aren't barriers (they have depends-on)
+        List<Node> opaqueSinceBarrier = new ArrayList<>();
+        for (Node node : nodes) {
+            MigrationHeader header = MigrationHeader.read(node.file);
+            Set<String> relations = inferRelations(node.file);
+            if (header.has(DEPENDS_ON)) {
+                for (String version : header.getList(DEPENDS_ON)) {
+                    Node dependency = byVersion.get(version);
+                    if (dependency != null) {
+                        node.dependOn(dependency);
+                    } else if (!history.isApplied(version)) {
+                        throw new IllegalArgumentException(node + " depends on unknown migration " + version);
+                    }
+                }
+            } else if (relations == null) {
+                // Barrier: wait for everything before it
+                sinceBarrier.forEach(node::dependOn);
+                if (barrier != null) node.dependOn(barrier);
+            } else {
+                if (barrier != null) node.dependOn(barrier);
+                opaqueSinceBarrier.forEach(node::dependOn);
+                for (String relation : relations) {
+                    Node writer = lastWriter.get(relation);
+                    if (writer != null) node.dependOn(writer);
+                }
+            }
+
+            if (relations == null && !header.has(DEPENDS_ON)) {
+                barrier = node;
+                sinceBarrier.clear();
+                opaqueSinceBarrier.clear();
+                lastWriter.clear();
+            } else if (relations == null) {
+                // Only ordered by its header, so earlier writers must stay visible to later migrations
+                sinceBarrier.add(node);
+                opaqueSinceBarrier.add(node);
+            } else {
+                sinceBarrier.add(node);
+                relations.forEach(relation -> lastWriter.put(relation, node));
+            }
+        }
+        checkAcyclic(nodes);
+        return new MigrationGraph(nodes);
+    }
+
+    /**
+     * @return Nodes in version order.
+     */
+    public List<Node> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * @return Number of migrations on the longest dependency chain (the minimum number of sequential steps).
+     */
+    public int getCriticalPathLength() {
+        int[] depth = new int[nodes.size()];
+        int longest = 0;
+        for (Node node : topologicalOrder(nodes)) {
+            int max = 0;
+            for (Node dependency : node.dependencies) {
+                max = Math.max(max, depth[dependency.index]);
+            }
+            depth[node.index] = max + 1;
+            longest = Math.max(longest, depth[node.index]);
+        }
+        return longest;
+    }
+
+    private static Set<String> inferRelations(Path file) throws IOException {
+        Set<String> relations = new HashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             SqlStatementReader statements = new SqlStatementReader(reader)) {
+            String sql;
+            while ((sql = statements.nextStatement()) != null) {
+                Set<String> referenced = SqlStatements.referencedRelations(sql);
+                if (referenced == null) {
+                    return null;
+                }
+                relations.addAll(referenced);
+            }
+        }
+        return relations;
+    }
+
+    private static void checkAcyclic(List<Node> nodes) {
+        List<Node> order = topologicalOrder(nodes);
+        if (order.size() != nodes.size()) {
+            List<Node> cyclic = new ArrayList<>(nodes);
+            cyclic.removeAll(order);
+            throw new IllegalArgumentException("Migration dependencies form a cycle: " + cyclic);
+        }
+    }
+
+    private static List<Node> topologicalOrder(List<Node> nodes) {
+        Map<Node, Integer> remaining = new HashMap<>();
+        Deque<Node> ready = new ArrayDeque<>();
+        for (Node node : nodes) {
+            remaining.put(node, node.dependencies.size());
+            if (node.dependencies.isEmpty()) ready.add(node);
+        }
+        List<Node> order = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            order.add(node);
+            for (Node dependent : node.dependents) {
+                if (remaining.merge(dependent, -1, Integer::sum) == 0) ready.add(dependent);
+            }
+        }
+        return order;
+    }
+}
@@ -0,0 +1,127 @@
+package org.bereketab.parallel;
+
+import org.bereketab.MigrationResult;
+import org.bereketab.MigrationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Applies the migrations of a {@link MigrationGraph} concurrently, running a migration as soon as all of its
+ * dependencies have been committed. Each migration runs in its own transaction on its own pooled connection,
+ * so history rows are always written after those of the migrations they depend on.
+ */
+public class ParallelMigrator {
+    private static final Logger logger = LoggerFactory.getLogger(ParallelMigrator.class);
+    private final MigrationService service;
+    private final int parallelism;
+    private final Consumer<MigrationResult> onApplied;
+
+    /**
+     * @param service Migration service providing the connection pool.
+     * @param parallelism Maximum number of migrations applied at the same time.
+     */
+    public ParallelMigrator(MigrationService service, int parallelism) {
+        this(service, parallelism, result -> { });
+    }
+
+    /**
+     * @param service Migration service providing the connection pool.
+     * @param parallelism Maximum number of migrations applied at the same time.
+     * @param onApplied Called from the worker thread after each migration commits.
+     */
+    public ParallelMigrator(MigrationService service, int parallelism, Consumer<MigrationResult> onApplied) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, got " + parallelism);
+        }
+        this.service = service;
+        this.parallelism = parallelism;
+        this.onApplied = onApplied;
+    }
+
+    /**
+     * Applies every migration in the graph. After the first failure no new migrations are started,
+     * migrations already running are allowed to finish, and the failure is rethrown.
+     * @param graph Pending migrations and their dependencies.
+     * @throws SQLException If a migration fails.
+     * @throws IOException If a migration script cannot be read.
+     */
+    public void run(MigrationGraph graph) throws SQLException, IOException {
+        logger.info("Applying {} migrations with parallelism {} (critical path: {})",
+                graph.getNodes().size(), parallelism, graph.getCriticalPathLength());
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                runnable -> new Thread(runnable, "migrate-" + threadCount.incrementAndGet()));
+        try {
+            execute(graph, new ExecutorCompletionService<>(executor));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void execute(MigrationGraph graph, CompletionService<MigrationGraph.Node> completion) throws SQLException, IOException {
+        Map<MigrationGraph.Node, Integer> remaining = new HashMap<>();
+        // Among ready migrations, start the lowest version first
+        Queue<MigrationGraph.Node> ready = new PriorityQueue<>(Comparator.comparingInt(MigrationGraph.Node::getIndex));
+        for (MigrationGraph.Node node : graph.getNodes()) {
+            remaining.put(node, node.getDependencies().size());
+            if (node.getDependencies().isEmpty()) ready.add(node);
+        }
+
+        Throwable failure = null;
+        int running = 0;
+        while (true) {
+            while (failure == null && running < parallelism && !ready.isEmpty()) {
+                MigrationGraph.Node node = ready.poll();
+                completion.submit(() -> apply(node));
+                running++;
+            }
+            if (running == 0) break;
+            try {
+                MigrationGraph.Node done = completion.take().get();
+                running--;
+                for (MigrationGraph.Node dependent : done.getDependents()) {
+                    if (remaining.merge(dependent, -1, Integer::sum) == 0) ready.add(dependent);
+                }
+            } catch (ExecutionException e) {
+                running--;
+                if (failure == null) failure = e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for migrations", e);
+            }
+        }
+        if (failure instanceof SQLException sqlException) throw sqlException;
+        if (failure instanceof IOException ioException) throw ioException;
+        if (failure instanceof RuntimeException runtimeException) throw runtimeException;
+        if (failure != null) throw new IllegalStateException("Migration failed", failure);
+    }
+
+    private MigrationGraph.Node apply(MigrationGraph.Node node) throws SQLException, IOException {
+        String filename = node.getFile().getFileName().toString();
+        logger.info("Applying: {}", filename);
+        try (Connection conn = service.dataSource.getConnection()) {
+            MigrationResult result = service.applyMigration(conn, node.getVersion(), node.getFile());
+            logger.info("Applied: {} in {} ms (checksum: {})", filename, result.executionMillis(), result.checksum());
+            onApplied.accept(result);
+        } catch (SQLException | IOException e) {
+            logger.error("Failed to apply {}", filename, e);
+            throw e;
+        }
+        return node;
+    }
+}
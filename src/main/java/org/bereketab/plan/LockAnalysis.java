@@ -0,0 +1,37 @@
+package org.bereketab.plan;
+
+import java.util.List;
+
+/**
+ * Lock and rewrite analysis of one pending migration.
+ * @param fileName Migration filename.
+ * @param impacts Impacts of the statements that take notable locks, in script order.
+ * @param relations Sizes of the existing relations they touch.
+ * @param allowBlocking Reason given in the header for accepting the blocking (`-- allow-blocking: <reason>`), or `null`.
+ */
+public record LockAnalysis(String fileName, List<LockImpact> impacts, List<RelationSize> relations, String allowBlocking) {
+
+    /**
+     * @return `true` if the migration's header accepts blocking.
+     */
+    public boolean acknowledged() {
+        return allowBlocking != null;
+    }
+
+    /**
+     * @param impact One of this migration's impacts.
+     * @return Total size of the existing relations it locks, in bytes.
+     */
+    public long lockedBytes(LockImpact impact) {
+        return relations.stream().filter(relation -> impact.relations().contains(relation.name()))
+                .mapToLong(RelationSize::totalBytes).sum();
+    }
+
+    /**
+     * @return Size of the largest table scanned or rewritten under a lock that blocks writes, in bytes; a rough measure
+     *         of how long the migration keeps the application out.
+     */
+    public long blockingBytes() {
+        return impacts.stream().filter(LockImpact::isBlocking).mapToLong(this::lockedBytes).max().orElse(0);
+    }
+}
@@ -0,0 +1,196 @@
+package org.bereketab.plan;
+
+import org.bereketab.script.MigrationHeader;
+import org.bereketab.script.SqlStatementReader;
+import org.bereketab.script.SqlStatements;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies the table locks pending DDL will take, and whether it rewrites or scans the table while holding them,
+ * from the statement text alone (PostgreSQL 11+ semantics), then weighs blocking statements by the live size of the
+ * tables from `pg_class`. Like {@link MigrationPlanner}, nothing in the script is executed and the size lookups run in
+ * a read-only transaction that is rolled back. The classification is regex-based and errs on the side of reporting:
+ * a type change is reported as a rewrite even when it happens to be binary-coercible.
+ */
+public class LockAnalyzer {
+    /** Header directive acknowledging that a migration blocks, e.g. `-- allow-blocking: run in the maintenance window`. */
+    public static final String ALLOW_BLOCKING = "allow-blocking";
+    private static final String LOCK_TIMEOUT = "2s";
+    private static final Pattern INDEX_BUILD = Pattern.compile("(?is)^CREATE\\s+(UNIQUE\\s+)?INDEX\\s+(CONCURRENTLY\\b)?");
+    private static final Pattern DROP_INDEX = Pattern.compile("(?is)^DROP\\s+INDEX\\s+(CONCURRENTLY\\b)?");
+    private static final Pattern DROP_TABLE = Pattern.compile("(?is)^DROP\\s+TABLE\\b");
+    private static final Pattern CONCURRENTLY = Pattern.compile("(?i)\\bCONCURRENTLY\\b");
+    private static final Pattern VACUUM_FULL = Pattern.compile("(?is)^VACUUM\\s*(\\(.*?\\bFULL\\b.*?\\)|.*?\\bFULL\\b)");
+    private static final Pattern REFRESH = Pattern.compile("(?is)^REFRESH\\s+MATERIALIZED\\s+VIEW\\s+(CONCURRENTLY\\b)?");
+    private static final Pattern LOCK_MODE = Pattern.compile(
+            "(?is)\\bIN\\s+(ACCESS\\s+SHARE|ROW\\s+SHARE|ROW\\s+EXCLUSIVE|SHARE\\s+UPDATE\\s+EXCLUSIVE|SHARE\\s+ROW\\s+EXCLUSIVE|SHARE|EXCLUSIVE|ACCESS\\s+EXCLUSIVE)\\s+MODE");
+    private static final Pattern ALTER_TABLE = Pattern.compile("(?is)^ALTER\\s+TABLE\\b");
+    private static final Pattern TYPE_CHANGE = Pattern.compile("(?is)\\bALTER\\s+(COLUMN\\s+)?\\S+\\s+(SET\\s+DATA\\s+)?TYPE\\b");
+    // Defaults evaluated per row, identity/serial columns and stored generated columns force a rewrite since PG 11
+    private static final Pattern REWRITING_COLUMN = Pattern.compile("(?is)\\bADD\\s+(COLUMN\\s+)?(IF\\s+NOT\\s+EXISTS\\s+)?[^,]*?"
+            + "(\\bDEFAULT\\s+\\(?\\s*(random|clock_timestamp|timeofday|gen_random_uuid|uuid_generate_v[14]|nextval)\\s*\\("
+            + "|\\b(SMALL|BIG)?SERIAL\\b|\\bGENERATED\\b[^,]*\\b(STORED|IDENTITY)\\b)");
+    private static final Pattern SET_NOT_NULL = Pattern.compile("(?is)\\bSET\\s+NOT\\s+NULL\\b");
+    private static final Pattern CHECK_OR_FOREIGN_KEY = Pattern.compile("(?is)\\bADD\\s+(CONSTRAINT\\s+\\S+\\s+)?(CHECK|FOREIGN\\s+KEY)\\b");
+    private static final Pattern ONLY_FOREIGN_KEY = Pattern.compile("(?is)^ALTER\\s+TABLE\\s+[^,]*?\\bADD\\s+(CONSTRAINT\\s+\\S+\\s+)?FOREIGN\\s+KEY\\b[^,]*$");
+    private static final Pattern UNIQUE_OR_PRIMARY_KEY = Pattern.compile("(?is)\\bADD\\s+(CONSTRAINT\\s+\\S+\\s+)?(UNIQUE|PRIMARY\\s+KEY)\\b");
+    private static final Pattern ONLY_VALIDATE = Pattern.compile("(?is)^ALTER\\s+TABLE\\s+[^,]*?\\bVALIDATE\\s+CONSTRAINT\\b[^,]*$");
+    private static final Pattern TABLE_REWRITE = Pattern.compile("(?is)\\bSET\\s+(LOGGED|UNLOGGED|TABLESPACE|ACCESS\\s+METHOD)\\b");
+    private static final Pattern NOT_VALID = Pattern.compile("(?is)\\bNOT\\s+VALID\\b");
+    private static final Pattern USING_INDEX = Pattern.compile("(?is)\\bUSING\\s+INDEX\\b");
+    private final Connection conn;
+
+    /**
+     * @param conn Connection to the database the migrations will run against; its transaction state is restored afterwards.
+     */
+    public LockAnalyzer(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * Classifies every statement of a migration script and looks up the sizes of the relations they lock.
+     * @param file Path to the migration script.
+     * @return Impacts of the statements that take notable locks, with the sizes of the locked relations.
+     * @throws SQLException If the size lookups fail.
+     * @throws IOException If the script cannot be read or parsed.
+     */
+    public LockAnalysis analyze(Path file) throws SQLException, IOException {
+        List<LockImpact> impacts = new ArrayList<>();
+        Set<String> relations = new TreeSet<>();
+        try (SqlStatementReader statements = new SqlStatementReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            String sql;
+            while ((sql = statements.nextStatement()) != null) {
+                LockImpact impact = classify(sql);
+                if (impact == null) continue;
+                impacts.add(impact);
+                relations.addAll(impact.relations());
+            }
+        }
+        String allowBlocking = MigrationHeader.read(file).get(ALLOW_BLOCKING);
+        if (impacts.isEmpty()) {
+            return new LockAnalysis(file.getFileName().toString(), impacts, List.of(), allowBlocking);
+        }
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET TRANSACTION READ ONLY");
+            stmt.execute("SET LOCAL lock_timeout = '" + LOCK_TIMEOUT + "'");
+            return new LockAnalysis(file.getFileName().toString(), impacts, RelationSize.lookup(conn, relations), allowBlocking);
+        } finally {
+            conn.rollback();
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Classifies the table lock a statement takes and whether it scans or rewrites the table under it.
+     * @param sql A single SQL statement.
+     * @return The impact, or `null` if the statement takes no lock beyond what ordinary DML takes (e.g., `CREATE TABLE`,
+     *         `INSERT`, `DROP INDEX CONCURRENTLY`).
+     */
+    public static LockImpact classify(String sql) {
+        String keyword = SqlStatements.firstKeyword(sql);
+        String statement = sql.strip();
+        Matcher matcher;
+        return switch (keyword) {
+            case "CREATE" -> {
+                matcher = INDEX_BUILD.matcher(statement);
+                if (!matcher.lookingAt()) yield null;
+                yield matcher.group(2) != null
+                        ? impact(sql, LockLevel.SHARE_UPDATE_EXCLUSIVE, false, true, "concurrent index build scans the table without blocking writes")
+                        : impact(sql, LockLevel.SHARE, false, true, "index build blocks writes for the whole scan; use CREATE INDEX CONCURRENTLY");
+            }
+            case "DROP" -> {
+                matcher = DROP_INDEX.matcher(statement);
+                if (matcher.lookingAt()) {
+                    yield matcher.group(1) != null ? null
+                            : impact(sql, LockLevel.ACCESS_EXCLUSIVE, false, false, "locks the table briefly; use DROP INDEX CONCURRENTLY");
+                }
+                yield DROP_TABLE.matcher(statement).lookingAt()
+                        ? impact(sql, LockLevel.ACCESS_EXCLUSIVE, false, false, "brief ACCESS EXCLUSIVE lock, queues behind running queries")
+                        : null;
+            }
+            case "REINDEX" -> CONCURRENTLY.matcher(statement).find()
+                    ? impact(sql, LockLevel.SHARE_UPDATE_EXCLUSIVE, false, true, "concurrent reindex scans the table without blocking writes")
+                    : impact(sql, LockLevel.SHARE, false, true, "reindex blocks writes and queries using the index; use REINDEX CONCURRENTLY");
+            case "VACUUM" -> VACUUM_FULL.matcher(statement).lookingAt()
+                    ? impact(sql, LockLevel.ACCESS_EXCLUSIVE, true, true, "VACUUM FULL rewrites the table, blocking reads and writes")
+                    : null;
+            case "CLUSTER" -> impact(sql, LockLevel.ACCESS_EXCLUSIVE, true, true, "CLUSTER rewrites the table, blocking reads and writes");
+            case "TRUNCATE" -> impact(sql, LockLevel.ACCESS_EXCLUSIVE, false, false, "brief ACCESS EXCLUSIVE lock, queues behind running queries");
+            case "REFRESH" -> {
+                matcher = REFRESH.matcher(statement);
+                yield matcher.lookingAt() && matcher.group(1) == null
+                        ? impact(sql, LockLevel.ACCESS_EXCLUSIVE, true, true, "refresh blocks reads of the view; use REFRESH MATERIALIZED VIEW CONCURRENTLY")
+                        : null;
+            }
+            case "LOCK" -> {
+                matcher = LOCK_MODE.matcher(statement);
+                LockLevel lock = matcher.find()
+                        ? LockLevel.valueOf(matcher.group(1).toUpperCase(Locale.ROOT).replaceAll("\\s+", "_"))
+                        : LockLevel.ACCESS_EXCLUSIVE;
+                yield lock.blocksWrites() ? impact(sql, lock, false, false, "explicit " + lock.sqlName() + " lock held until commit") : null;
+            }
+            case "ALTER" -> ALTER_TABLE.matcher(statement).lookingAt() ? classifyAlterTable(sql, statement) : null;
+            default -> null;
+        };
+    }
+
+    private static LockImpact classifyAlterTable(String sql, String statement) {
+        if (ONLY_VALIDATE.matcher(statement).matches()) {
+            return impact(sql, LockLevel.SHARE_UPDATE_EXCLUSIVE, false, true, "validation scans the table without blocking writes");
+        }
+        LockLevel lock = ONLY_FOREIGN_KEY.matcher(statement).matches() ? LockLevel.SHARE_ROW_EXCLUSIVE : LockLevel.ACCESS_EXCLUSIVE;
+        boolean rewrite = false;
+        boolean scan = false;
+        List<String> reasons = new ArrayList<>();
+        if (TYPE_CHANGE.matcher(statement).find()) {
+            rewrite = true;
+            reasons.add("column type change rewrites the table unless binary-coercible (e.g. varchar to text)");
+        }
+        if (REWRITING_COLUMN.matcher(statement).find()) {
+            rewrite = true;
+            reasons.add("new column with a volatile default, identity or stored generated value rewrites the table; "
+                    + "add it without a default and backfill");
+        }
+        if (TABLE_REWRITE.matcher(statement).find()) {
+            rewrite = true;
+            reasons.add("changing persistence, tablespace or access method rewrites the table");
+        }
+        if (SET_NOT_NULL.matcher(statement).find()) {
+            scan = true;
+            reasons.add("SET NOT NULL scans the table; validate a CHECK (col IS NOT NULL) NOT VALID constraint first");
+        }
+        if (CHECK_OR_FOREIGN_KEY.matcher(statement).find() && !NOT_VALID.matcher(statement).find()) {
+            scan = true;
+            reasons.add("new constraint is validated with a full scan; add it NOT VALID and VALIDATE CONSTRAINT separately");
+        }
+        if (UNIQUE_OR_PRIMARY_KEY.matcher(statement).find() && !USING_INDEX.matcher(statement).find()) {
+            scan = true;
+            reasons.add("builds its index under the lock; create the index CONCURRENTLY and add the constraint USING INDEX");
+        }
+        if (reasons.isEmpty()) {
+            reasons.add("brief " + lock.sqlName() + " lock, queues behind running queries");
+        }
+        return impact(sql, lock, rewrite, scan || rewrite, String.join("; ", reasons));
+    }
+
+    private static LockImpact impact(String sql, LockLevel lock, boolean rewrite, boolean fullScan, String reason) {
+        Set<String> relations = SqlStatements.referencedRelations(sql);
+        return new LockImpact(SqlStatements.abbreviate(sql), relations == null ? Set.of() : new TreeSet<>(relations), lock, rewrite,
+                fullScan, reason);
+    }
+}
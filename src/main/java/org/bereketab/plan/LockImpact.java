@@ -0,0 +1,23 @@
+package org.bereketab.plan;
+
+import java.util.Set;
+
+/**
+ * Locking impact of one DDL statement, classified from its text (see {@link LockAnalyzer#classify(String)}).
+ * @param sql The statement, abbreviated.
+ * @param relations Relations the statement touches (normalized names); the lock is taken on the existing ones.
+ * @param lock Strongest table lock the statement takes.
+ * @param rewrite `true` if the table is rewritten (copied) while the lock is held.
+ * @param fullScan `true` if the table is read in full while the lock is held (rewrites included).
+ * @param reason Why, with the usual lower-impact alternative.
+ */
+public record LockImpact(String sql, Set<String> relations, LockLevel lock, boolean rewrite, boolean fullScan, String reason) {
+
+    /**
+     * @return `true` if the statement keeps writers (or readers) out for as long as it takes to scan or rewrite the
+     *         table, so its impact grows with the table's size.
+     */
+    public boolean isBlocking() {
+        return lock.blocksWrites() && fullScan;
+    }
+}
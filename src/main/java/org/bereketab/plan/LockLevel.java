@@ -0,0 +1,36 @@
+package org.bereketab.plan;
+
+/**
+ * PostgreSQL table lock modes, weakest first.
+ */
+public enum LockLevel {
+    ACCESS_SHARE,
+    ROW_SHARE,
+    ROW_EXCLUSIVE,
+    SHARE_UPDATE_EXCLUSIVE,
+    SHARE,
+    SHARE_ROW_EXCLUSIVE,
+    EXCLUSIVE,
+    ACCESS_EXCLUSIVE;
+
+    /**
+     * @return `true` if the lock blocks `INSERT`/`UPDATE`/`DELETE` on the table.
+     */
+    public boolean blocksWrites() {
+        return compareTo(SHARE) >= 0;
+    }
+
+    /**
+     * @return `true` if the lock blocks plain `SELECT`s on the table.
+     */
+    public boolean blocksReads() {
+        return this == ACCESS_EXCLUSIVE;
+    }
+
+    /**
+     * @return The mode as PostgreSQL spells it (e.g., "ACCESS EXCLUSIVE").
+     */
+    public String sqlName() {
+        return name().replace('_', ' ');
+    }
+}
@@ -0,0 +1,21 @@
+package org.bereketab.plan;
+
+import java.util.List;
+
+/**
+ * Planner estimates for one pending migration.
+ * @param fileName Migration filename.
+ * @param statements Total number of statements in the script, including those that weren't explained.
+ * @param estimates Estimates of the DML statements, in script order.
+ * @param relations Sizes of the existing relations the script touches.
+ */
+public record MigrationEstimate(String fileName, int statements, List<StatementEstimate> estimates, List<RelationSize> relations) {
+
+    public double totalCost() {
+        return estimates.stream().mapToDouble(StatementEstimate::cost).sum();
+    }
+
+    public long totalRows() {
+        return estimates.stream().mapToLong(StatementEstimate::rows).sum();
+    }
+}
@@ -0,0 +1,110 @@
+package org.bereketab.plan;
+
+import org.bereketab.script.SqlStatementReader;
+import org.bereketab.script.SqlStatements;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Estimates the work a pending migration will do by running plain `EXPLAIN` (never `ANALYZE`) on each of its
+ * DML statements. Nothing in the script is executed: DDL is skipped, so statements on tables created by pending
+ * migrations can't be estimated. Everything runs in a read-only transaction that is always rolled back, with a short
+ * lock timeout so planning never queues behind a long-running lock holder. PostgreSQL only.
+ */
+public class MigrationPlanner {
+    private static final Set<String> DML_KEYWORDS = Set.of("INSERT", "UPDATE", "DELETE", "MERGE", "WITH", "SELECT");
+    private static final Set<String> MODIFY_NODES = Set.of("Insert", "Update", "Delete", "Merge");
+    private static final Pattern PLAN_NODE = Pattern.compile("^\\s*(?:->\\s+)?(\\w+).*\\(cost=[\\d.]+\\.\\.([\\d.]+) rows=(\\d+)");
+    private static final String LOCK_TIMEOUT = "2s";
+    private final Connection conn;
+
+    /**
+     * @param conn Connection to the database the migrations will run against; its transaction state is restored afterwards.
+     */
+    public MigrationPlanner(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * Explains every DML statement of a migration script.
+     * @param file Path to the migration script.
+     * @return Estimates for the DML statements and sizes of the touched relations.
+     * @throws SQLException If the planning transaction cannot be set up.
+     * @throws IOException If the script cannot be read or parsed.
+     */
+    public MigrationEstimate estimate(Path file) throws SQLException, IOException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement();
+             SqlStatementReader statements = new SqlStatementReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            stmt.execute("SET TRANSACTION READ ONLY");
+            stmt.execute("SET LOCAL lock_timeout = '" + LOCK_TIMEOUT + "'");
+            List<StatementEstimate> estimates = new ArrayList<>();
+            Set<String> relations = new TreeSet<>();
+            int count = 0;
+            String sql;
+            while ((sql = statements.nextStatement()) != null) {
+                count++;
+                Set<String> referenced = SqlStatements.referencedRelations(sql);
+                if (referenced != null) relations.addAll(referenced);
+                if (DML_KEYWORDS.contains(SqlStatements.firstKeyword(sql))) {
+                    estimates.add(explain(stmt, sql));
+                }
+            }
+            return new MigrationEstimate(file.getFileName().toString(), count, estimates, RelationSize.lookup(conn, relations));
+        } finally {
+            conn.rollback();
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private StatementEstimate explain(Statement stmt, String sql) throws SQLException {
+        // A failed EXPLAIN aborts the transaction; the savepoint keeps the remaining statements plannable
+        Savepoint savepoint = conn.setSavepoint();
+        List<String> plan = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery("EXPLAIN " + sql)) {
+            while (rs.next()) {
+                plan.add(rs.getString(1));
+            }
+        } catch (SQLException e) {
+            conn.rollback(savepoint);
+            return new StatementEstimate(SqlStatements.abbreviate(sql), 0, 0, e.getMessage());
+        }
+        conn.releaseSavepoint(savepoint);
+        return parsePlan(SqlStatements.abbreviate(sql), plan);
+    }
+
+    /**
+     * Reads the cost and row estimate from `EXPLAIN` text output. The cost is the top node's total cost; rows come
+     * from the top node, except for `Insert`/`Update`/`Delete`/`Merge` nodes, which report 0 rows without `RETURNING`,
+     * so the rows of the first node below them are used instead.
+     */
+    static StatementEstimate parsePlan(String sql, List<String> plan) {
+        Double cost = null;
+        for (String line : plan) {
+            Matcher node = PLAN_NODE.matcher(line);
+            if (!node.find()) continue;
+            if (cost == null) {
+                cost = Double.parseDouble(node.group(2));
+                if (MODIFY_NODES.contains(node.group(1))) continue;
+            }
+            return new StatementEstimate(sql, cost, Long.parseLong(node.group(3)), null);
+        }
+        return cost != null
+                ? new StatementEstimate(sql, cost, 0, null)
+                : new StatementEstimate(sql, 0, 0, "No cost estimate in plan");
+    }
+}
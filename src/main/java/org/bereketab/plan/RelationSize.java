@@ -0,0 +1,52 @@
+package org.bereketab.plan;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Live size of an existing relation touched by a pending migration, as recorded in `pg_class`.
+ * @param name Relation name as written in the migration (normalized).
+ * @param estimatedRows `pg_class.reltuples`, or -1 if the relation was never vacuumed or analyzed.
+ * @param totalBytes Size on disk including indexes and TOAST.
+ */
+public record RelationSize(String name, long estimatedRows, long totalBytes) {
+    private static final String RELATION_SIZE_SQL = """
+            SELECT c.reltuples::bigint, pg_total_relation_size(c.oid)
+            FROM pg_class c
+            WHERE c.oid = to_regclass(?)
+            """;
+
+    /**
+     * Looks up the sizes of the relations that exist. Must run inside a transaction (auto-commit off), since each
+     * lookup is protected by a savepoint.
+     * @param conn Connection with an open transaction.
+     * @param relations Relation names; names that don't resolve (not created yet, or misparsed) are left out.
+     * @return Sizes of the existing relations.
+     * @throws SQLException If a lookup fails for another reason.
+     */
+    static List<RelationSize> lookup(Connection conn, Collection<String> relations) throws SQLException {
+        List<RelationSize> sizes = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(RELATION_SIZE_SQL)) {
+            for (String relation : relations) {
+                stmt.setString(1, relation);
+                // Names the regex picked up wrongly may not even parse as identifiers
+                Savepoint savepoint = conn.setSavepoint();
+                try (ResultSet rs = stmt.executeQuery()) {
+                    // Relations created by pending migrations don't exist yet
+                    if (rs.next()) sizes.add(new RelationSize(relation, rs.getLong(1), rs.getLong(2)));
+                } catch (SQLException e) {
+                    conn.rollback(savepoint);
+                    continue;
+                }
+                conn.releaseSavepoint(savepoint);
+            }
+        }
+        return sizes;
+    }
+}
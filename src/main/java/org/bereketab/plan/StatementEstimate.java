@@ -0,0 +1,15 @@
+package org.bereketab.plan;
+
+/**
+ * Planner estimate for one DML statement of a pending migration.
+ * @param sql Statement text, abbreviated for reporting.
+ * @param cost Total cost of the top plan node, in the planner's arbitrary units.
+ * @param rows Estimated number of rows the statement writes (or returns, for queries).
+ * @param error Why the statement couldn't be explained (e.g., its table is created by a pending migration), or `null`.
+ */
+public record StatementEstimate(String sql, double cost, long rows, String error) {
+
+    public boolean isEstimated() {
+        return error == null;
+    }
+}
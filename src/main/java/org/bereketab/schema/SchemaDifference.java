@@ -0,0 +1,19 @@
+package org.bereketab.schema;
+
+/**
+ * One object whose live definition differs from the snapshot recorded at migrate time.
+ * @param object Object key (e.g. "index idx_orders_user_id").
+ * @param expected Recorded definition, or `null` if the object wasn't there (created outside migrations).
+ * @param actual Live definition, or `null` if the object is gone (dropped outside migrations).
+ */
+public record SchemaDifference(String object, String expected, String actual) {
+
+    /**
+     * @return A one-line description, e.g. "unexpected index idx_x: CREATE INDEX ...".
+     */
+    public String describe() {
+        if (expected == null) return "unexpected " + object + ": " + actual;
+        if (actual == null) return "missing " + object + ": " + expected;
+        return "changed " + object + ": expected " + expected + ", found " + actual;
+    }
+}
@@ -0,0 +1,182 @@
+package org.bereketab.schema;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Catalog snapshot of the current schema, used to detect drift between the schema the migrations produced and the live
+ * one (e.g. an index hot-fixed by hand). Every table, column, constraint, index, trigger and function becomes one
+ * `(object, definition)` row, gathered by a single set-based query. `migrate` and `rollback` store the snapshot in
+ * `migration_schema_snapshot`; `validate` compares fingerprints computed on the server, so an unchanged schema costs two
+ * one-row queries however many objects it has, and only a mismatch transfers both snapshots to list the differences.
+ * PostgreSQL only.
+ */
+public class SchemaSnapshot {
+    public static final String TABLE = "migration_schema_snapshot";
+    private static final String TOOL_TABLES = "('migration_history', 'migration_checkpoint', '" + TABLE + "')";
+    private static final String LIVE_SQL = """
+            SELECT CASE WHEN c.relkind IN ('v', 'm') THEN 'view ' WHEN c.relkind = 'S' THEN 'sequence ' ELSE 'table ' END
+                       || c.relname AS object_name,
+                   CASE WHEN c.relkind IN ('v', 'm') THEN pg_get_viewdef(c.oid) ELSE c.relkind::text END AS definition
+            FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace
+            WHERE n.nspname = current_schema() AND c.relkind IN ('r', 'p', 'v', 'm', 'S', 'f') AND c.relname NOT IN %1$s
+            UNION ALL
+            SELECT 'column ' || c.relname || '.' || a.attname,
+                   format_type(a.atttypid, a.atttypmod) || CASE WHEN a.attnotnull THEN ' NOT NULL' ELSE '' END
+                       || coalesce(' DEFAULT ' || pg_get_expr(d.adbin, d.adrelid), '')
+            FROM pg_attribute a
+            JOIN pg_class c ON c.oid = a.attrelid
+            JOIN pg_namespace n ON n.oid = c.relnamespace
+            LEFT JOIN pg_attrdef d ON d.adrelid = a.attrelid AND d.adnum = a.attnum
+            WHERE n.nspname = current_schema() AND c.relkind IN ('r', 'p', 'v', 'm', 'f') AND c.relname NOT IN %1$s
+              AND a.attnum > 0 AND NOT a.attisdropped
+            UNION ALL
+            SELECT 'constraint ' || c.relname || '.' || k.conname, pg_get_constraintdef(k.oid)
+            FROM pg_constraint k
+            JOIN pg_class c ON c.oid = k.conrelid
+            JOIN pg_namespace n ON n.oid = c.relnamespace
+            WHERE n.nspname = current_schema() AND c.relname NOT IN %1$s
+            UNION ALL
+            SELECT 'index ' || ic.relname, pg_get_indexdef(ic.oid)
+            FROM pg_index i
+            JOIN pg_class ic ON ic.oid = i.indexrelid
+            JOIN pg_class c ON c.oid = i.indrelid
+            JOIN pg_namespace n ON n.oid = c.relnamespace
+            WHERE n.nspname = current_schema() AND c.relname NOT IN %1$s
+            UNION ALL
+            SELECT 'trigger ' || c.relname || '.' || t.tgname, pg_get_triggerdef(t.oid)
+            FROM pg_trigger t
+            JOIN pg_class c ON c.oid = t.tgrelid
+            JOIN pg_namespace n ON n.oid = c.relnamespace
+            WHERE n.nspname = current_schema() AND NOT t.tgisinternal
+            UNION ALL
+            SELECT 'function ' || p.proname || '(' || pg_get_function_identity_arguments(p.oid) || ')',
+                   md5(pg_get_functiondef(p.oid))
+            FROM pg_proc p JOIN pg_namespace n ON n.oid = p.pronamespace
+            WHERE n.nspname = current_schema() AND p.prokind IN ('f', 'p')
+              AND NOT EXISTS (SELECT 1 FROM pg_depend d WHERE d.objid = p.oid AND d.deptype = 'e')
+            """.formatted(TOOL_TABLES);
+    private static final String FINGERPRINT_SQL =
+            "SELECT md5(string_agg(object_name || '=' || definition, E'\\n' ORDER BY object_name COLLATE \"C\")) FROM (%s) s";
+    private final Connection conn;
+
+    /**
+     * @param conn Connection whose current schema is snapshotted.
+     */
+    public SchemaSnapshot(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * @param conn Any connection.
+     * @return `true` if the database supports snapshots (PostgreSQL).
+     * @throws SQLException If the database metadata cannot be read.
+     */
+    public static boolean isSupported(Connection conn) throws SQLException {
+        return conn.getMetaData().getDatabaseProductName().toLowerCase().contains("postgresql");
+    }
+
+    /**
+     * Replaces the stored snapshot with the live schema, entirely on the server, in one transaction.
+     * @throws SQLException If the snapshot cannot be written.
+     */
+    public void record() throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " (object_name TEXT PRIMARY KEY, definition TEXT NOT NULL)");
+            stmt.execute("DELETE FROM " + TABLE);
+            stmt.execute("INSERT INTO " + TABLE + " (object_name, definition) SELECT object_name, definition FROM (" + LIVE_SQL + ") s");
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * @return Fingerprint of the stored snapshot, or `null` if none has been recorded.
+     * @throws SQLException If the query fails.
+     */
+    public String expectedFingerprint() throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT to_regclass('" + TABLE + "') IS NOT NULL")) {
+            rs.next();
+            if (!rs.getBoolean(1)) return null;
+        }
+        return queryFingerprint("SELECT object_name, definition FROM " + TABLE);
+    }
+
+    /**
+     * @return Fingerprint of the live schema, comparable with {@link #expectedFingerprint()}.
+     * @throws SQLException If the query fails.
+     */
+    public String liveFingerprint() throws SQLException {
+        return queryFingerprint(LIVE_SQL);
+    }
+
+    /**
+     * @return The stored snapshot, keyed by object (e.g. "index idx_orders_user_id").
+     * @throws SQLException If the query fails.
+     */
+    public Map<String, String> loadExpected() throws SQLException {
+        return load("SELECT object_name, definition FROM " + TABLE);
+    }
+
+    /**
+     * @return The live schema, keyed by object (e.g. "index idx_orders_user_id").
+     * @throws SQLException If the query fails.
+     */
+    public Map<String, String> loadLive() throws SQLException {
+        return load(LIVE_SQL);
+    }
+
+    /**
+     * Lists every difference between two snapshots, ordered by object.
+     * @param expected Snapshot recorded at migrate time.
+     * @param live Current snapshot.
+     * @return Missing, unexpected and changed objects (empty if the snapshots match).
+     */
+    public static List<SchemaDifference> diff(Map<String, String> expected, Map<String, String> live) {
+        TreeSet<String> objects = new TreeSet<>(expected.keySet());
+        objects.addAll(live.keySet());
+        List<SchemaDifference> differences = new ArrayList<>();
+        for (String object : objects) {
+            String was = expected.get(object);
+            String is = live.get(object);
+            if (!Objects.equals(was, is)) {
+                differences.add(new SchemaDifference(object, was, is));
+            }
+        }
+        return differences;
+    }
+
+    private String queryFingerprint(String snapshotSql) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(FINGERPRINT_SQL.formatted(snapshotSql))) {
+            rs.next();
+            // An empty schema aggregates to NULL
+            String fingerprint = rs.getString(1);
+            return fingerprint == null ? "" : fingerprint;
+        }
+    }
+
+    private Map<String, String> load(String sql) throws SQLException {
+        Map<String, String> snapshot = new TreeMap<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                snapshot.put(rs.getString(1), rs.getString(2));
+            }
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,272 @@
+package org.bereketab.script;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Executes a backfill script in chunks, walking a table in key order and committing after each chunk.
+ * The script's statements run once per chunk with `:start` and `:end` bound to the chunk's first and last key:
+ * <pre>
+ * -- backfill: orders.id
+ * -- chunk-size: 5000
+ * -- rows-per-second: 20000
+ * -- max-replica-lag: 10
+ * UPDATE orders SET total_cents = total * 100 WHERE id BETWEEN :start AND :end;
+ * </pre>
+ * Each chunk's transaction also saves a {@link MigrationCheckpoint}, so a failed or interrupted backfill resumes
+ * after the last committed chunk, provided the script's checksum still matches the checkpoint's (chunks already done
+ * would otherwise silently keep the old statements' effects). Between chunks the executor sleeps to stay under `rows-per-second` (keys walked,
+ * 0 for no limit) and pauses while any replica in `pg_stat_replication` lags more than `max-replica-lag` seconds.
+ * The caller writes the history row and deletes the checkpoint, then commits. PostgreSQL only.
+ */
+public class BackfillExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(BackfillExecutor.class);
+    public static final String BACKFILL = "backfill";
+    public static final String CHUNK_SIZE = "chunk-size";
+    public static final String ROWS_PER_SECOND = "rows-per-second";
+    public static final String MAX_REPLICA_LAG = "max-replica-lag";
+    static final int DEFAULT_CHUNK_SIZE = 1000;
+    static final double DEFAULT_MAX_REPLICA_LAG_SECONDS = 10;
+    private static final Pattern PLACEHOLDER = Pattern.compile("(?<![:\\w]):(start|end)\\b");
+    private static final String KEY_TYPE_SQL = """
+            SELECT format_type(a.atttypid, a.atttypmod) FROM pg_attribute a
+            WHERE a.attrelid = to_regclass(?) AND a.attname = ? AND NOT a.attisdropped
+            """;
+    private static final String REPLICA_LAG_SQL = "SELECT COALESCE(EXTRACT(EPOCH FROM max(replay_lag)), 0) FROM pg_stat_replication";
+    private static final long LAG_POLL_MILLIS = 1000;
+    private static final long PROGRESS_LOG_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private final String table;
+    private final String keyColumn;
+    private final int chunkSize;
+    private final double rowsPerSecond;
+    private final double maxReplicaLagSeconds;
+
+    /**
+     * @param header Header of the backfill script; `backfill` must name the key as `table.column`.
+     * @throws IllegalArgumentException If a directive is malformed.
+     */
+    public BackfillExecutor(MigrationHeader header) {
+        String key = header.get(BACKFILL);
+        int dot = key == null ? -1 : key.lastIndexOf('.');
+        if (dot <= 0 || dot == key.length() - 1) {
+            throw new IllegalArgumentException("Backfill key must be written as table.column, got '" + key + "'");
+        }
+        this.table = key.substring(0, dot);
+        this.keyColumn = key.substring(dot + 1);
+        this.chunkSize = (int) number(header, CHUNK_SIZE, DEFAULT_CHUNK_SIZE);
+        this.rowsPerSecond = number(header, ROWS_PER_SECOND, 0);
+        this.maxReplicaLagSeconds = number(header, MAX_REPLICA_LAG, DEFAULT_MAX_REPLICA_LAG_SECONDS);
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1, got " + chunkSize);
+        }
+    }
+
+    /**
+     * Runs the backfill from its checkpoint (or the first key) to the end of the table.
+     * @param conn Active database connection; it is switched out of auto-commit and every chunk is committed.
+     * @param version Migration version, used as the checkpoint key.
+     * @param script Path to the backfill script.
+     * @return Statement executions, affected rows, the slowest statements and the SHA-256 checksum of the script's bytes.
+     *         The transaction is left open for the caller's bookkeeping.
+     * @throws IOException If the script cannot be read or parsed.
+     * @throws SQLException If a chunk fails; earlier chunks stay committed.
+     * @throws IllegalStateException If the script changed since its checkpoint was saved.
+     */
+    public ScriptResult execute(Connection conn, String version, Path script) throws IOException, SQLException {
+        conn.setAutoCommit(false);
+        MessageDigest digest = Checksums.newDigest();
+        List<String> statements = new ArrayList<>();
+        try (SqlStatementReader reader = SqlScriptExecutor.openScript(script, digest)) {
+            String sql;
+            while ((sql = reader.nextStatement()) != null) {
+                statements.add(sql);
+            }
+        }
+        String checksum = Checksums.hex(digest);
+        if (statements.stream().noneMatch(sql -> PLACEHOLDER.matcher(sql).find())) {
+            throw new IllegalArgumentException("Backfill " + script.getFileName() + " must use :start and :end to select each chunk");
+        }
+
+        MigrationCheckpoint.createTable(conn);
+        String keyType = keyType(conn);
+        MigrationCheckpoint checkpoint = MigrationCheckpoint.find(conn, version);
+        conn.commit();
+        String position = null;
+        long rowsDone = 0;
+        if (checkpoint != null) {
+            if (!checksum.equals(checkpoint.checksum())) {
+                throw new IllegalStateException("Backfill " + script.getFileName() + " changed after it committed up to " + keyColumn
+                        + " = " + checkpoint.position() + "; restore it, or delete its migration_checkpoint row to start over");
+            }
+            position = checkpoint.position();
+            rowsDone = checkpoint.rowsDone();
+            logger.info("Resuming backfill {} after {} = {} ({} rows done)", script.getFileName(), keyColumn, position, rowsDone);
+        }
+
+        StatementStats stats = new StatementStats();
+        List<ChunkStatement> chunkStatements = new ArrayList<>();
+        try (PreparedStatement firstChunk = conn.prepareStatement(chunkSql(keyType, false));
+             PreparedStatement nextChunk = conn.prepareStatement(chunkSql(keyType, true));
+             Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                chunkStatements.add(ChunkStatement.prepare(conn, sql, keyType));
+            }
+            long lastLog = System.nanoTime();
+            while (true) {
+                long chunkStart = System.nanoTime();
+                ResultSet bounds = position == null ? executeChunkQuery(firstChunk, null) : executeChunkQuery(nextChunk, position);
+                String start;
+                String end;
+                long keys;
+                try (bounds) {
+                    bounds.next();
+                    keys = bounds.getLong(3);
+                    start = bounds.getString(1);
+                    end = bounds.getString(2);
+                }
+                if (keys == 0) break;
+                for (ChunkStatement chunkStatement : chunkStatements) {
+                    long statementStart = System.nanoTime();
+                    stats.record(chunkStatement.sql, 1, statementStart, chunkStatement.execute(start, end));
+                }
+                position = end;
+                rowsDone += keys;
+                new MigrationCheckpoint(version, checksum, position, rowsDone).save(conn);
+                conn.commit();
+                if (System.nanoTime() - lastLog >= PROGRESS_LOG_NANOS) {
+                    logger.info("Backfill {}: {} rows done, at {} = {}", script.getFileName(), rowsDone, keyColumn, position);
+                    lastLog = System.nanoTime();
+                }
+                throttle(conn, stmt, keys, chunkStart);
+            }
+        } finally {
+            for (ChunkStatement chunkStatement : chunkStatements) {
+                chunkStatement.stmt.close();
+            }
+        }
+        logger.info("Backfill {} finished: {} rows", script.getFileName(), rowsDone);
+        return stats.toResult(checksum);
+    }
+
+    private String keyType(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(KEY_TYPE_SQL)) {
+            stmt.setString(1, table);
+            stmt.setString(2, keyColumn);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Backfill key column " + table + "." + keyColumn + " does not exist");
+                }
+                return rs.getString(1);
+            }
+        }
+    }
+
+    /**
+     * Finds the first key, last key and number of keys of the next chunk. Keys travel as text and are cast back
+     * to the key's type, so any orderable key type works.
+     */
+    private String chunkSql(String keyType, boolean resume) {
+        return "SELECT min(" + keyColumn + ")::text, max(" + keyColumn + ")::text, count(*) FROM (SELECT " + keyColumn
+                + " FROM " + table + (resume ? " WHERE " + keyColumn + " > CAST(? AS " + keyType + ")" : "")
+                + " ORDER BY " + keyColumn + " LIMIT ?) chunk";
+    }
+
+    private ResultSet executeChunkQuery(PreparedStatement stmt, String after) throws SQLException {
+        int index = 1;
+        if (after != null) stmt.setString(index++, after);
+        stmt.setInt(index, chunkSize);
+        return stmt.executeQuery();
+    }
+
+    private void throttle(Connection conn, Statement stmt, long keys, long chunkStart) throws SQLException {
+        if (rowsPerSecond > 0) {
+            long targetNanos = (long) (keys / rowsPerSecond * 1_000_000_000L);
+            sleep(TimeUnit.NANOSECONDS.toMillis(targetNanos - (System.nanoTime() - chunkStart)));
+        }
+        if (maxReplicaLagSeconds > 0) {
+            double lag;
+            while ((lag = replicaLag(conn, stmt)) > maxReplicaLagSeconds) {
+                logger.info("Replica lag {}s is above {}s, pausing backfill", lag, maxReplicaLagSeconds);
+                sleep(LAG_POLL_MILLIS);
+            }
+        }
+    }
+
+    private double replicaLag(Connection conn, Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(REPLICA_LAG_SQL)) {
+            rs.next();
+            return rs.getDouble(1);
+        } finally {
+            // Don't sit idle in a transaction while paused
+            conn.commit();
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during backfill", e);
+        }
+    }
+
+    private static double number(MigrationHeader header, String key, double defaultValue) {
+        String value = header.get(key);
+        if (value == null) return defaultValue;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + key + ": '" + value + "'", e);
+        }
+    }
+
+    /**
+     * A script statement prepared with its `:start`/`:end` placeholders replaced by casts of bind parameters.
+     */
+    private static class ChunkStatement {
+        private final String sql;
+        private final PreparedStatement stmt;
+        private final List<String> parameters;
+
+        private ChunkStatement(String sql, PreparedStatement stmt, List<String> parameters) {
+            this.sql = sql;
+            this.stmt = stmt;
+            this.parameters = parameters;
+        }
+
+        static ChunkStatement prepare(Connection conn, String sql, String keyType) throws SQLException {
+            List<String> parameters = new ArrayList<>();
+            Matcher matcher = PLACEHOLDER.matcher(sql);
+            StringBuilder jdbcSql = new StringBuilder();
+            while (matcher.find()) {
+                parameters.add(matcher.group(1));
+                matcher.appendReplacement(jdbcSql, Matcher.quoteReplacement("CAST(? AS " + keyType + ")"));
+            }
+            matcher.appendTail(jdbcSql);
+            return new ChunkStatement(sql, conn.prepareStatement(jdbcSql.toString()), parameters);
+        }
+
+        long execute(String start, String end) throws SQLException {
+            for (int i = 0; i < parameters.size(); i++) {
+                stmt.setString(i + 1, parameters.get(i).equals("start") ? start : end);
+            }
+            boolean query = stmt.execute();
+            return query ? 0 : Math.max(0, stmt.getUpdateCount());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.bereketab.script;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 checksums, hex-encoded as stored in `migration_history`, the checksum cache, checkpoints and the build-time
+ * migration index. Every checksum of a script's bytes goes through here, so they can't drift apart.
+ */
+public final class Checksums {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private Checksums() {
+    }
+
+    /**
+     * @return A new SHA-256 digest, e.g. to hash a script while it is read.
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @param digest A digest that has been fed every byte; it is reset.
+     * @return The hex-encoded digest.
+     */
+    public static String hex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hashes a file by streaming its bytes through a direct buffer, without decoding them.
+     * @param file Path to the file.
+     * @return Hex-encoded SHA-256 checksum of its bytes.
+     * @throws IOException If the file cannot be read.
+     */
+    public static String sha256(Path file) throws IOException {
+        return HexFormat.of().formatHex(digest(file));
+    }
+
+    /**
+     * @param text Any text.
+     * @return Hex-encoded SHA-256 checksum of its UTF-8 bytes; the same as {@link #sha256(Path)} of a file holding it.
+     */
+    public static String sha256(String text) {
+        return HexFormat.of().formatHex(newDigest().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @param file Path to the file.
+     * @return Raw SHA-256 digest of its bytes, e.g. to fold into another digest.
+     * @throws IOException If the file cannot be read.
+     */
+    public static byte[] digest(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return digest.digest();
+    }
+}
@@ -0,0 +1,187 @@
+package org.bereketab.script;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A multi-row `INSERT INTO table (columns) VALUES (...), (...)` statement whose values are all plain literals
+ * (strings, numbers, booleans and NULL), which makes it safe to load through `COPY ... FROM STDIN` instead.
+ * Anything else (expressions, typed or escape-string literals, ON CONFLICT, RETURNING) is not recognized.
+ */
+public class LiteralInsert {
+    private static final Pattern HEAD = Pattern.compile(
+            "(?is)INSERT\\s+INTO\\s+([\\w.$\"]+)\\s*\\(([^()]*)\\)\\s*VALUES\\s*");
+    private static final Pattern NUMBER = Pattern.compile("[+-]?\\d+(\\.\\d+)?");
+    private final String sql;
+    private final String table;
+    private final String columns;
+    private final int valuesStart;
+    private final int rowCount;
+
+    private LiteralInsert(String sql, String table, String columns, int valuesStart, int rowCount) {
+        this.sql = sql;
+        this.table = table;
+        this.columns = columns;
+        this.valuesStart = valuesStart;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Recognizes a literal-only multi-row INSERT.
+     * @param sql A single SQL statement without its terminating semicolon.
+     * @return The parsed insert, or `null` if the statement can't be loaded with COPY.
+     */
+    public static LiteralInsert parse(String sql) {
+        Matcher head = HEAD.matcher(sql);
+        if (!head.lookingAt()) {
+            return null;
+        }
+        int rows = new ValuesCursor(sql, head.end()).forEachRow(null);
+        if (rows <= 0) {
+            return null;
+        }
+        return new LiteralInsert(sql, head.group(1), head.group(2).strip(), head.end(), rows);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return The `COPY ... FROM STDIN` statement that loads these rows.
+     */
+    public String toCopySql() {
+        return "COPY " + table + " (" + columns + ") FROM STDIN";
+    }
+
+    /**
+     * Writes every row in COPY text format (tab-separated, `\N` for NULL).
+     * @param out Destination of the COPY data.
+     * @throws IOException If writing fails.
+     */
+    public void writeCopyRows(Writer out) throws IOException {
+        try {
+            new ValuesCursor(sql, valuesStart).forEachRow(out);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Walks the VALUES list. With a `null` writer it only validates and counts rows.
+     */
+    private static class ValuesCursor {
+        private final String sql;
+        private final StringBuilder row = new StringBuilder();
+        private int pos;
+
+        ValuesCursor(String sql, int pos) {
+            this.sql = sql;
+            this.pos = pos;
+        }
+
+        /**
+         * @return Number of rows, or -1 if the statement isn't a literal-only insert.
+         */
+        int forEachRow(Writer out) {
+            int rows = 0;
+            int width = -1;
+            while (true) {
+                skipWhitespace();
+                if (!consume('(')) return -1;
+                row.setLength(0);
+                int values = 0;
+                do {
+                    skipWhitespace();
+                    if (values > 0) row.append('\t');
+                    if (!readValue()) return -1;
+                    values++;
+                    skipWhitespace();
+                } while (consume(','));
+                if (!consume(')')) return -1;
+                // Every row must have the same number of values
+                if (width == -1) width = values;
+                else if (width != values) return -1;
+                rows++;
+                if (out != null) {
+                    try {
+                        out.append(row).append('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                skipWhitespace();
+                if (pos == sql.length()) return rows;
+                if (!consume(',')) return -1;
+            }
+        }
+
+        private boolean readValue() {
+            if (pos >= sql.length()) return false;
+            if (sql.charAt(pos) == '\'') {
+                return readString();
+            }
+            int end = pos;
+            while (end < sql.length() && (Character.isLetterOrDigit(sql.charAt(end)) || "+-.".indexOf(sql.charAt(end)) >= 0)) {
+                end++;
+            }
+            String token = sql.substring(pos, end);
+            String upper = token.toUpperCase(Locale.ROOT);
+            if (upper.equals("NULL")) {
+                row.append("\\N");
+            } else if (upper.equals("TRUE") || upper.equals("FALSE")) {
+                row.append(upper.toLowerCase(Locale.ROOT));
+            } else if (NUMBER.matcher(token).matches()) {
+                row.append(token);
+            } else {
+                return false;
+            }
+            pos = end;
+            return true;
+        }
+
+        private boolean readString() {
+            pos++;
+            while (pos < sql.length()) {
+                char c = sql.charAt(pos++);
+                if (c == '\'') {
+                    if (pos < sql.length() && sql.charAt(pos) == '\'') {
+                        pos++;
+                    } else {
+                        return true;
+                    }
+                }
+                appendEscaped(c);
+            }
+            return false;
+        }
+
+        private void appendEscaped(char c) {
+            switch (c) {
+                case '\\' -> row.append("\\\\");
+                case '\t' -> row.append("\\t");
+                case '\n' -> row.append("\\n");
+                case '\r' -> row.append("\\r");
+                default -> row.append(c);
+            }
+        }
+
+        private boolean consume(char expected) {
+            if (pos < sql.length() && sql.charAt(pos) == expected) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (pos < sql.length() && Character.isWhitespace(sql.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.bereketab.script;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Progress of a migration that commits in parts, stored in `migration_checkpoint` next to `migration_history`.
+ * A checkpoint is saved in the same transaction as the work it records, so it never runs ahead of or behind the data,
+ * and is deleted in the transaction that writes the migration's history row.
+ * @param version Migration version (e.g., "V1").
+ * @param checksum Checksum of the script that made the progress.
+ * @param position Where to resume, in a format owned by the executor (e.g., the last processed key).
+ * @param rowsDone Rows processed so far.
+ */
+public record MigrationCheckpoint(String version, String checksum, String position, long rowsDone) {
+
+    /**
+     * Creates the checkpoint table if it doesn't exist. The caller commits.
+     */
+    public static void createTable(Connection conn) throws SQLException {
+        String sql = """
+            CREATE TABLE IF NOT EXISTS migration_checkpoint (
+                version VARCHAR(255) PRIMARY KEY,
+                checksum VARCHAR(255),
+                position TEXT,
+                rows_done BIGINT,
+                updated_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+            )
+            """;
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    /**
+     * @param version Migration version.
+     * @return The saved checkpoint, or `null` if the migration has none.
+     */
+    public static MigrationCheckpoint find(Connection conn, String version) throws SQLException {
+        String sql = "SELECT checksum, position, rows_done FROM migration_checkpoint WHERE version = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, version);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? new MigrationCheckpoint(version, rs.getString(1), rs.getString(2), rs.getLong(3)) : null;
+            }
+        }
+    }
+
+    /**
+     * Inserts or replaces this checkpoint. The caller commits, together with the work it records.
+     */
+    public void save(Connection conn) throws SQLException {
+        String sql = """
+            INSERT INTO migration_checkpoint (version, checksum, position, rows_done, updated_time)
+            VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP)
+            ON CONFLICT (version) DO UPDATE
+            SET checksum = EXCLUDED.checksum, position = EXCLUDED.position,
+                rows_done = EXCLUDED.rows_done, updated_time = EXCLUDED.updated_time
+            """;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, version);
+            stmt.setString(2, checksum);
+            stmt.setString(3, position);
+            stmt.setLong(4, rowsDone);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Deletes a migration's checkpoint, if any. The caller commits.
+     */
+    public static void delete(Connection conn, String version) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM migration_checkpoint WHERE version = ?")) {
+            stmt.setString(1, version);
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.bereketab.script;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Directives declared in the leading comment block of a migration script, one per line:
+ * <pre>
+ * -- depends-on: V3, V7
+ * -- transaction: none
+ * </pre>
+ * Only the comment lines before the first SQL statement are read. Keys are case-insensitive.
+ */
+public class MigrationHeader {
+    public static final String TRANSACTION = "transaction";
+    private static final Pattern DIRECTIVE = Pattern.compile("--\\s*([A-Za-z][\\w-]*)\\s*:\\s*(.*?)\\s*");
+    private static final MigrationHeader EMPTY = new MigrationHeader(Collections.emptyMap());
+    private final Map<String, String> directives;
+
+    private MigrationHeader(Map<String, String> directives) {
+        this.directives = directives;
+    }
+
+    /**
+     * Reads the directives at the top of a migration script.
+     * @param file Path to the migration script.
+     * @return The parsed header (empty if the script has no directives).
+     * @throws IOException If the script cannot be read.
+     */
+    public static MigrationHeader read(Path file) throws IOException {
+        Map<String, String> directives = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (line.isEmpty()) continue;
+                if (!line.startsWith("--")) break;
+                Matcher matcher = DIRECTIVE.matcher(line);
+                if (matcher.matches()) {
+                    directives.put(matcher.group(1).toLowerCase(Locale.ROOT), matcher.group(2));
+                }
+            }
+        }
+        return directives.isEmpty() ? EMPTY : new MigrationHeader(directives);
+    }
+
+    /**
+     * @param key Directive name (e.g., "depends-on").
+     * @return `true` if the directive is present.
+     */
+    public boolean has(String key) {
+        return directives.containsKey(key);
+    }
+
+    /**
+     * @param key Directive name (e.g., "depends-on").
+     * @return The directive's value, or `null` if it isn't present.
+     */
+    public String get(String key) {
+        return directives.get(key);
+    }
+
+    /**
+     * @param key Directive name (e.g., "depends-on").
+     * @return The comma-separated values of the directive, or an empty list if it isn't present.
+     */
+    public List<String> getList(String key) {
+        String value = directives.get(key);
+        if (value == null || value.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(value.split(",")).map(String::strip).filter(v -> !v.isEmpty()).toList();
+    }
+
+    /**
+     * @return `false` if the script asks to run outside a transaction (`-- transaction: none`), `true` otherwise.
+     */
+    public boolean isTransactional() {
+        return !"none".equalsIgnoreCase(get(TRANSACTION));
+    }
+}
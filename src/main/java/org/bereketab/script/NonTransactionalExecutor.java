@@ -0,0 +1,102 @@
+package org.bereketab.script;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Executes a script outside a transaction, one statement at a time in auto-commit mode, as required by
+ * statements like `CREATE INDEX CONCURRENTLY`. Statements that already ran stay committed if a later one fails,
+ * so scripts must be safe to re-run. Concurrent index builds are made resumable: an index that already exists
+ * and is valid is skipped, and an INVALID index left behind by a failed build is dropped and rebuilt.
+ */
+public class NonTransactionalExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(NonTransactionalExecutor.class);
+    private static final Pattern CREATE_INDEX_CONCURRENTLY = Pattern.compile(
+            "(?is)^CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+CONCURRENTLY\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?((?:\"[^\"]+\"|[\\w$]+)(?:\\.(?:\"[^\"]+\"|[\\w$]+))?)\\s+ON\\b");
+    private static final String INDEX_STATE_SQL = """
+            SELECT i.indisvalid FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid
+            WHERE c.oid = to_regclass(?)
+            """;
+
+    /**
+     * Executes every statement of a script in auto-commit mode.
+     * @param conn Active database connection; it is switched to auto-commit.
+     * @param script Path to the SQL script.
+     * @return Statement count, affected rows, the slowest statements and the SHA-256 checksum of the script's bytes.
+     * @throws IOException If the script cannot be read or parsed.
+     * @throws SQLException If a statement fails.
+     */
+    public ScriptResult execute(Connection conn, Path script) throws IOException, SQLException {
+        conn.setAutoCommit(true);
+        MessageDigest digest = Checksums.newDigest();
+        try (SqlStatementReader statements = SqlScriptExecutor.openScript(script, digest);
+             Statement stmt = conn.createStatement()) {
+            StatementStats stats = new StatementStats();
+            String sql;
+            while ((sql = statements.nextStatement()) != null) {
+                long start = System.nanoTime();
+                Matcher index = CREATE_INDEX_CONCURRENTLY.matcher(sql);
+                if (index.lookingAt()) {
+                    createIndexConcurrently(conn, stmt, sql, index.group(1));
+                    stats.record(sql, 1, start, 0);
+                } else {
+                    boolean query = stmt.execute(sql);
+                    stats.record(sql, 1, start, query ? 0 : Math.max(0, stmt.getUpdateCount()));
+                }
+            }
+            return stats.toResult(Checksums.hex(digest));
+        }
+    }
+
+    private void createIndexConcurrently(Connection conn, Statement stmt, String sql, String indexName) throws SQLException {
+        Boolean valid = indexState(conn, indexName);
+        if (Boolean.TRUE.equals(valid)) {
+            logger.info("Index {} already exists and is valid, skipping", indexName);
+            return;
+        }
+        if (Boolean.FALSE.equals(valid)) {
+            logger.warn("Dropping INVALID index {} left by an earlier failed build", indexName);
+            stmt.execute("DROP INDEX CONCURRENTLY IF EXISTS " + indexName);
+        }
+        try {
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            // A failed concurrent build leaves an INVALID index that still slows down writes
+            dropIfInvalid(conn, stmt, indexName, e);
+            throw e;
+        }
+    }
+
+    private void dropIfInvalid(Connection conn, Statement stmt, String indexName, SQLException failure) {
+        try {
+            if (Boolean.FALSE.equals(indexState(conn, indexName))) {
+                stmt.execute("DROP INDEX CONCURRENTLY IF EXISTS " + indexName);
+                logger.info("Dropped INVALID index {} after failed build", indexName);
+            }
+        } catch (SQLException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * @return `true` if the index exists and is valid, `false` if it exists but is INVALID, `null` if it doesn't exist.
+     */
+    private Boolean indexState(Connection conn, String indexName) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(INDEX_STATE_SQL)) {
+            stmt.setString(1, indexName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getBoolean(1) : null;
+            }
+        }
+    }
+}
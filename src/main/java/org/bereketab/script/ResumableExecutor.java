@@ -0,0 +1,110 @@
+package org.bereketab.script;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes a long script in segments of statements, committing after each one, so a migration that dies at statement
+ * 9,000 of 10,000 resumes there instead of starting over:
+ * <pre>
+ * -- resumable: 500
+ * INSERT INTO ...;
+ * </pre>
+ * The value is the number of statements per segment (blank for {@value #DEFAULT_SEGMENT_SIZE}). Each segment's
+ * transaction also saves a {@link MigrationCheckpoint} holding the number of statements done, so the work and the
+ * checkpoint are committed together. On the next run the completed statements are skipped, provided the script's
+ * checksum still matches the checkpoint's; an edited script is refused, since statement positions no longer line up.
+ * Only the failed segment is rolled back, so the script must not depend on running as a whole (e.g., no session
+ * state set in an earlier segment). The caller writes the history row and deletes the checkpoint, then commits.
+ * PostgreSQL only, like {@link BackfillExecutor}.
+ */
+public class ResumableExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(ResumableExecutor.class);
+    public static final String RESUMABLE = "resumable";
+    static final int DEFAULT_SEGMENT_SIZE = 1000;
+    private static final long PROGRESS_LOG_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private final int segmentSize;
+
+    /**
+     * @param header Header of the script; `resumable` may give the number of statements per segment.
+     * @throws IllegalArgumentException If the segment size is malformed.
+     */
+    public ResumableExecutor(MigrationHeader header) {
+        String value = header.get(RESUMABLE);
+        try {
+            this.segmentSize = value == null || value.isBlank() ? DEFAULT_SEGMENT_SIZE : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + RESUMABLE + ": '" + value + "'", e);
+        }
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("Segment size must be at least 1, got " + segmentSize);
+        }
+    }
+
+    /**
+     * Runs the script from its checkpoint (or the first statement) to the end.
+     * @param conn Active database connection; it is switched out of auto-commit and every segment is committed.
+     * @param version Migration version, used as the checkpoint key.
+     * @param script Path to the script.
+     * @return Statements executed by this run, affected rows (including those of earlier runs), the slowest statements
+     *         and the SHA-256 checksum of the script's bytes. The transaction is left open for the caller's bookkeeping.
+     * @throws IOException If the script cannot be read or parsed.
+     * @throws SQLException If a statement fails; earlier segments stay committed.
+     * @throws IllegalStateException If the script changed since its checkpoint was saved.
+     */
+    public ScriptResult execute(Connection conn, String version, Path script) throws IOException, SQLException {
+        conn.setAutoCommit(false);
+        // Hashed up front: the checkpoint must be verified before anything is skipped
+        String checksum = Checksums.sha256(script);
+        MigrationCheckpoint.createTable(conn);
+        MigrationCheckpoint checkpoint = MigrationCheckpoint.find(conn, version);
+        conn.commit();
+        long done = 0;
+        long rowsDone = 0;
+        if (checkpoint != null) {
+            if (!checksum.equals(checkpoint.checksum())) {
+                throw new IllegalStateException("Migration " + script.getFileName() + " changed after " + checkpoint.position()
+                        + " of its statements were committed; restore it, or delete its migration_checkpoint row to start over");
+            }
+            done = Long.parseLong(checkpoint.position());
+            rowsDone = checkpoint.rowsDone();
+            logger.info("Resuming {} after statement {} ({} rows done)", script.getFileName(), done, rowsDone);
+        }
+
+        StatementStats stats = new StatementStats();
+        long position = 0;
+        int inSegment = 0;
+        long lastLog = System.nanoTime();
+        try (SqlStatementReader statements = SqlScriptExecutor.openScript(script, Checksums.newDigest());
+             Statement stmt = conn.createStatement()) {
+            String sql;
+            while ((sql = statements.nextStatement()) != null) {
+                // Committed by an earlier run
+                if (position++ < done) continue;
+                long start = System.nanoTime();
+                boolean query = stmt.execute(sql);
+                long rows = query ? 0 : Math.max(0, stmt.getUpdateCount());
+                stats.record(sql, 1, start, rows);
+                rowsDone += rows;
+                if (++inSegment == segmentSize) {
+                    new MigrationCheckpoint(version, checksum, Long.toString(position), rowsDone).save(conn);
+                    conn.commit();
+                    inSegment = 0;
+                    if (System.nanoTime() - lastLog >= PROGRESS_LOG_NANOS) {
+                        logger.info("{}: {} statements committed", script.getFileName(), position);
+                        lastLog = System.nanoTime();
+                    }
+                }
+            }
+        }
+        logger.info("{} finished: {} statements, {} resumed", script.getFileName(), position, Math.min(done, position));
+        ScriptResult result = stats.toResult(checksum);
+        return new ScriptResult(result.statements(), checksum, rowsDone, result.slowestStatements());
+    }
+}
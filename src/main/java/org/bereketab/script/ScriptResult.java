@@ -0,0 +1,13 @@
+package org.bereketab.script;
+
+import java.util.List;
+
+/**
+ * Outcome of executing a SQL script.
+ * @param statements Number of statements executed.
+ * @param checksum Hex-encoded SHA-256 checksum of the script's bytes.
+ * @param rowsAffected Total rows inserted, updated or deleted.
+ * @param slowestStatements The slowest statements (or batches), slowest first.
+ */
+public record ScriptResult(int statements, String checksum, long rowsAffected, List<StatementTiming> slowestStatements) {
+}
@@ -0,0 +1,50 @@
+package org.bereketab.script;
+
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Loads seed data files that sit next to a migration through PostgreSQL's `COPY ... FROM STDIN`.
+ * For `V3__seed.sql` the files `V3__seed.<table>.csv` and `V3__seed.<table>.tsv` are loaded into `<table>`,
+ * in filename order, after the script has run. The first line of each file lists the target columns.
+ * The files are paired with their script by {@link org.bereketab.source.MigrationSource#getSidecarFiles}.
+ */
+public class SidecarDataLoader {
+    private static final Logger logger = LoggerFactory.getLogger(SidecarDataLoader.class);
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Copies a sidecar file into its table on the given connection (transaction is managed by the caller).
+     * @param conn Active PostgreSQL connection.
+     * @param migration Path to the migration script the file belongs to.
+     * @param sidecar Path to the `.csv` or `.tsv` data file.
+     * @return Number of rows loaded.
+     * @throws IOException If the data file cannot be read or has no header.
+     * @throws SQLException If the COPY fails or the connection isn't a PostgreSQL connection.
+     */
+    public long load(Connection conn, Path migration, Path sidecar) throws IOException, SQLException {
+        String migrationName = migration.getFileName().toString();
+        String sidecarName = sidecar.getFileName().toString();
+        String table = sidecarName.substring(migrationName.length() - ".sql".length() + 1, sidecarName.lastIndexOf('.'));
+        boolean csv = sidecarName.endsWith(".csv");
+        try (BufferedReader reader = Files.newBufferedReader(sidecar, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null || header.isBlank()) {
+                throw new IOException("Data file " + sidecarName + " has no header line");
+            }
+            String columns = csv ? header : header.replace('\t', ',');
+            String copySql = "COPY " + table + " (" + columns + ") FROM STDIN" + (csv ? " WITH (FORMAT csv)" : "");
+            long rows = conn.unwrap(PGConnection.class).getCopyAPI().copyIn(copySql, reader, COPY_BUFFER_SIZE);
+            logger.info("Loaded {} rows into {} from {}", rows, table, sidecarName);
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.bereketab.script;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * Executes a SQL script statement by statement while streaming it from disk, so heap use
+ * doesn't grow with the size of the script. Statements are sent with JDBC batching.
+ * Transactions are left to the caller: the executor never commits or rolls back.
+ */
+public class SqlScriptExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(SqlScriptExecutor.class);
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // Statements that may return rows can't be part of a JDBC batch
+    private static final Set<String> QUERY_KEYWORDS = Set.of("SELECT", "WITH", "VALUES", "SHOW", "EXPLAIN", "TABLE", "CALL");
+    private final int batchSize;
+    private final int copyMinRows;
+
+    /**
+     * @param batchSize Maximum number of statements sent per `executeBatch` call.
+     */
+    public SqlScriptExecutor(int batchSize) {
+        this(batchSize, 0);
+    }
+
+    /**
+     * @param batchSize Maximum number of statements sent per `executeBatch` call.
+     * @param copyMinRows Literal-only multi-row INSERTs with at least this many rows are loaded with
+     *                    `COPY ... FROM STDIN` on PostgreSQL connections (0 disables the COPY fast path).
+     */
+    public SqlScriptExecutor(int batchSize, int copyMinRows) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, got " + batchSize);
+        }
+        this.batchSize = batchSize;
+        this.copyMinRows = copyMinRows;
+    }
+
+    /**
+     * Executes every statement of a script on the given connection.
+     * @param conn Active database connection (transaction is managed by the caller).
+     * @param script Path to the SQL script.
+     * @return Statement count, affected rows, the slowest statements and the SHA-256 checksum of the script's bytes.
+     * @throws IOException If the script cannot be read or parsed.
+     * @throws SQLException If a statement fails.
+     */
+    public ScriptResult execute(Connection conn, Path script) throws IOException, SQLException {
+        MessageDigest digest = Checksums.newDigest();
+        try (SqlStatementReader statements = openScript(script, digest);
+             Statement stmt = conn.createStatement()) {
+            boolean copySupported = copyMinRows > 0 && conn.isWrapperFor(PGConnection.class);
+            StatementStats stats = new StatementStats();
+            Batch batch = new Batch(stmt, stats);
+            String sql;
+            LiteralInsert insert;
+            while ((sql = statements.nextStatement()) != null) {
+                if (copySupported && (insert = copyableInsert(sql)) != null) {
+                    batch.flush();
+                    long start = System.nanoTime();
+                    copy(conn, insert);
+                    stats.record(sql, 1, start, insert.getRowCount());
+                } else if (returnsRows(sql)) {
+                    // Flush pending batch to keep statement order, then run the query on its own
+                    batch.flush();
+                    long start = System.nanoTime();
+                    boolean query = stmt.execute(sql);
+                    stats.record(sql, 1, start, query ? 0 : Math.max(0, stmt.getUpdateCount()));
+                } else {
+                    batch.add(sql);
+                    if (batch.size() == batchSize) {
+                        batch.flush();
+                    }
+                }
+            }
+            batch.flush();
+            ScriptResult result = stats.toResult(Checksums.hex(digest));
+            logger.debug("Executed {} statements from {}", result.statements(), script.getFileName());
+            return result;
+        }
+    }
+
+    private LiteralInsert copyableInsert(String sql) {
+        if (!SqlStatements.firstKeyword(sql).equals("INSERT")) {
+            return null;
+        }
+        LiteralInsert insert = LiteralInsert.parse(sql);
+        return insert != null && insert.getRowCount() >= copyMinRows ? insert : null;
+    }
+
+    private void copy(Connection conn, LiteralInsert insert) throws SQLException, IOException {
+        String copySql = insert.toCopySql();
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new PGCopyOutputStream(conn.unwrap(PGConnection.class), copySql), StandardCharsets.UTF_8), READ_BUFFER_SIZE)) {
+            insert.writeCopyRows(out);
+        }
+        logger.debug("Loaded {} rows with {}", insert.getRowCount(), copySql);
+    }
+
+    /**
+     * Statements queued on a JDBC batch, timed as one unit when flushed.
+     */
+    private static class Batch {
+        private final Statement stmt;
+        private final StatementStats stats;
+        private String first;
+        private int size;
+
+        Batch(Statement stmt, StatementStats stats) {
+            this.stmt = stmt;
+            this.stats = stats;
+        }
+
+        void add(String sql) throws SQLException {
+            stmt.addBatch(sql);
+            if (size++ == 0) first = sql;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void flush() throws SQLException {
+            if (size == 0) return;
+            long start = System.nanoTime();
+            int[] counts = stmt.executeBatch();
+            stmt.clearBatch();
+            stats.record(first, size, start, StatementStats.sumUpdateCounts(counts));
+            first = null;
+            size = 0;
+        }
+    }
+
+    private static boolean returnsRows(String sql) {
+        return QUERY_KEYWORDS.contains(SqlStatements.firstKeyword(sql));
+    }
+
+    /**
+     * Opens a script for streaming statement by statement, feeding every byte read into `digest`.
+     */
+    static SqlStatementReader openScript(Path script, MessageDigest digest) throws IOException {
+        FileChannel channel = FileChannel.open(script, StandardOpenOption.READ);
+        return new SqlStatementReader(new BufferedReader(new InputStreamReader(
+                new DigestInputStream(Channels.newInputStream(channel), digest), StandardCharsets.UTF_8), READ_BUFFER_SIZE));
+    }
+}
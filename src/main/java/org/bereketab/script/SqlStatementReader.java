@@ -0,0 +1,199 @@
+package org.bereketab.script;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits a SQL script into individual statements while reading it incrementally.
+ * Understands line and (nested) block comments, single-quoted strings (including `E'...'` escapes),
+ * quoted identifiers and PostgreSQL dollar-quoting, so semicolons inside them don't end a statement.
+ * Only the statement currently being read is kept in memory. Comments are dropped from the output.
+ */
+public class SqlStatementReader implements Closeable {
+    private static final int EOF = -1;
+    private final Reader reader;
+    private final StringBuilder statement = new StringBuilder();
+    private int pushedBack = EOF;
+    private boolean hasPushedBack;
+
+    /**
+     * @param reader Source of the script; should be buffered, it is read one character at a time.
+     */
+    public SqlStatementReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next statement from the script.
+     * @return The statement text without its terminating semicolon, or `null` at the end of the script.
+     * @throws IOException If the script cannot be read or ends inside a quote or comment.
+     */
+    public String nextStatement() throws IOException {
+        statement.setLength(0);
+        int c;
+        while ((c = read()) != EOF) {
+            switch (c) {
+                case ';' -> {
+                    if (!isBlank(statement)) {
+                        return statement.toString().strip();
+                    }
+                    statement.setLength(0);
+                }
+                case '\'' -> readQuoted('\'', isEscapeStringPrefix());
+                case '"' -> readQuoted('"', false);
+                case '-' -> {
+                    if (!skipLineComment()) statement.append('-');
+                }
+                case '/' -> {
+                    if (!skipBlockComment()) statement.append('/');
+                }
+                case '$' -> readDollarQuotedOrDollar();
+                default -> statement.append((char) c);
+            }
+        }
+        if (isBlank(statement)) {
+            return null;
+        }
+        // Last statement without a trailing semicolon
+        String last = statement.toString().strip();
+        statement.setLength(0);
+        return last;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private int read() throws IOException {
+        if (hasPushedBack) {
+            hasPushedBack = false;
+            return pushedBack;
+        }
+        return reader.read();
+    }
+
+    private void unread(int c) {
+        pushedBack = c;
+        hasPushedBack = true;
+    }
+
+    private void readQuoted(char quote, boolean backslashEscapes) throws IOException {
+        statement.append(quote);
+        int c;
+        while ((c = read()) != EOF) {
+            statement.append((char) c);
+            if (backslashEscapes && c == '\\') {
+                int escaped = read();
+                if (escaped == EOF) break;
+                statement.append((char) escaped);
+            } else if (c == quote) {
+                // A doubled quote is an escaped quote, anything else closes the literal
+                int next = read();
+                if (next != quote) {
+                    unread(next);
+                    return;
+                }
+                statement.append((char) next);
+            }
+        }
+        throw new IOException("Unterminated quoted literal in SQL script");
+    }
+
+    private boolean isEscapeStringPrefix() {
+        int length = statement.length();
+        if (length == 0) return false;
+        char prefix = statement.charAt(length - 1);
+        if (prefix != 'E' && prefix != 'e') return false;
+        return length == 1 || !isIdentifierChar(statement.charAt(length - 2));
+    }
+
+    private boolean skipLineComment() throws IOException {
+        int next = read();
+        if (next != '-') {
+            unread(next);
+            return false;
+        }
+        int c;
+        while ((c = read()) != EOF && c != '\n') {
+            // Discard comment text
+        }
+        statement.append('\n');
+        return true;
+    }
+
+    private boolean skipBlockComment() throws IOException {
+        int next = read();
+        if (next != '*') {
+            unread(next);
+            return false;
+        }
+        int depth = 1;
+        int previous = EOF;
+        int c;
+        while ((c = read()) != EOF) {
+            if (previous == '/' && c == '*') {
+                depth++;
+                c = EOF;
+            } else if (previous == '*' && c == '/') {
+                if (--depth == 0) {
+                    statement.append(' ');
+                    return true;
+                }
+                c = EOF;
+            }
+            previous = c;
+        }
+        throw new IOException("Unterminated block comment in SQL script");
+    }
+
+    private void readDollarQuotedOrDollar() throws IOException {
+        int length = statement.length();
+        statement.append('$');
+        // `$` inside an identifier (e.g. "col$1") or a positional parameter is not a quote
+        if (length > 0 && isIdentifierChar(statement.charAt(length - 1))) return;
+        int c = read();
+        if (c != EOF && Character.isDigit(c)) {
+            statement.append((char) c);
+            return;
+        }
+        while (c != EOF && isIdentifierChar((char) c)) {
+            statement.append((char) c);
+            c = read();
+        }
+        if (c != '$') {
+            unread(c);
+            return;
+        }
+        statement.append('$');
+        String delimiter = statement.substring(length);
+        int bodyStart = statement.length();
+        while ((c = read()) != EOF) {
+            statement.append((char) c);
+            if (c == '$' && statement.length() - bodyStart >= delimiter.length() && endsWith(statement, delimiter)) {
+                return;
+            }
+        }
+        throw new IOException("Unterminated dollar-quoted string " + delimiter + " in SQL script");
+    }
+
+    private static boolean endsWith(StringBuilder text, String suffix) {
+        int offset = text.length() - suffix.length();
+        for (int i = 0; i < suffix.length(); i++) {
+            if (text.charAt(offset + i) != suffix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static boolean isBlank(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,102 @@
+package org.bereketab.script;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lightweight, regex-based inspection of single SQL statements. It doesn't parse SQL fully;
+ * callers must treat its answers as best-effort and fall back to safe behaviour on `null`.
+ */
+public final class SqlStatements {
+    // Statement kinds whose touched relations can be inferred from the statement text
+    private static final Set<String> RELATION_KEYWORDS = Set.of(
+            "CREATE", "ALTER", "DROP", "INSERT", "UPDATE", "DELETE", "TRUNCATE", "SELECT", "WITH", "COMMENT", "ANALYZE", "VACUUM",
+            "REINDEX", "CLUSTER", "LOCK", "REFRESH");
+    private static final Pattern UNSUPPORTED_OBJECT = Pattern.compile(
+            "(?is)^(CREATE|ALTER|DROP|COMMENT\\s+ON)\\s+(OR\\s+REPLACE\\s+)?(UNIQUE\\s+)?"
+                    + "(?!(TABLE|INDEX|VIEW|MATERIALIZED\\s+VIEW|SEQUENCE|TEMP|TEMPORARY|UNLOGGED)\\b)");
+    private static final String NAME = "((?:\"[^\"]+\"|[\\w$]+)(?:\\.(?:\"[^\"]+\"|[\\w$]+))?)";
+    private static final Pattern OBJECT_NAME = Pattern.compile(
+            "(?is)\\b(?:TABLE|INDEX|VIEW|SEQUENCE)\\s+(?:CONCURRENTLY\\s+)?(?:IF\\s+(?:NOT\\s+)?EXISTS\\s+)?(?:ONLY\\s+)?" + NAME);
+    private static final Pattern REFERENCE = Pattern.compile(
+            "(?is)\\b(?:FROM|JOIN|INTO|UPDATE|REFERENCES|TRUNCATE)\\s+(?:TABLE\\s+)?(?:ONLY\\s+)?" + NAME);
+    // Bare targets of maintenance commands, e.g. VACUUM (FULL) orders or CLUSTER VERBOSE orders USING idx
+    private static final Pattern MAINTENANCE_TARGET = Pattern.compile(
+            "(?is)^\\s*(?:VACUUM|ANALYZE|CLUSTER)\\s*(?:\\([^)]*\\)\\s*)?(?:(?:FULL|FREEZE|VERBOSE|ANALYZE)\\s+)*"
+                    + "(?!(?:FULL|FREEZE|VERBOSE|ANALYZE)\\b)" + NAME);
+    private static final Pattern INDEX_TABLE = Pattern.compile("(?is)\\bINDEX\\b.*?\\bON\\s+(?:ONLY\\s+)?" + NAME);
+    // Keywords that the patterns above pick up in clauses like ON UPDATE CASCADE or FOR UPDATE OF
+    private static final Set<String> NOT_RELATIONS = Set.of("cascade", "restrict", "set", "of", "nowait", "skip", "no", "lateral", "only", "on");
+    private static final int MAX_REPORTED_LENGTH = 200;
+    private static final Pattern LIST_TAIL = Pattern.compile("(?is)^\\s*,\\s*" + NAME);
+
+    private SqlStatements() {
+    }
+
+    /**
+     * @param sql A single SQL statement.
+     * @return The statement's first keyword in upper case (e.g., "CREATE"), or an empty string.
+     */
+    public static String firstKeyword(String sql) {
+        int start = 0;
+        while (start < sql.length() && Character.isWhitespace(sql.charAt(start))) {
+            start++;
+        }
+        int end = start;
+        while (end < sql.length() && Character.isLetter(sql.charAt(end))) {
+            end++;
+        }
+        return sql.substring(start, end).toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Infers the tables, indexes, views and sequences a statement touches.
+     * Names are lower-cased with quotes and a `public.` schema prefix removed.
+     * @param sql A single SQL statement.
+     * @return The referenced relation names, or `null` if they can't be inferred (e.g., functions, DO blocks, GRANT).
+     */
+    public static Set<String> referencedRelations(String sql) {
+        String keyword = firstKeyword(sql);
+        if (!RELATION_KEYWORDS.contains(keyword) || UNSUPPORTED_OBJECT.matcher(sql).lookingAt()) {
+            return null;
+        }
+        Set<String> relations = new HashSet<>();
+        collect(OBJECT_NAME.matcher(sql), sql, relations);
+        collect(REFERENCE.matcher(sql), sql, relations);
+        collect(INDEX_TABLE.matcher(sql), sql, relations);
+        collect(MAINTENANCE_TARGET.matcher(sql), sql, relations);
+        relations.removeAll(NOT_RELATIONS);
+        return relations.isEmpty() ? null : relations;
+    }
+
+    private static void collect(Matcher matcher, String sql, Set<String> relations) {
+        while (matcher.find()) {
+            relations.add(normalize(matcher.group(1)));
+            // Comma-separated lists, e.g. DROP TABLE a, b or TRUNCATE a, b
+            int end = matcher.end();
+            Matcher tail = LIST_TAIL.matcher(sql).region(end, sql.length());
+            while (tail.lookingAt()) {
+                relations.add(normalize(tail.group(1)));
+                end = tail.end();
+                tail.region(end, sql.length());
+            }
+        }
+    }
+
+    /**
+     * @param sql A single SQL statement.
+     * @return The statement on one line, truncated for logs and reports.
+     */
+    public static String abbreviate(String sql) {
+        String oneLine = sql.strip().replaceAll("\\s+", " ");
+        return oneLine.length() <= MAX_REPORTED_LENGTH ? oneLine : oneLine.substring(0, MAX_REPORTED_LENGTH) + "...";
+    }
+
+    static String normalize(String name) {
+        String normalized = name.replace("\"", "").toLowerCase(Locale.ROOT);
+        return normalized.startsWith("public.") ? normalized.substring("public.".length()) : normalized;
+    }
+}
@@ -0,0 +1,45 @@
+package org.bereketab.script;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Collects statement counts, affected rows and the slowest statements while a script runs.
+ * Only the `capacity` slowest statements are kept, so memory stays bounded for scripts of any size.
+ */
+class StatementStats {
+    static final int SLOWEST_CAPACITY = 10;
+    // Min-heap: the fastest of the kept statements is evicted first
+    private final PriorityQueue<StatementTiming> slowest = new PriorityQueue<>(Comparator.comparingLong(StatementTiming::elapsedMicros));
+    private int statements;
+    private long rowsAffected;
+
+    /**
+     * Records a unit of work that started at `startNanos` and has just finished.
+     */
+    void record(String sql, int count, long startNanos, long rows) {
+        long elapsedMicros = (System.nanoTime() - startNanos) / 1_000;
+        statements += count;
+        rowsAffected += rows;
+        if (slowest.size() < SLOWEST_CAPACITY || slowest.peek().elapsedMicros() < elapsedMicros) {
+            slowest.add(new StatementTiming(SqlStatements.abbreviate(sql), count, elapsedMicros, rows));
+            if (slowest.size() > SLOWEST_CAPACITY) slowest.poll();
+        }
+    }
+
+    ScriptResult toResult(String checksum) {
+        List<StatementTiming> sorted = new ArrayList<>(slowest);
+        sorted.sort(Comparator.comparingLong(StatementTiming::elapsedMicros).reversed());
+        return new ScriptResult(statements, checksum, rowsAffected, sorted);
+    }
+
+    static long sumUpdateCounts(int[] counts) {
+        long rows = 0;
+        for (int count : counts) {
+            if (count > 0) rows += count;
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,11 @@
+package org.bereketab.script;
+
+/**
+ * Timing of one executed unit of a script: a single statement, a JDBC batch or a COPY.
+ * @param sql Statement text (the first statement for a batch), truncated for reporting.
+ * @param statements Number of statements in the unit (greater than 1 for batches).
+ * @param elapsedMicros Wall time, in microseconds.
+ * @param rowsAffected Rows inserted, updated or deleted (0 when the driver doesn't report a count).
+ */
+public record StatementTiming(String sql, int statements, long elapsedMicros, long rowsAffected) {
+}
@@ -0,0 +1,157 @@
+package org.bereketab.source;
+
+import org.bereketab.baseline.BaselineScript;
+import org.bereketab.script.Checksums;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Index of a migrations directory, written at build time as `migrations.idx` next to the scripts so a packaged
+ * {@link MigrationSource} never lists or hashes them. Stored as one tab-separated line per script: order (position in
+ * version order, 0 for baselines), version, file, rollback file (`-` if none), size, SHA-256 checksum (including sidecar
+ * data, see {@link MigrationSource#checksumWithSidecars}) and comma-separated sidecar files (`-` if none; indexes
+ * written before sidecars were indexed lack the column).
+ * Run {@link #main} during `prepare-package` on the directory the jar will contain.
+ */
+public class MigrationIndex {
+    public static final String FILE_NAME = "migrations.idx";
+    private static final Logger logger = LoggerFactory.getLogger(MigrationIndex.class);
+    private static final String HEADER = "# Migration index: order, version, file, rollback, size, sha256, sidecars";
+    private static final String NONE = "-";
+    private final List<Entry> entries;
+
+    /**
+     * One indexed script.
+     * @param order Position in version order, starting at 1; 0 for baseline scripts.
+     * @param version Version (e.g., "V1").
+     * @param file Filename (e.g., "V1__create_table.sql").
+     * @param rollback Filename of the rollback script, or `null` if there is none.
+     * @param size Size in bytes.
+     * @param checksum Hex-encoded SHA-256 checksum of the contents and sidecar data.
+     * @param sidecars Filenames of the sidecar data files, in filename order.
+     */
+    public record Entry(int order, String version, String file, String rollback, long size, String checksum, List<String> sidecars) {
+    }
+
+    public MigrationIndex(List<Entry> entries) {
+        this.entries = List.copyOf(entries);
+    }
+
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * Indexes the migration and baseline scripts of a directory, hashing each one.
+     * @param dir The migrations directory.
+     * @return The index, in version order.
+     * @throws IOException If the directory or a script cannot be read.
+     */
+    public static MigrationIndex build(Path dir) throws IOException {
+        Set<String> names;
+        try (Stream<Path> files = Files.list(dir)) {
+            names = files.filter(Files::isRegularFile).map(file -> file.getFileName().toString()).collect(Collectors.toSet());
+        }
+        List<Path> migrations = names.stream().map(dir::resolve).filter(MigrationSource::isMigration)
+                .sorted(MigrationSource.FILE_ORDER).toList();
+        Map<String, List<String>> sidecars = MigrationSource.pairSidecars(names);
+        List<Entry> entries = new ArrayList<>();
+        for (Path file : migrations) {
+            String filename = file.getFileName().toString();
+            String rollback = MigrationSource.rollbackFileName(filename);
+            entries.add(entry(entries.size() + 1, file, names.contains(rollback) ? rollback : null,
+                    sidecars.getOrDefault(filename, List.of())));
+        }
+        for (Path baseline : names.stream().map(dir::resolve).filter(BaselineScript::isBaseline).sorted().toList()) {
+            entries.add(entry(0, baseline, null, List.of()));
+        }
+        return new MigrationIndex(entries);
+    }
+
+    private static Entry entry(int order, Path file, String rollback, List<String> sidecars) throws IOException {
+        String filename = file.getFileName().toString();
+        String checksum = MigrationSource.checksumWithSidecars(Checksums.sha256(file), sidecars.stream().map(file::resolveSibling).toList());
+        return new Entry(order, MigrationSource.version(filename), filename, rollback, Files.size(file), checksum, sidecars);
+    }
+
+    /**
+     * Reads an index. Unlike the checksum cache, the index is authoritative, so a malformed line is an error.
+     * @param file Path to the index file.
+     * @return The index.
+     * @throws IOException If the file cannot be read or is malformed.
+     */
+    public static MigrationIndex read(Path file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.isBlank() || line.startsWith("#")) continue;
+                String[] fields = line.split("\t");
+                try {
+                    if (fields.length != 6 && fields.length != 7) {
+                        throw new NumberFormatException("expected 7 fields, got " + fields.length);
+                    }
+                    List<String> sidecars = fields.length == 6 || NONE.equals(fields[6]) ? List.of() : List.of(fields[6].split(","));
+                    entries.add(new Entry(Integer.parseInt(fields[0]), fields[1], fields[2],
+                            NONE.equals(fields[3]) ? null : fields[3], Long.parseLong(fields[4]), fields[5], sidecars));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed line " + number + " in " + file + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return new MigrationIndex(entries);
+    }
+
+    /**
+     * Writes the index.
+     * @param file Path to the index file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (Entry entry : entries) {
+                writer.write(entry.order() + "\t" + entry.version() + "\t" + entry.file() + "\t"
+                        + (entry.rollback() == null ? NONE : entry.rollback()) + "\t" + entry.size() + "\t" + entry.checksum()
+                        + "\t" + (entry.sidecars().isEmpty() ? NONE : String.join(",", entry.sidecars())));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Build-time entry point: writes `migrations.idx` into the given directory. A missing directory is skipped, so the
+     * build works for projects without packaged migrations.
+     * @param args The migrations directory (e.g., `target/classes/migrations`).
+     * @throws IOException If the directory cannot be indexed.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: MigrationIndex <migrations directory>");
+        }
+        Path dir = Paths.get(args[0]);
+        if (!Files.isDirectory(dir)) {
+            logger.info("No migrations at {}, not writing an index", dir);
+            return;
+        }
+        MigrationIndex index = build(dir);
+        index.write(dir.resolve(FILE_NAME));
+        logger.info("Indexed {} scripts in {}", index.entries().size(), dir);
+    }
+}
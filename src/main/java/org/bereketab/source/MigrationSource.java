@@ -0,0 +1,327 @@
+package org.bereketab.source;
+
+import org.bereketab.baseline.BaselineScript;
+import org.bereketab.script.Checksums;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Where migration scripts come from: a directory, or a `classpath:` location (e.g. `classpath:migrations`) that may be
+ * packaged inside a jar. A packaged location with a build-time {@link MigrationIndex} is never listed or hashed: the
+ * index gives the scripts in version order, their rollback scripts and their checksums. Directories are listed on every
+ * call, so files added while the tool runs are picked up; sidecar data files are paired with their scripts from the
+ * same listing (or the index), never by listing the directory again per script.
+ * Versions are ordered numerically: `V2` before `V10`, `V1_2` before `V1_10`.
+ */
+public class MigrationSource {
+    public static final String CLASSPATH_PREFIX = "classpath:";
+    public static final String ROLLBACK_SUFFIX = "_rollback.sql";
+    /** Orders migration scripts by version, numerically. */
+    public static final Comparator<Path> FILE_ORDER = Comparator
+            .comparing((Path file) -> version(file.getFileName().toString()), MigrationSource::compareVersions)
+            .thenComparing(file -> file.getFileName().toString());
+    private final String location;
+    private final Path root;
+    private final boolean packaged;
+    private final Map<String, MigrationIndex.Entry> index;
+    // Sidecar files by script filename, from the last listing of the root directory
+    private volatile Map<String, List<String>> listedSidecars;
+
+    private MigrationSource(String location, Path root, boolean packaged, MigrationIndex index) {
+        this.location = location;
+        this.root = root;
+        this.packaged = packaged;
+        this.index = new HashMap<>();
+        if (index != null) {
+            for (MigrationIndex.Entry entry : index.entries()) {
+                this.index.put(entry.file(), entry);
+            }
+        }
+    }
+
+    /**
+     * Opens a migration location, resolving `classpath:` locations with the context class loader.
+     * @param location A directory path, or `classpath:` followed by a resource directory.
+     * @return The source.
+     * @throws IOException If a packaged index cannot be read.
+     * @throws IllegalArgumentException If a `classpath:` location doesn't exist.
+     */
+    public static MigrationSource open(String location) throws IOException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        return open(location, loader != null ? loader : MigrationSource.class.getClassLoader());
+    }
+
+    /**
+     * Opens a migration location. Jars are opened as zip file systems, which stay open for the life of the JVM.
+     * @param location A directory path, or `classpath:` followed by a resource directory.
+     * @param loader Class loader resolving `classpath:` locations.
+     * @return The source.
+     * @throws IOException If a packaged index cannot be read.
+     * @throws IllegalArgumentException If a `classpath:` location doesn't exist.
+     */
+    public static MigrationSource open(String location, ClassLoader loader) throws IOException {
+        if (!location.startsWith(CLASSPATH_PREFIX)) {
+            return new MigrationSource(location, Paths.get(location), false, null);
+        }
+        String resource = location.substring(CLASSPATH_PREFIX.length()).replaceAll("^/+|/+$", "");
+        URL url = loader.getResource(resource + "/" + MigrationIndex.FILE_NAME);
+        boolean indexed = url != null;
+        if (!indexed) url = loader.getResource(resource);
+        if (url == null) {
+            throw new IllegalArgumentException("No migrations on the classpath at " + resource);
+        }
+        Path path = toPath(url);
+        Path root = indexed ? path.getParent() : path;
+        // Only a jar is guaranteed to match the index it was built with; an exploded classes directory may not
+        boolean packaged = root.getFileSystem() != FileSystems.getDefault();
+        MigrationIndex index = indexed && packaged ? MigrationIndex.read(path) : null;
+        return new MigrationSource(location, root, packaged, index);
+    }
+
+    private static Path toPath(URL url) throws IOException {
+        try {
+            URI uri = url.toURI();
+            try {
+                return Paths.get(uri);
+            } catch (FileSystemNotFoundException e) {
+                try {
+                    FileSystems.newFileSystem(uri, Map.of());
+                } catch (FileSystemAlreadyExistsException raced) {
+                    // Opened by another thread in the meantime
+                }
+                return Paths.get(uri);
+            }
+        } catch (URISyntaxException e) {
+            throw new IOException("Unsupported migrations URL " + url, e);
+        }
+    }
+
+    /**
+     * @return The location this source was opened from.
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * @return The directory holding the scripts, possibly inside a jar.
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * @return `true` if the scripts are inside a jar, so they can't change while the tool runs.
+     */
+    public boolean isPackaged() {
+        return packaged;
+    }
+
+    /**
+     * @return `true` if the scripts come from a build-time index instead of a listing.
+     */
+    public boolean isIndexed() {
+        return !index.isEmpty();
+    }
+
+    /**
+     * @return Migration scripts (excluding rollback and baseline scripts), in version order.
+     * @throws IOException If the location cannot be listed.
+     */
+    public List<Path> getMigrationFiles() throws IOException {
+        if (isIndexed()) {
+            return index.values().stream()
+                    .filter(entry -> entry.order() > 0)
+                    .sorted(Comparator.comparingInt(MigrationIndex.Entry::order))
+                    .map(entry -> root.resolve(entry.file()))
+                    .toList();
+        }
+        List<Path> files = list(root);
+        listedSidecars = pairSidecars(files.stream().map(file -> file.getFileName().toString()).collect(Collectors.toSet()));
+        return files.stream().filter(MigrationSource::isMigration).sorted(FILE_ORDER).toList();
+    }
+
+    /**
+     * @return Baseline scripts written by `squash` (normally at most one).
+     * @throws IOException If the location cannot be listed.
+     */
+    public List<Path> getBaselineFiles() throws IOException {
+        if (isIndexed()) {
+            return index.keySet().stream().map(root::resolve).filter(BaselineScript::isBaseline).sorted().toList();
+        }
+        try (Stream<Path> files = Files.list(root)) {
+            return files.filter(BaselineScript::isBaseline).sorted().toList();
+        }
+    }
+
+    /**
+     * @param filename Migration filename (e.g., "V1__create_table.sql").
+     * @return Path to its rollback script, or `null` if it has none.
+     */
+    public Path getRollbackFile(String filename) {
+        if (isIndexed()) {
+            MigrationIndex.Entry entry = index.get(filename);
+            return entry == null || entry.rollback() == null ? null : root.resolve(entry.rollback());
+        }
+        Path rollback = root.resolve(rollbackFileName(filename));
+        return Files.exists(rollback) ? rollback : null;
+    }
+
+    /**
+     * Returns the sidecar data files of a script (`V3__seed.<table>.csv`/`.tsv` for `V3__seed.sql`), from the index or
+     * the last {@link #getMigrationFiles()} listing. A script outside this source's directory, or asked for before any
+     * listing, has its own directory listed.
+     * @param migration A migration script.
+     * @return Its sidecar files in filename order (empty if there are none).
+     * @throws IOException If the script's directory cannot be listed.
+     */
+    public List<Path> getSidecarFiles(Path migration) throws IOException {
+        String filename = migration.getFileName().toString();
+        if (isIndexed()) {
+            MigrationIndex.Entry entry = index.get(filename);
+            return entry == null ? List.of() : entry.sidecars().stream().map(root::resolve).toList();
+        }
+        Path dir = migration.toAbsolutePath().normalize().getParent();
+        Map<String, List<String>> paired = listedSidecars;
+        if (paired == null || !dir.equals(root.toAbsolutePath().normalize())) {
+            paired = pairSidecars(list(dir).stream().map(file -> file.getFileName().toString()).collect(Collectors.toSet()));
+        }
+        return paired.getOrDefault(filename, List.of()).stream().map(dir::resolve).toList();
+    }
+
+    /**
+     * Pairs sidecar data files with the scripts they belong to. `V3__seed.public.users.csv` belongs to `V3__seed.sql`;
+     * the table name may contain dots.
+     * @param names Filenames of a directory.
+     * @return Sorted sidecar filenames by script filename; scripts without sidecars are absent.
+     */
+    static Map<String, List<String>> pairSidecars(Set<String> names) {
+        Map<String, List<String>> sidecars = new HashMap<>();
+        for (String name : names) {
+            if (!name.endsWith(".csv") && !name.endsWith(".tsv")) continue;
+            String stem = name.substring(0, name.length() - ".csv".length());
+            for (int dot = stem.indexOf('.'); dot > 0; dot = stem.indexOf('.', dot + 1)) {
+                String script = stem.substring(0, dot) + ".sql";
+                if (names.contains(script)) {
+                    sidecars.computeIfAbsent(script, key -> new ArrayList<>()).add(name);
+                    break;
+                }
+            }
+        }
+        sidecars.values().forEach(list -> list.sort(null));
+        return sidecars;
+    }
+
+    /**
+     * Folds a script's sidecar data into its checksum, so editing a data file is detected like editing the script.
+     * A script without sidecars keeps the checksum of its own bytes.
+     * @param scriptChecksum Hex-encoded SHA-256 checksum of the script.
+     * @param sidecars The script's sidecar files (see {@link #getSidecarFiles}).
+     * @return Hex-encoded SHA-256 checksum of the script and its sidecars.
+     * @throws IOException If a sidecar file cannot be read.
+     */
+    public static String checksumWithSidecars(String scriptChecksum, List<Path> sidecars) throws IOException {
+        if (sidecars.isEmpty()) return scriptChecksum;
+        StringBuilder text = new StringBuilder(scriptChecksum);
+        for (Path sidecar : sidecars) {
+            text.append('\n').append(sidecar.getFileName()).append('\t').append(Checksums.sha256(sidecar));
+        }
+        return Checksums.sha256(text.toString());
+    }
+
+    /**
+     * @param file A script of this source.
+     * @return Its checksum from the build-time index, or `null` if the source isn't indexed.
+     */
+    public String getIndexedChecksum(Path file) {
+        MigrationIndex.Entry entry = index.get(file.getFileName().toString());
+        return entry != null && file.equals(root.resolve(entry.file())) ? entry.checksum() : null;
+    }
+
+    private static List<Path> list(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.toList();
+        }
+    }
+
+    /**
+     * @param file Any file.
+     * @return `true` if the file is a migration script (not a rollback or baseline script).
+     */
+    public static boolean isMigration(Path file) {
+        String filename = file.getFileName().toString();
+        return filename.endsWith(".sql") && !filename.endsWith(ROLLBACK_SUFFIX) && !BaselineScript.isBaseline(file);
+    }
+
+    /**
+     * @param filename Migration filename (e.g., "V1__create_table.sql").
+     * @return Name of its rollback script (e.g., "V1__create_table_rollback.sql").
+     */
+    public static String rollbackFileName(String filename) {
+        return filename.substring(0, filename.length() - ".sql".length()) + ROLLBACK_SUFFIX;
+    }
+
+    /**
+     * @param filename Migration filename (e.g., "V1__create_table.sql").
+     * @return Its version (e.g., "V1").
+     */
+    public static String version(String filename) {
+        return filename.split("__")[0];
+    }
+
+    /**
+     * Compares versions by their numeric parts, so "V10" comes after "V2" and "V1_10" after "V1_2". Parts that aren't
+     * numbers are compared as text.
+     * @param a A version (e.g., "V2").
+     * @param b Another version (e.g., "V10").
+     * @return Negative, zero or positive as `a` orders before, with or after `b`.
+     */
+    public static int compareVersions(String a, String b) {
+        List<String> left = versionParts(a);
+        List<String> right = versionParts(b);
+        for (int i = 0; i < Math.min(left.size(), right.size()); i++) {
+            String l = left.get(i);
+            String r = right.get(i);
+            int result = isNumber(l) && isNumber(r) ? compareNumbers(l, r) : l.compareTo(r);
+            if (result != 0) return result;
+        }
+        return left.size() != right.size() ? Integer.compare(left.size(), right.size()) : a.compareTo(b);
+    }
+
+    private static List<String> versionParts(String version) {
+        int start = 0;
+        while (start < version.length() && !Character.isDigit(version.charAt(start))) start++;
+        List<String> parts = new ArrayList<>();
+        for (String part : version.substring(start).split("[._]")) {
+            if (!part.isEmpty()) parts.add(part);
+        }
+        return parts;
+    }
+
+    private static boolean isNumber(String part) {
+        return part.chars().allMatch(Character::isDigit);
+    }
+
+    private static int compareNumbers(String l, String r) {
+        // Compare as digit strings so versions like timestamps never overflow
+        String a = l.replaceFirst("^0+(?=.)", "");
+        String b = r.replaceFirst("^0+(?=.)", "");
+        return a.length() != b.length() ? Integer.compare(a.length(), b.length()) : a.compareTo(b);
+    }
+}
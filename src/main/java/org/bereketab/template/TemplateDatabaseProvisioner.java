@@ -0,0 +1,265 @@
+package org.bereketab.template;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.bereketab.MigrationService;
+import org.bereketab.commands.MigrateCommand;
+import org.bereketab.script.Checksums;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Provisions throwaway PostgreSQL databases from a migrated template. The template is built once per migration set:
+ * its name carries a checksum of every file in the migrations directory, so it is rebuilt only when a file is added,
+ * removed or changed, and older templates with the same prefix are dropped then. Each database is then a
+ * `CREATE DATABASE ... TEMPLATE` file copy instead of a full migration run.
+ * Builds are serialized across processes with an advisory lock on the maintenance database. The migration set is
+ * hashed once per provisioner, so create a new one to pick up changed files.
+ */
+public class TemplateDatabaseProvisioner {
+    private static final Logger logger = LoggerFactory.getLogger(TemplateDatabaseProvisioner.class);
+    private static final Pattern DATABASE_IN_URL = Pattern.compile("^(jdbc:postgresql://[^/?]*/)([^?]*)(.*)$");
+    private static final String BUILD_SUFFIX = "_build";
+    private static final int CHECKSUM_LENGTH = 16;
+    private final HikariConfig baseConfig;
+    private final String migrationsDir;
+    private String templatePrefix = "migration_template";
+    private int poolSize = 5;
+    private volatile String readyTemplate;
+
+    /**
+     * @param baseConfig Connection settings for a maintenance database on the server (e.g. `.../postgres`); the user must
+     *                   be allowed to create databases. Each provisioned data source copies these settings.
+     * @param migrationsDir Directory with the migrations applied to the template.
+     */
+    public TemplateDatabaseProvisioner(HikariConfig baseConfig, String migrationsDir) {
+        if (!DATABASE_IN_URL.matcher(baseConfig.getJdbcUrl()).matches()) {
+            throw new IllegalArgumentException("Template databases need a jdbc:postgresql:// URL, got " + baseConfig.getJdbcUrl());
+        }
+        this.baseConfig = baseConfig;
+        this.migrationsDir = migrationsDir;
+    }
+
+    /**
+     * Sets the prefix of template database names, so projects sharing a server don't replace each other's templates.
+     * @param templatePrefix Prefix of template names (default "migration_template").
+     */
+    public void setTemplatePrefix(String templatePrefix) {
+        this.templatePrefix = templatePrefix;
+    }
+
+    /**
+     * @param poolSize Maximum pool size of the data sources returned by {@link #createDatabase(String)} (default 5).
+     */
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * @return Name of the template for the current migration set, e.g. "migration_template_3f2a9c0b1d4e5f60".
+     * @throws IOException If the migrations directory cannot be read.
+     */
+    public String getTemplateName() throws IOException {
+        return templatePrefix + "_" + migrationSetChecksum(Paths.get(migrationsDir)).substring(0, CHECKSUM_LENGTH);
+    }
+
+    /**
+     * Makes sure the template for the current migration set exists, building it if needed.
+     * @return Name of the template database.
+     * @throws SQLException If the template cannot be built.
+     * @throws IOException If the migrations directory cannot be read.
+     */
+    public String ensureTemplate() throws SQLException, IOException {
+        if (readyTemplate != null) return readyTemplate;
+        String template = getTemplateName();
+        try (Connection admin = openAdminConnection(); Statement stmt = admin.createStatement()) {
+            if (databaseExists(admin, template)) {
+                readyTemplate = template;
+                return template;
+            }
+            String lockKey = "hashtext('" + templatePrefix.replace("'", "''") + "')";
+            stmt.execute("SELECT pg_advisory_lock(" + lockKey + ")");
+            try {
+                // Another process may have built it while this one waited
+                if (!databaseExists(admin, template)) {
+                    buildTemplate(stmt, template);
+                    dropStaleTemplates(admin, template);
+                }
+            } finally {
+                stmt.execute("SELECT pg_advisory_unlock(" + lockKey + ")");
+            }
+        }
+        readyTemplate = template;
+        return template;
+    }
+
+    /**
+     * Creates a database with a random name from the current template.
+     * @return A pool connected to the new database; close it before dropping the database.
+     * @throws SQLException If the database cannot be created.
+     * @throws IOException If the migrations directory cannot be read.
+     */
+    public HikariDataSource createDatabase() throws SQLException, IOException {
+        return createDatabase("test_" + UUID.randomUUID().toString().replace("-", "").substring(0, 12));
+    }
+
+    /**
+     * Creates a database from the current template, building the template first if it doesn't exist yet.
+     * @param name Name of the new database.
+     * @return A pool connected to the new database; close it before dropping the database.
+     * @throws SQLException If the database cannot be created.
+     * @throws IOException If the migrations directory cannot be read.
+     */
+    public HikariDataSource createDatabase(String name) throws SQLException, IOException {
+        cloneTemplate(name);
+        return openDataSource(name, poolSize);
+    }
+
+    /**
+     * Creates a database from the current template like {@link #createDatabase(String)}, without opening a pool to it.
+     * @param name Name of the new database.
+     * @throws SQLException If the database cannot be created.
+     * @throws IOException If the migrations directory cannot be read.
+     */
+    public void cloneTemplate(String name) throws SQLException, IOException {
+        String template = ensureTemplate();
+        long start = System.nanoTime();
+        try (Connection admin = openAdminConnection(); Statement stmt = admin.createStatement()) {
+            stmt.execute("CREATE DATABASE " + quote(name) + " TEMPLATE " + quote(template));
+        }
+        logger.info("Created database {} from {} in {} ms", name, template, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Drops a database created by this provisioner. Close its data source first.
+     * @param name Name of the database.
+     * @throws SQLException If the database cannot be dropped.
+     */
+    public void dropDatabase(String name) throws SQLException {
+        try (Connection admin = openAdminConnection(); Statement stmt = admin.createStatement()) {
+            stmt.execute("DROP DATABASE IF EXISTS " + quote(name));
+        }
+    }
+
+    private void buildTemplate(Statement stmt, String template) throws SQLException {
+        String build = template + BUILD_SUFFIX;
+        long start = System.nanoTime();
+        logger.info("Building template {} from {}", template, migrationsDir);
+        // A build interrupted by a crash leaves its database behind
+        stmt.execute("DROP DATABASE IF EXISTS " + quote(build));
+        stmt.execute("CREATE DATABASE " + quote(build));
+        try (HikariDataSource dataSource = openDataSource(build, 2)) {
+            MigrationService service = new MigrationService(dataSource);
+            service.setMigrationsDir(migrationsDir);
+            new MigrateCommand(service).run();
+        } catch (RuntimeException e) {
+            stmt.execute("DROP DATABASE IF EXISTS " + quote(build));
+            throw e;
+        }
+        // Renaming last means a template never exists half-migrated; no connections keeps it copyable
+        stmt.execute("ALTER DATABASE " + quote(build) + " RENAME TO " + quote(template));
+        stmt.execute("ALTER DATABASE " + quote(template) + " WITH IS_TEMPLATE true ALLOW_CONNECTIONS false");
+        logger.info("Built template {} in {} ms", template, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void dropStaleTemplates(Connection admin, String current) throws SQLException {
+        List<String> stale = new ArrayList<>();
+        try (PreparedStatement stmt = admin.prepareStatement(
+                "SELECT datname FROM pg_database WHERE starts_with(datname, ?) AND datname <> ?")) {
+            stmt.setString(1, templatePrefix + "_");
+            stmt.setString(2, current);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) stale.add(rs.getString(1));
+            }
+        }
+        try (Statement stmt = admin.createStatement()) {
+            for (String name : stale) {
+                try {
+                    stmt.execute("ALTER DATABASE " + quote(name) + " WITH IS_TEMPLATE false");
+                    stmt.execute("DROP DATABASE " + quote(name));
+                    logger.info("Dropped stale template {}", name);
+                } catch (SQLException e) {
+                    logger.warn("Could not drop stale template {}: {}", name, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private boolean databaseExists(Connection admin, String name) throws SQLException {
+        try (PreparedStatement stmt = admin.prepareStatement("SELECT 1 FROM pg_database WHERE datname = ?")) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private Connection openAdminConnection() throws SQLException {
+        return DriverManager.getConnection(baseConfig.getJdbcUrl(), baseConfig.getUsername(), baseConfig.getPassword());
+    }
+
+    private HikariDataSource openDataSource(String database, int maxPoolSize) {
+        HikariConfig config = new HikariConfig();
+        baseConfig.copyStateTo(config);
+        config.setJdbcUrl(withDatabase(baseConfig.getJdbcUrl(), database));
+        config.setPoolName(database);
+        config.setMaximumPoolSize(maxPoolSize);
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * Points a PostgreSQL JDBC URL at another database on the same server, keeping its parameters.
+     * @param jdbcUrl A `jdbc:postgresql://host[:port]/database[?params]` URL.
+     * @param database Name of the other database.
+     * @return The rewritten URL.
+     */
+    public static String withDatabase(String jdbcUrl, String database) {
+        Matcher matcher = DATABASE_IN_URL.matcher(jdbcUrl);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a jdbc:postgresql:// URL: " + jdbcUrl);
+        }
+        return matcher.group(1) + database + matcher.group(3);
+    }
+
+    /**
+     * Hashes the names and contents of every file in the migrations directory (scripts, rollbacks, baselines and
+     * sidecar data), in name order.
+     * @param dir The migrations directory.
+     * @return Hex-encoded SHA-256 checksum of the migration set.
+     * @throws IOException If a file cannot be read.
+     */
+    static String migrationSetChecksum(Path dir) throws IOException {
+        List<Path> files;
+        try (var listing = Files.list(dir)) {
+            files = listing.filter(Files::isRegularFile).sorted().toList();
+        }
+        MessageDigest digest = Checksums.newDigest();
+        for (Path file : files) {
+            digest.update(file.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Checksums.digest(file));
+        }
+        return Checksums.hex(digest);
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,73 @@
+package org.bereketab;
+
+import org.bereketab.script.MigrationHeader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LockTimeoutPolicyTest {
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PreparedStatement setConfig;
+
+    @Mock
+    private Statement statement;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        // Configure mocks for setting and resetting session timeouts
+        MockitoAnnotations.openMocks(this);
+        when(connection.prepareStatement(anyString())).thenReturn(setConfig);
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.getAutoCommit()).thenReturn(true);
+    }
+
+    @Test
+    void testRun_retriesLockTimeoutsOnly() throws Exception {
+        // Test that lock timeouts are retried with the timeout re-applied, while other errors fail immediately
+        LockTimeoutPolicy policy = new LockTimeoutPolicy("2s", null, 10_000);
+        AtomicInteger calls = new AtomicInteger();
+        int attempt = policy.run(connection, "V1__alter.sql", n -> {
+            if (calls.incrementAndGet() < 3) throw new SQLException("canceling statement due to lock timeout", "55P03");
+            return n;
+        });
+        assertEquals(3, attempt);
+        verify(setConfig, times(3)).setString(2, "2s");
+        verify(statement, times(3)).execute("RESET lock_timeout");
+
+        assertThrows(SQLException.class, () -> policy.run(connection, "V2__alter.sql", n -> {
+            calls.incrementAndGet();
+            throw new SQLException("syntax error", "42601");
+        }));
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void testWithOverrides_prefersMigrationHeader() throws Exception {
+        // Test that a migration's header overrides only the timeouts it declares
+        Path script = Files.writeString(dir.resolve("V3__alter.sql"), "-- lock-timeout: 500ms\nALTER TABLE users ADD COLUMN x INT;");
+        LockTimeoutPolicy policy = new LockTimeoutPolicy("5s", "1min", 60_000).withOverrides(MigrationHeader.read(script));
+        assertEquals(new LockTimeoutPolicy("500ms", "1min", 60_000), policy);
+    }
+}
@@ -3,18 +3,43 @@ package org.bereketab;
 import com.zaxxer.hikari.HikariDataSource;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.h2.jdbcx.JdbcDataSource;
+import javax.sql.DataSource;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 public class MigrationServiceTest {
@@ -40,6 +65,7 @@ public class MigrationServiceTest {
         when(dataSource.getConnection()).thenReturn(connection);
         when(connection.createStatement()).thenReturn(statement);
         when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getDatabaseProductName()).thenReturn("H2");
         when(metaData.getColumns(null, null, "migration_history", null)).thenReturn(resultSet);
         // Simulate migration_history table columns
         when(resultSet.next())
@@ -53,6 +79,9 @@ public class MigrationServiceTest {
                 .thenReturn("file_name")
                 .thenReturn("checksum")
                 .thenReturn("applied_time");
+        // An empty history, for ranking a table created before installed_rank and for reading the last rank
+        ResultSet noRows = mock(ResultSet.class);
+        when(statement.executeQuery(anyString())).thenReturn(noRows);
     }
 
     @Test
@@ -86,4 +115,215 @@ public class MigrationServiceTest {
         String checksum2 = service.calculateChecksum(sql);
         assertEquals(checksum1, checksum2);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testConstructor_doesNotConnect() {
+        // Test that creating the service leaves the database alone until a command needs it
+        DataSource lazy = mock(DataSource.class);
+        new MigrationService(lazy);
+        verifyNoInteractions(lazy);
+    }
+
+    @Test
+    void testLoadHistory_indexesByVersion() throws SQLException {
+        // Test that one history query produces a snapshot keyed by version
+        MigrationService service = new MigrationService(dataSource);
+        ResultSet historyRows = mock(ResultSet.class);
+        when(statement.executeQuery(anyString())).thenReturn(historyRows);
+        when(historyRows.next()).thenReturn(true).thenReturn(true).thenReturn(false);
+        when(historyRows.getString("version")).thenReturn("V1").thenReturn("V2");
+        when(historyRows.getString("file_name")).thenReturn("V1__init.sql").thenReturn("V2__index.sql");
+        when(historyRows.getString("checksum")).thenReturn("abc").thenReturn("def");
+        when(historyRows.getTimestamp("applied_time")).thenReturn(new Timestamp(0L));
+
+        MigrationHistory history = service.loadHistory();
+        assertEquals(2, history.size());
+        assertTrue(history.isApplied("V1"));
+        assertFalse(history.isApplied("V3"));
+        assertEquals("def", history.getChecksum("V2"));
+        assertEquals("V1", history.appliedMigrations().iterator().next().version());
+    }
+
+    @Test
+    void testCalculateChecksum_fileMatchesStringChecksum(@TempDir Path dir) throws IOException {
+        // Test that streaming a file gives the same checksum as hashing its contents
+        MigrationService service = new MigrationService(dataSource);
+        String sql = "CREATE TABLE test (id INT);\nINSERT INTO test VALUES (1); -- ünïcödé";
+        Path file = Files.writeString(dir.resolve("V1__test.sql"), sql);
+        assertEquals(service.calculateChecksum(sql), service.calculateChecksum(file));
+    }
+
+    @Test
+    void testChecksumCache_reusesChecksumOfUnchangedFile(@TempDir Path dir) throws IOException {
+        // Test that a saved manifest is reused while size and mtime stay the same
+        Path file = Files.writeString(dir.resolve("V1__test.sql"), "CREATE TABLE test (id INT);");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        Path manifest = dir.resolve(".migration-checksums");
+        MigrationService service = new MigrationService(dataSource);
+        service.setChecksumCache(ChecksumCache.load(manifest));
+        String checksum = service.getChecksum(file);
+        service.saveChecksumCache();
+
+        ChecksumCache reloaded = ChecksumCache.load(manifest);
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        assertEquals(checksum, reloaded.get(file, attributes));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 30_000));
+        assertNull(reloaded.get(file, Files.readAttributes(file, BasicFileAttributes.class)));
+    }
+
+    @Test
+    void testApplyMigrationGroup_commitsOnceWithBatchedHistory(@TempDir Path dir) throws IOException, SQLException {
+        // Test that grouped migrations share one transaction and one history batch, and online migrations aren't grouped
+        Path first = Files.writeString(dir.resolve("V1__users.sql"), "CREATE TABLE users (id INT);");
+        Path second = Files.writeString(dir.resolve("V2__orders.sql"), "CREATE TABLE orders (id INT);\nCREATE TABLE items (id INT);");
+        Path online = Files.writeString(dir.resolve("V3__index.sql"), "-- transaction: none\nCREATE INDEX CONCURRENTLY idx ON users (id);");
+        PreparedStatement history = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(history);
+        when(statement.executeBatch()).thenReturn(new int[]{0}, new int[]{0, 0});
+        MigrationService service = new MigrationService(dataSource);
+
+        List<MigrationResult> results = service.applyMigrationGroup(connection, List.of(first, second));
+
+        assertTrue(service.isGroupable(first));
+        assertFalse(service.isGroupable(online));
+        assertEquals(List.of("V1", "V2"), results.stream().map(MigrationResult::version).toList());
+        assertEquals(2, results.get(1).statements());
+        assertEquals(service.calculateChecksum(first), results.get(0).checksum());
+        verify(history, times(2)).addBatch();
+        verify(history).executeBatch();
+        verify(connection).commit();
+        verify(connection, never()).rollback();
+    }
+
+    @Test
+    void testApplyMigrationGroup_ranksHistoryInApplicationOrder(@TempDir Path dir) throws IOException, SQLException {
+        // Test that rows committed together, and so sharing applied_time, load in the order applied (V2 before V10)
+        MigrationService service = new MigrationService(h2Database());
+        List<Path> files = new ArrayList<>();
+        for (int version = 2; version <= 10; version++) {
+            files.add(Files.writeString(dir.resolve("V" + version + "__t.sql"), "CREATE TABLE t" + version + " (id INT);"));
+        }
+        try (Connection conn = service.dataSource.getConnection()) {
+            service.applyMigrationGroup(conn, files);
+            service.applyMigration(conn, "V11", Files.writeString(dir.resolve("V11__t.sql"), "CREATE TABLE t11 (id INT);"));
+
+            MigrationHistory history = service.loadHistory(conn);
+            assertEquals(List.of("V2", "V3", "V4", "V5", "V6", "V7", "V8", "V9", "V10", "V11"),
+                    history.appliedMigrations().stream().map(AppliedMigration::version).toList());
+            assertEquals(List.of("V11", "V10", "V9"), history.lastApplied(3).stream().map(AppliedMigration::version).toList());
+        }
+    }
+
+    @Test
+    void testApplyMigrationGroup_locksRanksBeforeReadingTheLastOne(@TempDir Path dir) throws IOException, SQLException {
+        // Test that on PostgreSQL the last rank is read under a transaction-scoped lock, so parallel inserts can't tie
+        when(metaData.getDatabaseProductName()).thenReturn("PostgreSQL");
+        when(connection.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+        when(statement.executeBatch()).thenReturn(new int[]{0});
+        MigrationService service = new MigrationService(dataSource);
+
+        service.applyMigrationGroup(connection, List.of(Files.writeString(dir.resolve("V1__users.sql"), "CREATE TABLE users (id INT);")));
+
+        InOrder order = inOrder(statement, connection);
+        order.verify(statement).execute(contains("pg_advisory_xact_lock"));
+        order.verify(statement).executeQuery(contains("MAX(installed_rank)"));
+        order.verify(connection).commit();
+    }
+
+    @Test
+    void testLoadHistory_breaksTiesOfUnrankedRowsByVersion() throws SQLException {
+        // Test that rows from before installed_rank with tied timestamps are undone newest version first, not lexically
+        MigrationService service = new MigrationService(dataSource);
+        ResultSet historyRows = mock(ResultSet.class);
+        when(statement.executeQuery(anyString())).thenReturn(historyRows);
+        when(historyRows.findColumn("installed_rank")).thenThrow(new SQLException("no such column"));
+        when(historyRows.next()).thenReturn(true, true, true, true, false);
+        // The order the old ORDER BY applied_time, version returned them in
+        when(historyRows.getString("version")).thenReturn("V1", "V10", "V2", "V9");
+        when(historyRows.getString("file_name")).thenReturn("V1__a.sql", "V10__a.sql", "V2__a.sql", "V9__a.sql");
+        when(historyRows.getTimestamp("applied_time")).thenReturn(new Timestamp(0L), new Timestamp(1000L),
+                new Timestamp(1000L), new Timestamp(1000L));
+
+        MigrationHistory history = service.loadHistory();
+
+        assertEquals(List.of("V10", "V9"), history.lastApplied(2).stream().map(AppliedMigration::version).toList());
+        assertEquals(List.of("V10", "V9", "V2"), history.appliedAfter("V1").stream().map(AppliedMigration::version).toList());
+    }
+
+    @Test
+    void testAcquireMigrationLock_initializesHistoryTableUnderLock() throws SQLException {
+        // Test that nodes starting together only touch the history table's DDL once they hold the lock
+        when(metaData.getDatabaseProductName()).thenReturn("PostgreSQL");
+        ResultSet locked = mock(ResultSet.class);
+        when(locked.next()).thenReturn(true);
+        when(locked.getBoolean(1)).thenReturn(true);
+        when(statement.executeQuery(contains("pg_try_advisory_lock"))).thenReturn(locked);
+        MigrationService service = new MigrationService(dataSource);
+
+        try (MigrationLock lock = service.acquireMigrationLock()) {
+            InOrder order = inOrder(statement);
+            order.verify(statement).executeQuery(contains("pg_try_advisory_lock"));
+            order.verify(statement).execute(contains("CREATE TABLE IF NOT EXISTS migration_history"));
+        }
+    }
+
+    @Test
+    void testAppliedAfter_listsUndoChainMostRecentFirst() {
+        // Test that the undo chain stops at the target version and that a count is capped by the history size
+        Map<String, AppliedMigration> applied = new LinkedHashMap<>();
+        for (String version : List.of("V1", "V2", "V3", "V4")) {
+            applied.put(version, new AppliedMigration(version, version + "__x.sql", "c", new Timestamp(0L), null));
+        }
+        MigrationHistory history = new MigrationHistory(applied);
+
+        assertEquals(List.of("V4", "V3"), history.appliedAfter("V2").stream().map(AppliedMigration::version).toList());
+        assertTrue(history.appliedAfter("V4").isEmpty());
+        assertEquals(List.of("V4"), history.lastApplied(1).stream().map(AppliedMigration::version).toList());
+        assertEquals(4, history.lastApplied(10).size());
+        assertThrows(IllegalArgumentException.class, () -> history.appliedAfter("V9"));
+    }
+
+    @Test
+    void testLastApplied_skipsBaselineRows() {
+        // Test that the row recorded by squash is never picked as a rollback target
+        Map<String, AppliedMigration> applied = new LinkedHashMap<>();
+        for (String version : List.of("V1", "V2", "V3", "B3")) {
+            applied.put(version, new AppliedMigration(version, version + "__x.sql", "c", new Timestamp(0L), null));
+        }
+        MigrationHistory history = new MigrationHistory(applied);
+
+        assertEquals(List.of("V3"), history.lastApplied(1).stream().map(AppliedMigration::version).toList());
+        assertEquals(List.of("V3", "V2"), history.appliedAfter("V1").stream().map(AppliedMigration::version).toList());
+    }
+
+    @Test
+    void testRollbackMigrations_runsChainInOneTransaction(@TempDir Path dir) throws IOException, SQLException {
+        // Test that a chain is rolled back with one commit and one batched delete, and nothing runs if a script is missing
+        Files.writeString(dir.resolve("V2__orders_rollback.sql"), "DROP TABLE orders;");
+        Files.writeString(dir.resolve("V3__items_rollback.sql"), "DROP TABLE items;");
+        PreparedStatement delete = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString())).thenReturn(delete);
+        when(statement.executeBatch()).thenReturn(new int[]{0});
+        MigrationService service = new MigrationService(dataSource);
+        service.setMigrationsDir(dir.toString());
+        AppliedMigration v2 = new AppliedMigration("V2", "V2__orders.sql", "b", new Timestamp(0L), null);
+        AppliedMigration v3 = new AppliedMigration("V3", "V3__items.sql", "c", new Timestamp(0L), null);
+        AppliedMigration v4 = new AppliedMigration("V4", "V4__gone.sql", "d", new Timestamp(0L), null);
+
+        assertThrows(IllegalStateException.class, () -> service.rollbackMigrations(connection, List.of(v4, v3, v2), 0));
+        verify(connection, never()).commit();
+
+        List<MigrationResult> results = service.rollbackMigrations(connection, List.of(v3, v2), 0);
+
+        assertEquals(List.of("V3__items_rollback.sql", "V2__orders_rollback.sql"), results.stream().map(MigrationResult::fileName).toList());
+        verify(delete, times(2)).addBatch();
+        verify(delete).executeBatch();
+        verify(connection).commit();
+    }
+
+    private static DataSource h2Database() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        return h2;
+    }
+}
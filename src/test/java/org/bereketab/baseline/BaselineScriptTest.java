@@ -0,0 +1,57 @@
+package org.bereketab.baseline;
+
+import org.bereketab.AppliedMigration;
+import org.bereketab.MigrationService;
+import org.bereketab.script.MigrationHeader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class BaselineScriptTest {
+
+    @Test
+    void testRender_insertsHistoryOfCoveredMigrations(@TempDir Path dir) throws IOException {
+        // Test that the baseline recreates the schema, records the covered versions and has no header directives
+        List<AppliedMigration> covered = List.of(
+                new AppliedMigration("V1", "V1__init.sql", "abc", new Timestamp(0L), 10L),
+                new AppliedMigration("V2", "V2__o'brien.sql", "def", new Timestamp(0L), null));
+
+        String script = BaselineScript.render("B2", "CREATE TABLE users (id integer NOT NULL);\n", covered,
+                Instant.parse("2026-01-01T00:00:00Z"));
+
+        assertEquals("B2__baseline.sql", BaselineScript.fileName("V2"));
+        assertTrue(script.contains("\nCREATE TABLE users (id integer NOT NULL);\n"));
+        assertTrue(script.endsWith("""
+                INSERT INTO migration_history (version, file_name, checksum, baseline, installed_rank) VALUES
+                    ('V1', 'V1__init.sql', 'abc', 'B2', 1),
+                    ('V2', 'V2__o''brien.sql', 'def', 'B2', 2);
+                """));
+        Path file = Files.writeString(dir.resolve("B2__baseline.sql"), script);
+        assertTrue(MigrationHeader.read(file).isTransactional());
+        assertFalse(MigrationHeader.read(file).has("baseline"));
+    }
+
+    @Test
+    void testGetMigrationFiles_excludesBaseline(@TempDir Path dir) throws IOException {
+        // Test that the baseline is found on its own and never listed as a regular migration
+        Files.writeString(dir.resolve("B2__baseline.sql"), "");
+        Files.writeString(dir.resolve("V1__init.sql"), "");
+        Files.writeString(dir.resolve("V3__next.sql"), "");
+        MigrationService service = new MigrationService(mock(DataSource.class));
+        service.setMigrationsDir(dir.toString());
+
+        assertEquals(List.of("V1__init.sql", "V3__next.sql"),
+                service.getMigrationFiles().stream().map(path -> path.getFileName().toString()).toList());
+        assertEquals(dir.resolve("B2__baseline.sql"), service.getBaselineFile());
+    }
+}
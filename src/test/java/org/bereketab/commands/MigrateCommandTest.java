@@ -0,0 +1,85 @@
+package org.bereketab.commands;
+
+import org.bereketab.MigrationHistory;
+import org.bereketab.MigrationLock;
+import org.bereketab.MigrationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.List;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class MigrateCommandTest {
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private MigrationLock lock;
+
+    @Mock
+    private MigrationHistory history;
+
+    private MigrationService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        service = spy(new MigrationService(dataSource));
+        doReturn(lock).when(service).acquireMigrationLock();
+        doReturn(List.of(Path.of("migrations/V1__users.sql"), Path.of("migrations/V2__orders.sql"))).when(service).getMigrationFiles();
+        when(lock.getWaitMillis()).thenReturn(1500L);
+    }
+
+    @Test
+    void testRun_exitsWithoutWorkWhenWinnerAppliedEverything() throws Exception {
+        // Test that a node that waited for the lock re-checks the history and leaves without migrating
+        when(history.size()).thenReturn(2);
+        when(history.isApplied(anyString())).thenReturn(true);
+        when(history.getChecksum(anyString())).thenReturn("same");
+        doReturn(history).when(service).loadHistory();
+        doReturn("same").when(service).getChecksum(any(Path.class));
+        doNothing().when(service).recordSchemaSnapshot(anyBoolean());
+
+        new MigrateCommand(service).run();
+
+        verify(service).loadHistory();
+        verify(service, never()).applyMigration(any(), anyString(), any(Path.class));
+        verify(service).recordSchemaSnapshot(false);
+        verify(lock).close();
+        verifyNoInteractions(dataSource);
+    }
+
+    @Test
+    void testRun_comparesChecksumsWhenNothingIsPending() throws Exception {
+        // Test that the early exit still compares every applied file's checksum with the history
+        when(history.size()).thenReturn(2);
+        when(history.isApplied(anyString())).thenReturn(true);
+        when(history.getChecksum("V1")).thenReturn("old");
+        when(history.getChecksum("V2")).thenReturn("same");
+        doReturn(history).when(service).loadHistory();
+        doReturn("edited").when(service).getChecksum(Path.of("migrations/V1__users.sql"));
+        doReturn("same").when(service).getChecksum(Path.of("migrations/V2__orders.sql"));
+        doNothing().when(service).recordSchemaSnapshot(anyBoolean());
+
+        new MigrateCommand(service).run();
+
+        verify(history).getChecksum("V1");
+        verify(history).getChecksum("V2");
+        verify(service).getChecksum(Path.of("migrations/V1__users.sql"));
+        verify(service).getChecksum(Path.of("migrations/V2__orders.sql"));
+        verify(service, never()).applyMigration(any(), anyString(), any(Path.class));
+    }
+}
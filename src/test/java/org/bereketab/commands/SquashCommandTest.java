@@ -0,0 +1,22 @@
+package org.bereketab.commands;
+
+import org.bereketab.MigrationService;
+import org.junit.jupiter.api.Test;
+import javax.sql.DataSource;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+public class SquashCommandTest {
+
+    @Test
+    void testRun_rejectsClasspathLocation() {
+        // Test that squash refuses a packaged location it can't write to, before taking the lock or connecting
+        DataSource dataSource = mock(DataSource.class);
+        MigrationService service = new MigrationService(dataSource);
+        service.setMigrationsDir("classpath:migrations");
+
+        assertThrows(IllegalArgumentException.class, () -> new SquashCommand(service).run());
+        verifyNoInteractions(dataSource);
+    }
+}
@@ -0,0 +1,128 @@
+package org.bereketab.commands;
+
+import org.bereketab.AppliedMigration;
+import org.bereketab.MigrationHistory;
+import org.bereketab.MigrationResult;
+import org.bereketab.MigrationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WatchCommandTest {
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private MigrationHistory history;
+
+    @TempDir
+    Path dir;
+
+    private MigrationService service;
+
+    private WatchCommand command;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        service = spy(new MigrationService(dataSource));
+        doReturn(history).when(service).loadHistory(connection);
+        doNothing().when(service).saveChecksumCache();
+        command = new WatchCommand(service);
+    }
+
+    @Test
+    void testAwaitChanges_debouncesWritesIntoOneCycle() throws Exception {
+        // Test that several writes arriving within the debounce window come back as one set, without rollback scripts
+        WatchService watcher = mock(WatchService.class);
+        WatchKey first = key(event("V2__orders.sql"), event("V2__orders.sql"));
+        WatchKey second = key(event("V1__users.sql"), event("V1__users_rollback.sql"), event("notes.txt"));
+        when(watcher.take()).thenReturn(first);
+        when(watcher.poll(anyLong(), any(TimeUnit.class))).thenReturn(second, (WatchKey) null);
+
+        Set<Path> changed = command.awaitChanges(watcher, dir);
+
+        assertEquals(List.of(dir.resolve("V1__users.sql"), dir.resolve("V2__orders.sql")), List.copyOf(changed));
+        verify(first).reset();
+        verify(second).reset();
+    }
+
+    @Test
+    void testRunCycle_rollsBackAndReappliesEditedMigration() throws Exception {
+        // Test that an applied migration whose file changed is undone with its rollback script, then applied again
+        Path file = Files.writeString(dir.resolve("V1__users.sql"), "CREATE TABLE users (id INT, name TEXT);");
+        AppliedMigration applied = new AppliedMigration("V1", "V1__users.sql", "old", new Timestamp(0L), 5L);
+        when(history.get("V1")).thenReturn(applied);
+        doReturn("new").when(service).getChecksum(file);
+        doReturn(List.of()).when(service).rollbackMigrations(connection, List.of(applied), 0);
+        doReturn(new MigrationResult("V1", "V1__users.sql", "new", 3, 1, 0, null, List.of(), 1))
+                .when(service).applyMigration(connection, "V1", file);
+
+        WatchCommand.Cycle cycle = command.runCycle(connection, Set.of(file));
+
+        assertEquals(new WatchCommand.Cycle(0, 1, false), cycle);
+        InOrder order = inOrder(service);
+        order.verify(service).rollbackMigrations(connection, List.of(applied), 0);
+        order.verify(service).applyMigration(connection, "V1", file);
+        order.verify(service).saveChecksumCache();
+    }
+
+    @Test
+    void testRunCycle_skipsFileWithUnchangedChecksum() throws Exception {
+        // Test that touching a file without changing its contents neither rolls back nor re-applies it
+        Path file = Files.writeString(dir.resolve("V1__users.sql"), "CREATE TABLE users (id INT);");
+        when(history.get("V1")).thenReturn(new AppliedMigration("V1", "V1__users.sql", "same", new Timestamp(0L), 5L));
+        doReturn("same").when(service).getChecksum(file);
+
+        WatchCommand.Cycle cycle = command.runCycle(connection, Set.of(file));
+
+        assertEquals(new WatchCommand.Cycle(0, 0, false), cycle);
+        verify(service, never()).rollbackMigrations(any(), any(), anyInt());
+        verify(service, never()).applyMigration(any(), anyString(), any(Path.class));
+    }
+
+    private static WatchKey key(WatchEvent<?>... events) {
+        WatchKey key = mock(WatchKey.class);
+        doReturn(List.of(events)).when(key).pollEvents();
+        return key;
+    }
+
+    private static WatchEvent<?> event(String filename) {
+        WatchEvent<?> event = mock(WatchEvent.class);
+        doReturn(StandardWatchEventKinds.ENTRY_MODIFY).when(event).kind();
+        doReturn(Path.of(filename)).when(event).context();
+        return event;
+    }
+}
@@ -0,0 +1,134 @@
+package org.bereketab.embed;
+
+import org.bereketab.MigrationHistory;
+import org.bereketab.MigrationLock;
+import org.bereketab.MigrationResult;
+import org.bereketab.MigrationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BackgroundMigratorTest {
+    private final Path v1 = Path.of("migrations/V1__users.sql");
+    private final Path v2 = Path.of("migrations/V2__orders.sql");
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection connection;
+
+    private MigrationService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(dataSource.getConnection()).thenReturn(connection);
+        service = spy(new MigrationService(dataSource));
+        doReturn(mock(MigrationLock.class)).when(service).acquireMigrationLock();
+        doReturn(MigrationHistory.empty()).when(service).loadHistory(connection);
+        doReturn(null).when(service).getBaselineFile();
+        doReturn(List.of(v1, v2)).when(service).getMigrationFiles();
+        doNothing().when(service).recordSchemaSnapshot(true);
+    }
+
+    @Test
+    void testStart_publishesProgressAndOpensReadinessGates() throws Exception {
+        // Test that every migration is announced and applied in order, and readiness follows the applied versions
+        doAnswer(invocation -> result(invocation.getArgument(1))).when(service).applyMigration(eq(connection), anyString(), any(Path.class));
+        BackgroundMigrator migrator = new BackgroundMigrator(service);
+        List<MigrationEvent> events = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> streamDone = new CompletableFuture<>();
+        migrator.subscribe(collector(events, streamDone));
+
+        MigrationHandle handle = migrator.start();
+
+        assertEquals(List.of("V1", "V2"), handle.completion().get(5, TimeUnit.SECONDS).stream().map(MigrationResult::version).toList());
+        streamDone.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(MigrationEvent.Kind.STARTED, MigrationEvent.Kind.APPLYING, MigrationEvent.Kind.APPLIED,
+                MigrationEvent.Kind.APPLYING, MigrationEvent.Kind.APPLIED, MigrationEvent.Kind.FINISHED),
+                events.stream().map(MigrationEvent::kind).toList());
+        assertEquals(2, events.get(4).completed());
+        assertTrue(handle.whenApplied("V2").isDone());
+        assertThrows(ExecutionException.class, () -> handle.whenApplied("V9").get());
+        verify(service).recordSchemaSnapshot(true);
+    }
+
+    @Test
+    void testCancel_stopsBeforeNextMigration() throws Exception {
+        // Test that cancelling lets the running migration commit, skips the rest and fails pending gates
+        CountDownLatch applying = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            applying.countDown();
+            proceed.await(5, TimeUnit.SECONDS);
+            return result(invocation.getArgument(1));
+        }).when(service).applyMigration(eq(connection), anyString(), any(Path.class));
+        MigrationHandle handle = new BackgroundMigrator(service).start();
+        CompletableFuture<Void> ordersReady = handle.whenApplied("V2");
+
+        assertTrue(applying.await(5, TimeUnit.SECONDS));
+        assertTrue(handle.cancel());
+        proceed.countDown();
+
+        assertThrows(CancellationException.class, () -> ordersReady.get(5, TimeUnit.SECONDS));
+        assertTrue(handle.completion().isCancelled());
+        assertTrue(handle.whenApplied("V1").isDone());
+        verify(service, times(1)).applyMigration(eq(connection), anyString(), any(Path.class));
+        verify(service).recordSchemaSnapshot(true);
+    }
+
+    private static MigrationResult result(String version) {
+        return new MigrationResult(version, version + "__x.sql", "abc", 1, 1, 0, null, List.of(), 1);
+    }
+
+    private static Flow.Subscriber<MigrationEvent> collector(List<MigrationEvent> events, CompletableFuture<Void> done) {
+        return new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(MigrationEvent event) {
+                events.add(event);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                done.completeExceptionally(error);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        };
+    }
+}
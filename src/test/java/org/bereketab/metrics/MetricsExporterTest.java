@@ -0,0 +1,55 @@
+package org.bereketab.metrics;
+
+import org.bereketab.MigrationResult;
+import org.bereketab.script.StatementTiming;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsExporterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testExport_writesPrometheusSamplesPerMigration() throws IOException {
+        // Test that every migration gets labelled samples and missing lock waits are left out
+        RunMetrics metrics = new RunMetrics("migrate");
+        metrics.add(new MigrationResult("V1", "V1__init.sql", "abc", 1500, 3, 10, 250L, List.of(), 1));
+        metrics.add(new MigrationResult("V2", "V2__\"quoted\".sql", "def", 20, 1, 0, null, List.of(), 3));
+        metrics.finish(true);
+
+        new MetricsExporter().export(metrics, dir);
+
+        String prom = Files.readString(dir.resolve(MetricsExporter.PROMETHEUS_FILE));
+        assertTrue(prom.contains("migration_tool_run_success{command=\"migrate\"} 1\n"));
+        assertTrue(prom.contains("migration_tool_migration_duration_seconds{command=\"migrate\",version=\"V1\",file=\"V1__init.sql\"} 1.500\n"));
+        assertTrue(prom.contains("migration_tool_migration_rows_affected{command=\"migrate\",version=\"V1\",file=\"V1__init.sql\"} 10\n"));
+        assertTrue(prom.contains("migration_tool_migration_lock_wait_seconds{command=\"migrate\",version=\"V1\",file=\"V1__init.sql\"} 0.250\n"));
+        assertTrue(prom.contains("file=\"V2__\\\"quoted\\\".sql\"} 0.020\n"));
+        assertEquals(1, prom.lines().filter(line -> line.startsWith("migration_tool_migration_lock_wait_seconds{")).count());
+        try (var files = Files.list(dir)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    void testToJson_escapesStatementText() {
+        // Test that the slowest statements are embedded as valid JSON strings
+        RunMetrics metrics = new RunMetrics("rollback");
+        metrics.add(new MigrationResult("V1", "V1__init.sql", "abc", 5, 1, 2, null,
+                List.of(new StatementTiming("UPDATE t SET s = 'a\"b'\n", 1, 1234, 2)), 1));
+        metrics.finish(false);
+
+        String json = new MetricsExporter().toJson(metrics);
+
+        assertTrue(json.contains("\"succeeded\": false"));
+        assertTrue(json.contains("\"lockWaitMillis\": null"));
+        assertTrue(json.contains("{\"sql\": \"UPDATE t SET s = 'a\\\"b'\\n\", \"statements\": 1, \"elapsedMillis\": 1.234, \"rowsAffected\": 2}"));
+    }
+}
@@ -0,0 +1,32 @@
+package org.bereketab.metrics;
+
+import org.junit.jupiter.api.Test;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ProgressMonitorTest {
+
+    @Test
+    void testEstimateRemainingMillis_extrapolatesPhaseRate() {
+        // Test that the ETA uses the rate since the phase started and waits for progress before guessing
+        long tenSeconds = TimeUnit.SECONDS.toNanos(10);
+        assertEquals(30_000L, ProgressMonitor.estimateRemainingMillis(100, 350, 1100, tenSeconds));
+        assertNull(ProgressMonitor.estimateRemainingMillis(100, 100, 1100, tenSeconds));
+        assertNull(ProgressMonitor.estimateRemainingMillis(0, 50, -1, tenSeconds));
+    }
+
+    @Test
+    void testDescribe_reportsPhaseEtaAndBlockers() {
+        // Test the console line and JSON of a blocked index build
+        ProgressReport report = new ProgressReport("V3__index_orders.sql", 4242, 75_000, 70_000, "CREATE INDEX orders_user_idx ON orders (user_id)",
+                "building index: scanning table", 250, 1000, 90_000L, "ShareLock on orders", "4343 (app@psql, idle in transaction: UPDATE orders SET x = 1)");
+
+        assertEquals("V3__index_orders.sql: building index: scanning table, 250/1000 (25%), ETA 1m30s, BLOCKED waiting for ShareLock on orders"
+                + " held by 4343 (app@psql, idle in transaction: UPDATE orders SET x = 1) (elapsed 1m15s)", report.describe());
+        assertEquals("{\"migration\": \"V3__index_orders.sql\", \"pid\": 4242, \"elapsedMillis\": 75000, \"statementMillis\": 70000, "
+                + "\"statement\": \"CREATE INDEX orders_user_idx ON orders (user_id)\", \"phase\": \"building index: scanning table\", "
+                + "\"done\": 250, \"total\": 1000, \"etaMillis\": 90000, \"waitingFor\": \"ShareLock on orders\", "
+                + "\"blockedBy\": \"4343 (app@psql, idle in transaction: UPDATE orders SET x = 1)\"}", report.toJson());
+    }
+}
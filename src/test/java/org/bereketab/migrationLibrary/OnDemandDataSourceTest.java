@@ -0,0 +1,69 @@
+package org.bereketab.migrationLibrary;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import java.sql.Connection;
+import java.sql.SQLException;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OnDemandDataSourceTest {
+    @Mock
+    private Connection first;
+
+    @Mock
+    private Connection second;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testGetConnection_reusesReleasedConnection() throws SQLException {
+        // Test that sequential use opens a single physical connection and a second one only while the first is busy
+        when(first.getAutoCommit()).thenReturn(true);
+        int[] connects = {0};
+        OnDemandDataSource dataSource = new OnDemandDataSource(() -> connects[0]++ == 0 ? first : second);
+        assertEquals(0, dataSource.getOpenedCount());
+
+        Connection conn = dataSource.getConnection();
+        conn.close();
+        assertTrue(conn.isClosed());
+        assertThrows(SQLException.class, conn::createStatement);
+        try (Connection reused = dataSource.getConnection();
+             Connection extra = dataSource.getConnection()) {
+            reused.createStatement();
+            extra.createStatement();
+        }
+
+        assertEquals(2, dataSource.getOpenedCount());
+        verify(first).createStatement();
+        verify(second).createStatement();
+        verify(first, never()).close();
+        dataSource.close();
+        verify(first).close();
+        verify(second).close();
+    }
+
+    @Test
+    void testClose_rollsBackOpenTransaction() throws SQLException {
+        // Test that a connection handed back mid-transaction is rolled back and returned to auto-commit
+        when(first.getAutoCommit()).thenReturn(false);
+        OnDemandDataSource dataSource = new OnDemandDataSource(() -> first);
+
+        dataSource.getConnection().close();
+
+        var order = inOrder(first);
+        order.verify(first).rollback();
+        order.verify(first).setAutoCommit(true);
+        assertEquals(1, dataSource.getOpenedCount());
+    }
+}
@@ -0,0 +1,82 @@
+package org.bereketab.parallel;
+
+import org.bereketab.MigrationHistory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MigrationGraphTest {
+    @TempDir
+    Path dir;
+
+    private Path write(String name, String sql) throws IOException {
+        return Files.writeString(dir.resolve(name), sql);
+    }
+
+    private Set<String> dependencies(MigrationGraph graph, int index) {
+        return graph.getNodes().get(index).getDependencies().stream()
+                .map(MigrationGraph.Node::getVersion)
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    void testBuild_infersDependenciesFromTables() throws IOException {
+        // Test that only migrations touching the same tables are ordered
+        List<Path> files = List.of(
+                write("V1__users.sql", "CREATE TABLE users (id BIGSERIAL PRIMARY KEY);"),
+                write("V2__courses.sql", "CREATE TABLE courses (id BIGSERIAL PRIMARY KEY);"),
+                write("V3__orders.sql", "CREATE TABLE orders (id BIGSERIAL, user_id BIGINT REFERENCES users(id) ON DELETE CASCADE);"),
+                write("V4__index.sql", "CREATE INDEX idx_courses ON courses(id);"),
+                write("V5__function.sql", "CREATE FUNCTION f() RETURNS INT AS $$ SELECT 1; $$ LANGUAGE sql;"),
+                write("V6__seed.sql", "INSERT INTO students (name) VALUES ('a');"));
+        MigrationGraph graph = MigrationGraph.build(files, MigrationHistory.empty());
+
+        assertEquals(Set.of(), dependencies(graph, 0));
+        assertEquals(Set.of(), dependencies(graph, 1));
+        assertEquals(Set.of("V1"), dependencies(graph, 2));
+        assertEquals(Set.of("V2"), dependencies(graph, 3));
+        // Barrier waits for everything before it, and everything after waits for it
+        assertEquals(Set.of("V1", "V2", "V3", "V4"), dependencies(graph, 4));
+        assertEquals(Set.of("V5"), dependencies(graph, 5));
+        assertEquals(4, graph.getCriticalPathLength());
+    }
+
+    @Test
+    void testBuild_usesDependsOnHeader() throws IOException {
+        // Test that an explicit header overrides inference
+        List<Path> files = List.of(
+                write("V1__users.sql", "CREATE TABLE users (id INT);"),
+                write("V2__grants.sql", "-- depends-on: V0\nGRANT SELECT ON users TO reporting;"),
+                write("V3__more.sql", "-- depends-on: V1, V2\nALTER TABLE users ADD COLUMN name TEXT;"));
+        MigrationHistory history = MigrationHistory.empty();
+        assertThrows(IllegalArgumentException.class, () -> MigrationGraph.build(files, history));
+
+        write("V2__grants.sql", "-- depends-on:\nGRANT SELECT ON users TO reporting;");
+        MigrationGraph graph = MigrationGraph.build(files, history);
+        assertEquals(Set.of(), dependencies(graph, 1));
+        assertEquals(Set.of("V1", "V2"), dependencies(graph, 2));
+    }
+
+    @Test
+    void testBuild_opaqueMigrationWithDependsOnKeepsEarlierWriters() throws IOException {
+        // Test that a DO block ordered by its header doesn't cut later migrations loose from earlier writers
+        List<Path> files = List.of(
+                write("V1__users.sql", "CREATE TABLE users (id INT);"),
+                write("V2__audit.sql", "-- depends-on:\nDO $$ BEGIN PERFORM 1; END $$;"),
+                write("V3__users_name.sql", "ALTER TABLE users ADD COLUMN name TEXT;"),
+                write("V4__function.sql", "CREATE FUNCTION f() RETURNS INT AS $$ SELECT 1; $$ LANGUAGE sql;"));
+        MigrationGraph graph = MigrationGraph.build(files, MigrationHistory.empty());
+
+        assertEquals(Set.of(), dependencies(graph, 1));
+        assertEquals(Set.of("V1", "V2"), dependencies(graph, 2));
+        // A later barrier still waits for the opaque migration
+        assertEquals(Set.of("V1", "V2", "V3"), dependencies(graph, 3));
+    }
+}
@@ -0,0 +1,54 @@
+package org.bereketab.plan;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LockAnalyzerTest {
+
+    @Test
+    void testClassify_detectsScansAndRewritesUnderBlockingLocks() {
+        // Test that common blocking DDL is recognised, and that its online variants are not reported as blocking
+        LockImpact index = LockAnalyzer.classify("CREATE INDEX idx_orders_user ON orders (user_id)");
+        assertEquals(LockLevel.SHARE, index.lock());
+        assertTrue(index.isBlocking());
+        assertEquals(Set.of("idx_orders_user", "orders"), index.relations());
+        assertFalse(LockAnalyzer.classify("CREATE INDEX CONCURRENTLY idx_orders_user ON orders (user_id)").isBlocking());
+
+        LockImpact typeChange = LockAnalyzer.classify("ALTER TABLE orders ALTER COLUMN total TYPE numeric(12, 2)");
+        assertEquals(LockLevel.ACCESS_EXCLUSIVE, typeChange.lock());
+        assertTrue(typeChange.rewrite());
+        assertTrue(LockAnalyzer.classify("ALTER TABLE orders ADD COLUMN token uuid DEFAULT gen_random_uuid()").rewrite());
+        assertFalse(LockAnalyzer.classify("ALTER TABLE orders ADD COLUMN note text DEFAULT 'none'").isBlocking());
+
+        LockImpact foreignKey = LockAnalyzer.classify("ALTER TABLE orders ADD CONSTRAINT fk_user FOREIGN KEY (user_id) REFERENCES users (id)");
+        assertEquals(LockLevel.SHARE_ROW_EXCLUSIVE, foreignKey.lock());
+        assertTrue(foreignKey.isBlocking());
+        assertFalse(LockAnalyzer.classify("ALTER TABLE orders ADD CONSTRAINT fk_user FOREIGN KEY (user_id) REFERENCES users (id) NOT VALID").isBlocking());
+        assertEquals(LockLevel.SHARE_UPDATE_EXCLUSIVE, LockAnalyzer.classify("ALTER TABLE orders VALIDATE CONSTRAINT fk_user").lock());
+        assertTrue(LockAnalyzer.classify("ALTER TABLE orders ALTER COLUMN user_id SET NOT NULL").isBlocking());
+        assertTrue(LockAnalyzer.classify("VACUUM FULL orders").rewrite());
+        assertEquals(Set.of("orders"), LockAnalyzer.classify("VACUUM FULL orders").relations());
+        assertEquals(LockLevel.EXCLUSIVE, LockAnalyzer.classify("LOCK TABLE orders IN EXCLUSIVE MODE").lock());
+
+        assertNull(LockAnalyzer.classify("CREATE TABLE audit (id bigint)"));
+        assertNull(LockAnalyzer.classify("INSERT INTO orders (id) VALUES (1)"));
+        assertNull(LockAnalyzer.classify("DROP INDEX CONCURRENTLY idx_orders_user"));
+    }
+
+    @Test
+    void testBlockingBytes_weighsOnlyBlockingStatementsByLockedTables() {
+        // Test that brief locks don't count, and that the largest table scanned under a blocking lock does
+        LockAnalysis analysis = new LockAnalysis("V3__orders.sql", List.of(
+                LockAnalyzer.classify("ALTER TABLE orders ADD COLUMN note text"),
+                LockAnalyzer.classify("CREATE INDEX idx_users_email ON users (email)")),
+                List.of(new RelationSize("orders", 1_000_000, 800_000_000), new RelationSize("users", 1_000, 2_000_000)), null);
+        assertEquals(2_000_000, analysis.blockingBytes());
+        assertEquals(800_000_000, analysis.lockedBytes(analysis.impacts().get(0)));
+        assertFalse(analysis.acknowledged());
+    }
+}
@@ -0,0 +1,35 @@
+package org.bereketab.plan;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MigrationPlannerTest {
+
+    @Test
+    void testParsePlan_usesRowsBelowModifyNode() {
+        // Test that UPDATE estimates take the top cost but the scanned rows, since ModifyTable reports 0 rows
+        StatementEstimate estimate = MigrationPlanner.parsePlan("UPDATE users SET active = true", List.of(
+                "Update on users  (cost=0.00..35.50 rows=0 width=0)",
+                "  ->  Seq Scan on users  (cost=0.00..35.50 rows=2550 width=10)",
+                "        Filter: (NOT active)"));
+        assertTrue(estimate.isEstimated());
+        assertEquals(35.50, estimate.cost());
+        assertEquals(2550, estimate.rows());
+    }
+
+    @Test
+    void testParsePlan_readsTopNodeOfQueries() {
+        // Test that plain queries use the top node and that output without costs is reported as unestimated
+        StatementEstimate query = MigrationPlanner.parsePlan("SELECT count(*) FROM users", List.of(
+                "Aggregate  (cost=41.88..41.89 rows=1 width=8)",
+                "  ->  Seq Scan on users  (cost=0.00..35.50 rows=2550 width=0)"));
+        assertEquals(41.89, query.cost());
+        assertEquals(1, query.rows());
+
+        StatementEstimate unknown = MigrationPlanner.parsePlan("SELECT 1", List.of("Result"));
+        assertFalse(unknown.isEstimated());
+    }
+}
@@ -0,0 +1,32 @@
+package org.bereketab.schema;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SchemaSnapshotTest {
+
+    @Test
+    void testDiff_reportsEveryDifference() {
+        // Test that missing, unexpected and changed objects are all reported, ordered by object
+        Map<String, String> expected = Map.of(
+                "table users", "r",
+                "column users.id", "integer NOT NULL",
+                "index idx_users_name", "CREATE INDEX idx_users_name ON public.users USING btree (name)");
+        Map<String, String> live = Map.of(
+                "table users", "r",
+                "column users.id", "bigint NOT NULL",
+                "index idx_users_email", "CREATE INDEX idx_users_email ON public.users USING btree (email)");
+
+        List<SchemaDifference> differences = SchemaSnapshot.diff(expected, live);
+
+        assertEquals(List.of(
+                "changed column users.id: expected integer NOT NULL, found bigint NOT NULL",
+                "unexpected index idx_users_email: CREATE INDEX idx_users_email ON public.users USING btree (email)",
+                "missing index idx_users_name: CREATE INDEX idx_users_name ON public.users USING btree (name)"),
+                differences.stream().map(SchemaDifference::describe).toList());
+        assertTrue(SchemaSnapshot.diff(expected, expected).isEmpty());
+    }
+}
@@ -0,0 +1,133 @@
+package org.bereketab.script;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BackfillExecutorTest {
+    private static final String UPDATE = "UPDATE orders SET total_cents = total * 100 WHERE id BETWEEN :start AND :end";
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Statement statement;
+
+    @Mock
+    private PreparedStatement firstChunk;
+
+    @Mock
+    private PreparedStatement nextChunk;
+
+    @Mock
+    private PreparedStatement update;
+
+    @Mock
+    private PreparedStatement saveCheckpoint;
+
+    @Mock
+    private PreparedStatement findCheckpoint;
+
+    @TempDir
+    Path dir;
+
+    private Path script;
+
+    @BeforeEach
+    void setUp() throws SQLException, IOException {
+        // Configure mocks for a table with a bigint key and a single chunk of two rows
+        MockitoAnnotations.openMocks(this);
+        when(connection.createStatement()).thenReturn(statement);
+        ResultSet noReplicaLag = resultSet(true);
+        when(statement.executeQuery(anyString())).thenReturn(noReplicaLag);
+        PreparedStatement keyType = mock(PreparedStatement.class);
+        ResultSet keyTypeRs = resultSet(true);
+        when(keyTypeRs.getString(1)).thenReturn("bigint");
+        when(keyType.executeQuery()).thenReturn(keyTypeRs);
+        when(connection.prepareStatement(contains("format_type"))).thenReturn(keyType);
+        ResultSet noCheckpoint = resultSet(false);
+        when(findCheckpoint.executeQuery()).thenReturn(noCheckpoint);
+        when(connection.prepareStatement(startsWith("SELECT checksum"))).thenReturn(findCheckpoint);
+        when(connection.prepareStatement(contains("FROM orders ORDER BY"))).thenReturn(firstChunk);
+        when(connection.prepareStatement(contains("WHERE id > CAST(? AS bigint)"))).thenReturn(nextChunk);
+        when(connection.prepareStatement(startsWith("UPDATE orders"))).thenReturn(update);
+        when(connection.prepareStatement(contains("INSERT INTO migration_checkpoint"))).thenReturn(saveCheckpoint);
+        ResultSet chunk = resultSet(true);
+        when(chunk.getLong(3)).thenReturn(2L);
+        when(chunk.getString(1)).thenReturn("1");
+        when(chunk.getString(2)).thenReturn("2");
+        when(firstChunk.executeQuery()).thenReturn(chunk);
+        ResultSet done = resultSet(true);
+        when(nextChunk.executeQuery()).thenReturn(done);
+        when(update.getUpdateCount()).thenReturn(2);
+        script = Files.writeString(dir.resolve("V3__backfill.sql"), "-- backfill: orders.id\n-- chunk-size: 2\n" + UPDATE + ";");
+    }
+
+    @Test
+    void testExecute_walksChunksAndCheckpointsEach() throws Exception {
+        // Test that placeholders are bound to the chunk bounds and each chunk commits with its checkpoint
+        ScriptResult result = new BackfillExecutor(MigrationHeader.read(script)).execute(connection, "V3", script);
+        assertEquals(1, result.statements());
+        assertEquals(2, result.rowsAffected());
+        verify(connection).prepareStatement(
+                "UPDATE orders SET total_cents = total * 100 WHERE id BETWEEN CAST(? AS bigint) AND CAST(? AS bigint)");
+        verify(update).setString(1, "1");
+        verify(update).setString(2, "2");
+        verify(firstChunk).setInt(1, 2);
+        verify(nextChunk).setString(1, "2");
+        verify(saveCheckpoint).setString(3, "2");
+        verify(saveCheckpoint).setLong(4, 2L);
+        verify(connection, atLeast(2)).commit();
+    }
+
+    @Test
+    void testExecute_rejectsScriptsWithoutChunkBounds() throws Exception {
+        // Test that a backfill can't silently re-run the whole statement for every chunk
+        Path unbounded = Files.writeString(dir.resolve("V4__backfill.sql"), "-- backfill: orders.id\nUPDATE orders SET total_cents = 0;");
+        BackfillExecutor executor = new BackfillExecutor(MigrationHeader.read(unbounded));
+        assertThrows(IllegalArgumentException.class, () -> executor.execute(connection, "V4", unbounded));
+
+        Path noColumn = Files.writeString(dir.resolve("V5__backfill.sql"), "-- backfill: orders\n" + UPDATE + ";");
+        assertThrows(IllegalArgumentException.class, () -> new BackfillExecutor(MigrationHeader.read(noColumn)));
+    }
+
+    @Test
+    void testExecute_refusesToResumeChangedScript() throws Exception {
+        // Test that a checkpoint saved by a different version of the script stops the backfill before any chunk runs
+        ResultSet staleCheckpoint = resultSet(true);
+        when(staleCheckpoint.getString(1)).thenReturn("stale");
+        when(staleCheckpoint.getString(2)).thenReturn("2");
+        when(findCheckpoint.executeQuery()).thenReturn(staleCheckpoint);
+        BackfillExecutor executor = new BackfillExecutor(MigrationHeader.read(script));
+
+        assertThrows(IllegalStateException.class, () -> executor.execute(connection, "V3", script));
+        verify(update, never()).execute();
+        verify(saveCheckpoint, never()).executeUpdate();
+    }
+
+    private static ResultSet resultSet(boolean hasRow) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.next()).thenReturn(hasRow);
+        return rs;
+    }
+}
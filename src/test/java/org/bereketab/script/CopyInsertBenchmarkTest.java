@@ -0,0 +1,103 @@
+package org.bereketab.script;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares rows/sec of plain `stmt.execute(sql)` against the COPY fast path for seed INSERTs.
+ * Run with `mvn test -Dtest=CopyInsertBenchmarkTest -Dbenchmark=true`.
+ */
+@Testcontainers
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class CopyInsertBenchmarkTest {
+    private static final Logger logger = LoggerFactory.getLogger(CopyInsertBenchmarkTest.class);
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 200_000);
+    private static final int ROWS_PER_INSERT = 1_000;
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15");
+
+    private static HikariDataSource dataSource;
+    private static Path script;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(postgres.getJdbcUrl());
+        dataSource.setUsername(postgres.getUsername());
+        dataSource.setPassword(postgres.getPassword());
+
+        // Seed script shaped like V1__create_schema.sql, just bigger
+        script = Files.createTempFile("seed", ".sql");
+        try (Writer out = Files.newBufferedWriter(script)) {
+            for (int i = 0; i < ROWS; i++) {
+                out.write(i % ROWS_PER_INSERT == 0 ? "INSERT INTO users (username, email) VALUES\n" : ",\n");
+                out.write("('user" + i + "', 'user" + i + "@example.com')");
+                if (i % ROWS_PER_INSERT == ROWS_PER_INSERT - 1 || i == ROWS - 1) out.write(";\n");
+            }
+        }
+    }
+
+    @AfterAll
+    static void tearDown() throws IOException {
+        dataSource.close();
+        Files.deleteIfExists(script);
+    }
+
+    @Test
+    void benchmarkInsertVersusCopy() throws Exception {
+        // Warm up both paths once, then measure
+        measure("execute", this::runPlainExecute);
+        measure("copy", conn -> new SqlScriptExecutor(SqlScriptExecutor.DEFAULT_BATCH_SIZE, 1).execute(conn, script));
+        double plain = measure("execute", this::runPlainExecute);
+        double copy = measure("copy", conn -> new SqlScriptExecutor(SqlScriptExecutor.DEFAULT_BATCH_SIZE, 1).execute(conn, script));
+        logger.info(String.format("stmt.execute(sql): %,.0f rows/sec, COPY: %,.0f rows/sec (%.1fx)", plain, copy, copy / plain));
+    }
+
+    private void runPlainExecute(Connection conn) throws SQLException, IOException {
+        // The pre-streaming apply path: whole file as one String in one execute
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(Files.readString(script));
+        }
+    }
+
+    private double measure(String name, ScriptRun run) throws Exception {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS users");
+            stmt.execute("CREATE TABLE users (id BIGSERIAL PRIMARY KEY, username VARCHAR(50) NOT NULL UNIQUE, email VARCHAR(100))");
+            conn.setAutoCommit(false);
+            long start = System.nanoTime();
+            run.execute(conn);
+            conn.commit();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM users")) {
+                rs.next();
+                assertEquals(ROWS, rs.getInt(1), name + " loaded the wrong number of rows");
+            }
+            conn.setAutoCommit(true);
+            return ROWS / seconds;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ScriptRun {
+        void execute(Connection conn) throws Exception;
+    }
+}
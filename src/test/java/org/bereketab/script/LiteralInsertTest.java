@@ -0,0 +1,35 @@
+package org.bereketab.script;
+
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.StringWriter;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class LiteralInsertTest {
+
+    @Test
+    void testParse_convertsLiteralRowsToCopyText() throws IOException {
+        // Test conversion of strings, numbers, booleans and NULL into COPY text format
+        LiteralInsert insert = LiteralInsert.parse(
+                "INSERT INTO users (username, age, active, note) VALUES\n('o''brien', 42, TRUE, NULL), ('tab\there', -1.5, false, 'a\\\\b')");
+        assertNotNull(insert);
+        assertEquals(2, insert.getRowCount());
+        assertEquals("COPY users (username, age, active, note) FROM STDIN", insert.toCopySql());
+        StringWriter out = new StringWriter();
+        insert.writeCopyRows(out);
+        assertEquals("o'brien\t42\ttrue\t\\N\ntab\\there\t-1.5\tfalse\ta\\\\\\\\b\n", out.toString());
+    }
+
+    @Test
+    void testParse_rejectsNonLiteralInserts() {
+        // Test that anything COPY can't reproduce falls back to normal execution
+        assertNull(LiteralInsert.parse("INSERT INTO users VALUES ('a')"));
+        assertNull(LiteralInsert.parse("INSERT INTO users (id) VALUES (nextval('s'))"));
+        assertNull(LiteralInsert.parse("INSERT INTO users (id) VALUES (1) ON CONFLICT DO NOTHING"));
+        assertNull(LiteralInsert.parse("INSERT INTO users (a, b) VALUES (1, 2), (3)"));
+        assertNull(LiteralInsert.parse("INSERT INTO users (d) VALUES (DATE '2024-01-01')"));
+        assertNull(LiteralInsert.parse("INSERT INTO profiles (user_id, email) SELECT id, username FROM users"));
+    }
+}
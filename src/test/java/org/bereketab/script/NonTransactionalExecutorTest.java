@@ -0,0 +1,86 @@
+package org.bereketab.script;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NonTransactionalExecutorTest {
+    private static final String CREATE_INDEX = "CREATE INDEX CONCURRENTLY idx_users_username ON users(username)";
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Statement statement;
+
+    @Mock
+    private PreparedStatement indexState;
+
+    @Mock
+    private ResultSet resultSet;
+
+    @TempDir
+    Path dir;
+
+    private Path script;
+
+    @BeforeEach
+    void setUp() throws SQLException, IOException {
+        // Configure mocks for the index state lookup
+        MockitoAnnotations.openMocks(this);
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.prepareStatement(anyString())).thenReturn(indexState);
+        when(indexState.executeQuery()).thenReturn(resultSet);
+        script = Files.writeString(dir.resolve("V2__create_index.sql"), "-- transaction: none\n" + CREATE_INDEX + ";");
+    }
+
+    @Test
+    void testExecute_skipsValidIndex() throws Exception {
+        // Test that a resumed run doesn't rebuild an index that already finished
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getBoolean(1)).thenReturn(true);
+        ScriptResult result = new NonTransactionalExecutor().execute(connection, script);
+        assertEquals(1, result.statements());
+        verify(connection).setAutoCommit(true);
+        verify(statement, never()).execute(anyString());
+    }
+
+    @Test
+    void testExecute_rebuildsInvalidIndex() throws Exception {
+        // Test that an INVALID index from a failed build is dropped before building again
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getBoolean(1)).thenReturn(false);
+        new NonTransactionalExecutor().execute(connection, script);
+        var order = inOrder(statement);
+        order.verify(statement).execute("DROP INDEX CONCURRENTLY IF EXISTS idx_users_username");
+        order.verify(statement).execute(CREATE_INDEX);
+    }
+
+    @Test
+    void testExecute_dropsInvalidIndexAfterFailure() throws Exception {
+        // Test cleanup when the concurrent build itself fails
+        when(resultSet.next()).thenReturn(false).thenReturn(true);
+        when(resultSet.getBoolean(1)).thenReturn(false);
+        doThrow(new SQLException("deadlock detected", "40P01")).when(statement).execute(CREATE_INDEX);
+        assertThrows(SQLException.class, () -> new NonTransactionalExecutor().execute(connection, script));
+        verify(statement).execute("DROP INDEX CONCURRENTLY IF EXISTS idx_users_username");
+    }
+}
@@ -0,0 +1,108 @@
+package org.bereketab.script;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HexFormat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResumableExecutorTest {
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Statement statement;
+
+    @Mock
+    private PreparedStatement findCheckpoint;
+
+    @Mock
+    private PreparedStatement saveCheckpoint;
+
+    @TempDir
+    Path dir;
+
+    private Path script;
+
+    @BeforeEach
+    void setUp() throws SQLException, IOException {
+        // Configure mocks for a three-statement script split into segments of two
+        MockitoAnnotations.openMocks(this);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.getUpdateCount()).thenReturn(10);
+        when(connection.prepareStatement(startsWith("SELECT checksum"))).thenReturn(findCheckpoint);
+        when(connection.prepareStatement(contains("INSERT INTO migration_checkpoint"))).thenReturn(saveCheckpoint);
+        script = Files.writeString(dir.resolve("V7__load.sql"), """
+                -- resumable: 2
+                INSERT INTO a SELECT * FROM staging_a;
+                INSERT INTO b SELECT * FROM staging_b;
+                INSERT INTO c SELECT * FROM staging_c;
+                """);
+    }
+
+    @Test
+    void testExecute_commitsEachSegmentWithItsCheckpoint() throws Exception {
+        // Test that a full segment commits together with the number of statements done, and the tail is left to the caller
+        checkpoint(null);
+        ScriptResult result = new ResumableExecutor(MigrationHeader.read(script)).execute(connection, "V7", script);
+
+        assertEquals(3, result.statements());
+        assertEquals(30, result.rowsAffected());
+        assertEquals(sha256(script), result.checksum());
+        verify(saveCheckpoint).setString(3, "2");
+        verify(saveCheckpoint).setLong(4, 20L);
+        verify(saveCheckpoint, times(1)).executeUpdate();
+        // Table setup, then the one full segment
+        verify(connection, times(2)).commit();
+    }
+
+    @Test
+    void testExecute_skipsCommittedStatementsOnlyIfScriptUnchanged() throws Exception {
+        // Test that a resumed run starts after the checkpoint, and that an edited script is refused before running anything
+        checkpoint(sha256(script));
+        ScriptResult result = new ResumableExecutor(MigrationHeader.read(script)).execute(connection, "V7", script);
+
+        assertEquals(1, result.statements());
+        assertEquals(30, result.rowsAffected());
+        verify(statement, never()).execute(startsWith("INSERT INTO a"));
+        verify(statement).execute(startsWith("INSERT INTO c"));
+
+        checkpoint("stale");
+        ResumableExecutor executor = new ResumableExecutor(MigrationHeader.read(script));
+        assertThrows(IllegalStateException.class, () -> executor.execute(connection, "V7", script));
+        verify(statement, times(1)).execute(startsWith("INSERT"));
+    }
+
+    private void checkpoint(String checksum) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.next()).thenReturn(checksum != null);
+        when(rs.getString(1)).thenReturn(checksum);
+        when(rs.getString(2)).thenReturn("2");
+        when(rs.getLong(3)).thenReturn(20L);
+        when(findCheckpoint.executeQuery()).thenReturn(rs);
+    }
+
+    private static String sha256(Path file) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file)));
+    }
+}
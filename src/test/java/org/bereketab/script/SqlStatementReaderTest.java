@@ -0,0 +1,62 @@
+package org.bereketab.script;
+
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SqlStatementReaderTest {
+
+    private List<String> split(String script) throws IOException {
+        List<String> statements = new ArrayList<>();
+        try (SqlStatementReader reader = new SqlStatementReader(new StringReader(script))) {
+            String sql;
+            while ((sql = reader.nextStatement()) != null) {
+                statements.add(sql);
+            }
+        }
+        return statements;
+    }
+
+    @Test
+    void testNextStatement_splitsOnSemicolonsAndDropsComments() throws IOException {
+        // Test basic splitting with comments and a missing trailing semicolon
+        List<String> statements = split("""
+                -- create table
+                CREATE TABLE t (id INT); /* block ; comment */
+                INSERT INTO t VALUES (1);;
+                SELECT 1""");
+        assertEquals(List.of("CREATE TABLE t (id INT)", "INSERT INTO t VALUES (1)", "SELECT 1"), statements);
+    }
+
+    @Test
+    void testNextStatement_ignoresSemicolonsInQuotes() throws IOException {
+        // Test that quoted strings, escape strings and identifiers keep their semicolons
+        List<String> statements = split("INSERT INTO \"a;b\" VALUES ('x;''y', E'\\';z');SELECT 2;");
+        assertEquals(List.of("INSERT INTO \"a;b\" VALUES ('x;''y', E'\\';z')", "SELECT 2"), statements);
+    }
+
+    @Test
+    void testNextStatement_handlesDollarQuoting() throws IOException {
+        // Test that function bodies in dollar quotes are kept intact
+        String function = "CREATE FUNCTION f() RETURNS INT AS $body$ BEGIN RETURN 1; END; $body$ LANGUAGE plpgsql";
+        List<String> statements = split(function + ";\nDO $$ BEGIN PERFORM 1; END $$;\nSELECT $1, a$b FROM t;");
+        assertEquals(List.of(function, "DO $$ BEGIN PERFORM 1; END $$", "SELECT $1, a$b FROM t"), statements);
+    }
+
+    @Test
+    void testNextStatement_handlesNestedBlockComments() throws IOException {
+        // Test nested block comments and division operators
+        List<String> statements = split("SELECT 4 / 2 /* outer /* inner; */ still comment; */;");
+        assertEquals(List.of("SELECT 4 / 2"), statements);
+    }
+
+    @Test
+    void testNextStatement_failsOnUnterminatedQuote() {
+        // Test that an unterminated literal is reported instead of silently merged
+        assertThrows(IOException.class, () -> split("INSERT INTO t VALUES ('oops);"));
+    }
+}
@@ -0,0 +1,95 @@
+package org.bereketab.source;
+
+import org.bereketab.script.Checksums;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MigrationSourceTest {
+
+    @Test
+    void testGetMigrationFiles_ordersVersionsNumerically(@TempDir Path dir) throws IOException {
+        // Test that V10 sorts after V2 and rollback and baseline scripts are left out
+        for (String name : List.of("V10__c.sql", "V2__b.sql", "V1_10__a2.sql", "V1_2__a1.sql", "V2__b_rollback.sql", "B2__baseline.sql")) {
+            Files.writeString(dir.resolve(name), "SELECT 1;");
+        }
+        MigrationSource source = MigrationSource.open(dir.toString());
+
+        List<String> files = source.getMigrationFiles().stream().map(file -> file.getFileName().toString()).toList();
+
+        assertEquals(List.of("V1_2__a1.sql", "V1_10__a2.sql", "V2__b.sql", "V10__c.sql"), files);
+        assertEquals(dir.resolve("V2__b_rollback.sql"), source.getRollbackFile("V2__b.sql"));
+        assertNull(source.getRollbackFile("V10__c.sql"));
+        assertFalse(source.isIndexed());
+    }
+
+    @Test
+    void testOpen_packagedIndexSkipsListingAndHashing(@TempDir Path dir) throws Exception {
+        // Test that a jar with an index serves files, rollbacks and checksums from the index
+        Path migrations = Files.createDirectories(dir.resolve("build/migrations"));
+        Files.writeString(migrations.resolve("V1__init.sql"), "CREATE TABLE t (id INT);");
+        Files.writeString(migrations.resolve("V1__init_rollback.sql"), "DROP TABLE t;");
+        Files.writeString(migrations.resolve("V10__later.sql"), "SELECT 1;");
+        Files.writeString(migrations.resolve("V9__earlier.sql"), "SELECT 1;");
+        MigrationIndex index = MigrationIndex.build(migrations);
+        index.write(migrations.resolve(MigrationIndex.FILE_NAME));
+        assertEquals(List.of("V1", "V9", "V10"), index.entries().stream().map(MigrationIndex.Entry::version).toList());
+
+        Path jar = dir.resolve("app.jar");
+        try (FileSystem zip = FileSystems.newFileSystem(URI.create("jar:" + jar.toUri()), Map.of("create", "true"))) {
+            Path target = Files.createDirectories(zip.getPath("/db/migrations"));
+            // Only the index and the first script are packaged, so anything else must come from the index
+            Files.copy(migrations.resolve(MigrationIndex.FILE_NAME), target.resolve(MigrationIndex.FILE_NAME));
+            Files.copy(migrations.resolve("V1__init.sql"), target.resolve("V1__init.sql"));
+        }
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{jar.toUri().toURL()}, null)) {
+            MigrationSource source = MigrationSource.open("classpath:db/migrations", loader);
+
+            assertTrue(source.isPackaged());
+            assertTrue(source.isIndexed());
+            List<Path> files = source.getMigrationFiles();
+            assertEquals(List.of("V1__init.sql", "V9__earlier.sql", "V10__later.sql"),
+                    files.stream().map(file -> file.getFileName().toString()).toList());
+            assertEquals("V1__init_rollback.sql", source.getRollbackFile("V1__init.sql").getFileName().toString());
+            assertEquals(index.entries().get(0).checksum(), source.getIndexedChecksum(files.get(0)));
+            assertEquals("CREATE TABLE t (id INT);", Files.readString(files.get(0)));
+        }
+    }
+
+    @Test
+    void testGetSidecarFiles_pairsFromListingAndFoldsIntoChecksum(@TempDir Path dir) throws Exception {
+        // Test that data files are paired with their script from one listing, and that editing one changes the checksum
+        Path seed = Files.writeString(dir.resolve("V1__seed.sql"), "CREATE TABLE users (id INT);");
+        Files.writeString(dir.resolve("V1__seed.users.csv"), "id\n1\n");
+        Files.writeString(dir.resolve("V1__seed.public.orders.tsv"), "id\n1\n");
+        Path other = Files.writeString(dir.resolve("V10__seed.sql"), "SELECT 1;");
+        MigrationSource source = MigrationSource.open(dir.toString());
+        source.getMigrationFiles();
+
+        assertEquals(List.of("V1__seed.public.orders.tsv", "V1__seed.users.csv"),
+                source.getSidecarFiles(seed).stream().map(file -> file.getFileName().toString()).toList());
+        assertTrue(source.getSidecarFiles(other).isEmpty());
+
+        MigrationIndex.Entry entry = MigrationIndex.build(dir).entries().get(0);
+        assertEquals(List.of("V1__seed.public.orders.tsv", "V1__seed.users.csv"), entry.sidecars());
+        assertEquals(MigrationSource.checksumWithSidecars(Checksums.sha256(seed), source.getSidecarFiles(seed)), entry.checksum());
+        assertEquals(Checksums.sha256(other), MigrationSource.checksumWithSidecars(Checksums.sha256(other), List.of()));
+
+        Files.writeString(dir.resolve("V1__seed.users.csv"), "id\n2\n");
+        assertNotEquals(entry.checksum(), MigrationSource.checksumWithSidecars(Checksums.sha256(seed), source.getSidecarFiles(seed)));
+    }
+}
@@ -0,0 +1,37 @@
+package org.bereketab.template;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TemplateDatabaseProvisionerTest {
+
+    @Test
+    void testWithDatabase_keepsHostAndParameters() {
+        // Test that only the database name of the URL is replaced
+        assertEquals("jdbc:postgresql://db:5432/test_1?sslmode=require",
+                TemplateDatabaseProvisioner.withDatabase("jdbc:postgresql://db:5432/postgres?sslmode=require", "test_1"));
+        assertEquals("jdbc:postgresql://localhost/tpl", TemplateDatabaseProvisioner.withDatabase("jdbc:postgresql://localhost/app", "tpl"));
+        assertThrows(IllegalArgumentException.class, () -> TemplateDatabaseProvisioner.withDatabase("jdbc:h2:mem:test", "tpl"));
+    }
+
+    @Test
+    void testMigrationSetChecksum_changesWithAnyFile(@TempDir Path dir) throws IOException {
+        // Test that the template key is stable, and changes when a file is added or renamed
+        Files.writeString(dir.resolve("V1__init.sql"), "CREATE TABLE users (id INT);");
+        String initial = TemplateDatabaseProvisioner.migrationSetChecksum(dir);
+        assertEquals(initial, TemplateDatabaseProvisioner.migrationSetChecksum(dir));
+
+        Files.writeString(dir.resolve("V1__init.users.csv"), "id\n1\n");
+        String withSeed = TemplateDatabaseProvisioner.migrationSetChecksum(dir);
+        assertNotEquals(initial, withSeed);
+
+        Files.move(dir.resolve("V1__init.sql"), dir.resolve("V2__init.sql"));
+        assertNotEquals(withSeed, TemplateDatabaseProvisioner.migrationSetChecksum(dir));
+    }
+}